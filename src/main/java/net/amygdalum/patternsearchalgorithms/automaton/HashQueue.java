@@ -0,0 +1,58 @@
+package net.amygdalum.patternsearchalgorithms.automaton;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class HashQueue<T> extends AbstractQueue<T> {
+
+	private Set<T> elements;
+
+	public HashQueue() {
+		this.elements = new LinkedHashSet<>();
+	}
+
+	@Override
+	public boolean offer(T e) {
+		return elements.add(e);
+	}
+
+	@Override
+	public T poll() {
+		Iterator<T> iterator = elements.iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		T next = iterator.next();
+		iterator.remove();
+		return next;
+	}
+
+	@Override
+	public T peek() {
+		Iterator<T> iterator = elements.iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return elements.contains(o);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return elements.remove(o);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return elements.iterator();
+	}
+
+	@Override
+	public int size() {
+		return elements.size();
+	}
+
+}
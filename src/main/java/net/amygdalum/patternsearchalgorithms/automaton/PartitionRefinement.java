@@ -0,0 +1,209 @@
+package net.amygdalum.patternsearchalgorithms.automaton;
+
+import java.util.Arrays;
+
+public class PartitionRefinement {
+
+	private int stateCount;
+	private int symbolCount;
+
+	private int[] predecessors; // all predecessors grouped by (target, symbol)
+	private int[] predecessorStart; // (target * symbolCount + symbol) to start index in predecessors
+
+	private int[] elements; // states grouped by block
+	private int[] location; // state to index in elements
+	private int[] blockOf; // state to block
+	private int[] first; // block to first index in elements (inclusive)
+	private int[] end; // block to last index in elements (exclusive)
+	private int[] marked; // block to end of marked states (first to marked is marked)
+	private int blockCount;
+
+	private int[] work; // stack of blocks to be used as splitter
+	private boolean[] pending; // block to whether it is in work
+	private int workSize;
+
+	private int[] touched;
+	private int touchedCount;
+	private int[] splitter;
+
+	private PartitionRefinement(int stateCount, int symbolCount, int[] transitions) {
+		this.stateCount = stateCount;
+		this.symbolCount = symbolCount;
+		computePredecessors(transitions);
+		this.elements = new int[stateCount];
+		this.location = new int[stateCount];
+		this.blockOf = new int[stateCount];
+		this.first = new int[stateCount];
+		this.end = new int[stateCount];
+		this.marked = new int[stateCount];
+		this.work = new int[stateCount];
+		this.pending = new boolean[stateCount];
+		this.touched = new int[stateCount];
+		this.splitter = new int[stateCount];
+	}
+
+	public static int[] minimize(int stateCount, int symbolCount, int[] transitions, int[] initialBlocks) { // transitions[state * symbolCount + symbol] is target, result is the (dense) block of each state
+		if (stateCount == 0) {
+			return new int[0];
+		}
+		PartitionRefinement refinement = new PartitionRefinement(stateCount, symbolCount, transitions);
+		refinement.init(initialBlocks);
+		refinement.refine();
+		return refinement.normalizedBlocks();
+	}
+
+	private void computePredecessors(int[] transitions) {
+		int[] start = new int[stateCount * symbolCount + 1];
+		for (int i = 0; i < transitions.length; i++) {
+			int target = transitions[i];
+			if (target >= 0) {
+				start[target * symbolCount + i % symbolCount + 1]++;
+			}
+		}
+		for (int i = 1; i < start.length; i++) {
+			start[i] += start[i - 1];
+		}
+		int[] next = Arrays.copyOf(start, start.length - 1);
+		int[] predecessors = new int[start[start.length - 1]];
+		for (int i = 0; i < transitions.length; i++) {
+			int target = transitions[i];
+			if (target >= 0) {
+				predecessors[next[target * symbolCount + i % symbolCount]++] = i / symbolCount;
+			}
+		}
+		this.predecessors = predecessors;
+		this.predecessorStart = start;
+	}
+
+	private void init(int[] initialBlocks) {
+		int initialCount = 0;
+		for (int block : initialBlocks) {
+			initialCount = Math.max(initialCount, block + 1);
+		}
+		int[] sizes = new int[initialCount];
+		for (int block : initialBlocks) {
+			sizes[block]++;
+		}
+		int[] blockIds = new int[initialCount];
+		int index = 0;
+		for (int block = 0; block < initialCount; block++) {
+			if (sizes[block] == 0) {
+				blockIds[block] = -1;
+				continue;
+			}
+			blockIds[block] = blockCount;
+			first[blockCount] = index;
+			end[blockCount] = index;
+			marked[blockCount] = index;
+			index += sizes[block];
+			blockCount++;
+		}
+		for (int state = 0; state < stateCount; state++) {
+			int block = blockIds[initialBlocks[state]];
+			int pos = end[block]++;
+			elements[pos] = state;
+			location[state] = pos;
+			blockOf[state] = block;
+		}
+		int largest = 0;
+		for (int block = 1; block < blockCount; block++) {
+			if (size(block) > size(largest)) {
+				largest = block;
+			}
+		}
+		for (int block = 0; block < blockCount; block++) {
+			if (block != largest) {
+				push(block);
+			}
+		}
+	}
+
+	private void refine() {
+		while (workSize > 0) {
+			int block = work[--workSize];
+			pending[block] = false;
+			int splitterSize = size(block);
+			System.arraycopy(elements, first[block], splitter, 0, splitterSize);
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				for (int i = 0; i < splitterSize; i++) {
+					int target = splitter[i] * symbolCount + symbol;
+					for (int j = predecessorStart[target]; j < predecessorStart[target + 1]; j++) {
+						mark(predecessors[j]);
+					}
+				}
+				split();
+			}
+		}
+	}
+
+	private void mark(int state) {
+		int block = blockOf[state];
+		int pos = location[state];
+		int markedPos = marked[block];
+		if (pos < markedPos) {
+			return;
+		}
+		if (markedPos == first[block]) {
+			touched[touchedCount++] = block;
+		}
+		int other = elements[markedPos];
+		elements[markedPos] = state;
+		location[state] = markedPos;
+		elements[pos] = other;
+		location[other] = pos;
+		marked[block] = markedPos + 1;
+	}
+
+	private void split() {
+		for (int i = 0; i < touchedCount; i++) {
+			int block = touched[i];
+			int mid = marked[block];
+			if (mid == end[block]) {
+				marked[block] = first[block];
+				continue;
+			}
+			int created = blockCount++;
+			first[created] = first[block];
+			end[created] = mid;
+			marked[created] = first[created];
+			first[block] = mid;
+			marked[block] = mid;
+			for (int pos = first[created]; pos < end[created]; pos++) {
+				blockOf[elements[pos]] = created;
+			}
+			if (pending[block] || size(created) <= size(block)) {
+				push(created);
+			} else {
+				push(block);
+			}
+		}
+		touchedCount = 0;
+	}
+
+	private void push(int block) {
+		if (!pending[block]) {
+			pending[block] = true;
+			work[workSize++] = block;
+		}
+	}
+
+	private int size(int block) {
+		return end[block] - first[block];
+	}
+
+	private int[] normalizedBlocks() {
+		int[] ids = new int[blockCount];
+		Arrays.fill(ids, -1);
+		int next = 0;
+		int[] blocks = new int[stateCount];
+		for (int state = 0; state < stateCount; state++) {
+			int block = blockOf[state];
+			if (ids[block] < 0) {
+				ids[block] = next++;
+			}
+			blocks[state] = ids[block];
+		}
+		return blocks;
+	}
+
+}
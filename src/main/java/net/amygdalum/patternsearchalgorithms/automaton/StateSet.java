@@ -0,0 +1,46 @@
+package net.amygdalum.patternsearchalgorithms.automaton;
+
+import java.util.Arrays;
+
+public final class StateSet {
+
+	private final int[] states; // sorted
+	private final int hash;
+
+	StateSet(int[] states) {
+		this.states = states;
+		this.hash = Arrays.hashCode(states);
+	}
+
+	public int size() {
+		return states.length;
+	}
+
+	public int get(int i) {
+		return states[i];
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || obj.getClass() != getClass()) {
+			return false;
+		}
+		StateSet that = (StateSet) obj;
+		return this.hash == that.hash
+			&& Arrays.equals(this.states, that.states);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(states);
+	}
+
+}
@@ -0,0 +1,45 @@
+package net.amygdalum.patternsearchalgorithms.automaton;
+
+import java.util.Arrays;
+
+public class StateSetBuilder {
+
+	private int[] dense; // members in insertion order
+	private int[] sparse; // state to index in dense
+	private int size;
+
+	public StateSetBuilder(int stateCount) {
+		this.dense = new int[stateCount];
+		this.sparse = new int[stateCount];
+	}
+
+	public boolean contains(int state) {
+		int index = sparse[state];
+		return index < size && dense[index] == state;
+	}
+
+	public void add(int state) {
+		if (!contains(state)) {
+			sparse[state] = size;
+			dense[size] = state;
+			size++;
+		}
+	}
+
+	public void addAll(int[] states) {
+		for (int state : states) {
+			add(state);
+		}
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public StateSet build() {
+		int[] states = Arrays.copyOf(dense, size);
+		Arrays.sort(states);
+		return new StateSet(states);
+	}
+
+}
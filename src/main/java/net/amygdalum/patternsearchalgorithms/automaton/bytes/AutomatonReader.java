@@ -0,0 +1,208 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.BYTE_TABLE;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.INT_TABLE;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.LAZY;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.NONE;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.ONE_PASS;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.PIKE;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.SHORT_TABLE;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.TAGGED;
+import static net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter.THOMPSON;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.LazyDFA.Automaton;
+import net.amygdalum.util.text.ByteRange;
+
+public class AutomatonReader {
+
+	private ByteBuffer in;
+
+	public AutomatonReader(ByteBuffer in) {
+		this.in = in;
+	}
+
+	public DFA readDFA() {
+		int kind = in.get();
+		switch (kind) {
+		case NONE:
+			return null;
+		case BYTE_TABLE: {
+			int[] table = readTable();
+			byte[][] escapes = readEscapes();
+			byte[] classes = readBytes();
+			int classCount = in.getInt();
+			return new ByteTableDFA(table[0], table[1], table[2], table[3], escapes, classes, classCount, readBytes());
+		}
+		case SHORT_TABLE: {
+			int[] table = readTable();
+			byte[][] escapes = readEscapes();
+			byte[] classes = readBytes();
+			int classCount = in.getInt();
+			return new ShortTableDFA(table[0], table[1], table[2], table[3], escapes, classes, classCount, readShorts());
+		}
+		case INT_TABLE: {
+			int[] table = readTable();
+			byte[][] escapes = readEscapes();
+			byte[] classes = readBytes();
+			int classCount = in.getInt();
+			return new IntTableDFA(table[0], table[1], table[2], table[3], escapes, classes, classCount, readInts());
+		}
+		case LAZY:
+			return readLazy();
+		case THOMPSON:
+			return readThompson();
+		default:
+			throw new IllegalArgumentException("unknown automaton kind " + kind);
+		}
+	}
+
+	private int[] readTable() {
+		int start = in.getInt();
+		int accepting = in.getInt();
+		int silent = in.getInt();
+		int accelerated = in.getInt();
+		return new int[] { start, accepting, silent, accelerated };
+	}
+
+	private byte[][] readEscapes() {
+		byte[][] escapes = new byte[in.getInt()][];
+		for (int i = 0; i < escapes.length; i++) {
+			escapes[i] = readNullableBytes();
+		}
+		return escapes;
+	}
+
+	private LazyDFA readLazy() {
+		int cacheSize = in.getInt();
+		boolean simulateOnly = readBoolean();
+		Automaton automaton = new Automaton();
+		automaton.nfa = readCompact();
+		automaton.classes = readBytes();
+		automaton.classCount = in.getInt();
+		automaton.representatives = readInts();
+		return new LazyDFA(automaton, cacheSize, simulateOnly);
+	}
+
+	private ThompsonNFA readThompson() {
+		return new ThompsonNFA(readCompact());
+	}
+
+	private CompactNFA readCompact() {
+		CompactNFA nfa = new CompactNFA();
+		nfa.start = in.getInt();
+		nfa.stateCount = in.getInt();
+		nfa.accepting = readBooleans();
+		nfa.silent = readBooleans();
+		nfa.byteRanges = readRanges();
+		nfa.slotCount = in.getInt();
+		nfa.epsilonOut = readInts();
+		nfa.epsilonTarget = readInts();
+		nfa.epsilonAction = readInts();
+		nfa.out = readInts();
+		nfa.from = readInts();
+		nfa.to = readInts();
+		nfa.target = readInts();
+		nfa.action = readInts();
+		return nfa;
+	}
+
+	private List<ByteRange> readRanges() {
+		int size = in.getInt();
+		List<ByteRange> ranges = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			byte from = in.get();
+			byte to = in.get();
+			ranges.add(new ByteRange(from, to));
+		}
+		return ranges;
+	}
+
+	public GroupExtractor readExtractor(Charset charset) {
+		int kind = in.get();
+		switch (kind) {
+		case ONE_PASS: {
+			return new OnePassDFA(charset, readBytes(), in.getInt(), in.getInt(), readInts(), readRows(), readRows(), in.getInt());
+		}
+		case TAGGED: {
+			return new TaggedDFA(charset, readBytes(), in.getInt(), in.getInt(), readInts(), readInts(), readRows(), readRows(), in.getInt(), in.getInt());
+		}
+		case PIKE: {
+			CompactNFA nfa = readCompact();
+			nfa.charset = charset;
+			return new PikeVM(nfa);
+		}
+		default:
+			throw new IllegalArgumentException("unknown extractor kind " + kind);
+		}
+	}
+
+	public boolean readBoolean() {
+		return in.get() != 0;
+	}
+
+	public int readInt() {
+		return in.getInt();
+	}
+
+	public String readString() {
+		return new String(readBytes(), UTF_8);
+	}
+
+	public byte[] readNullableBytes() {
+		int length = in.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] values = new byte[length];
+		in.get(values);
+		return values;
+	}
+
+	public byte[] readBytes() {
+		byte[] values = new byte[in.getInt()];
+		in.get(values);
+		return values;
+	}
+
+	private boolean[] readBooleans() {
+		boolean[] values = new boolean[in.getInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readBoolean();
+		}
+		return values;
+	}
+
+	private short[] readShorts() {
+		short[] values = new short[in.getInt()];
+		in.asShortBuffer().get(values);
+		in.position(in.position() + values.length * 2);
+		return values;
+	}
+
+	private int[] readInts() {
+		int[] values = new int[in.getInt()];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + values.length * 4);
+		return values;
+	}
+
+	private int[][] readRows() {
+		int[][] rows = new int[in.getInt()][];
+		for (int i = 0; i < rows.length; i++) {
+			int length = in.getInt();
+			if (length >= 0) {
+				rows[i] = new int[length];
+				in.asIntBuffer().get(rows[i]);
+				in.position(in.position() + length * 4);
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,196 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.LazyDFA.Automaton;
+import net.amygdalum.util.text.ByteRange;
+
+public class AutomatonWriter {
+
+	static final int NONE = 0;
+	static final int BYTE_TABLE = 1;
+	static final int SHORT_TABLE = 2;
+	static final int INT_TABLE = 3;
+	static final int LAZY = 4;
+	static final int THOMPSON = 5;
+	static final int ONE_PASS = 6;
+	static final int TAGGED = 7;
+	static final int PIKE = 8;
+
+	private DataOutput out;
+
+	public AutomatonWriter(DataOutput out) {
+		this.out = out;
+	}
+
+	public void writeDFA(DFA dfa) throws IOException {
+		if (dfa == null) {
+			out.writeByte(NONE);
+		} else if (dfa instanceof ByteTableDFA) {
+			out.writeByte(BYTE_TABLE);
+			writeTable((TableDFA) dfa);
+			writeBytes(((ByteTableDFA) dfa).transitions);
+		} else if (dfa instanceof ShortTableDFA) {
+			out.writeByte(SHORT_TABLE);
+			writeTable((TableDFA) dfa);
+			writeShorts(((ShortTableDFA) dfa).transitions);
+		} else if (dfa instanceof IntTableDFA) {
+			out.writeByte(INT_TABLE);
+			writeTable((TableDFA) dfa);
+			writeInts(((IntTableDFA) dfa).transitions);
+		} else if (dfa instanceof LazyDFA) {
+			out.writeByte(LAZY);
+			writeLazy((LazyDFA) dfa);
+		} else if (dfa instanceof ThompsonNFA) {
+			out.writeByte(THOMPSON);
+			writeThompson((ThompsonNFA) dfa);
+		} else {
+			throw new IllegalArgumentException("cannot write " + dfa.getClass().getSimpleName());
+		}
+	}
+
+	private void writeTable(TableDFA dfa) throws IOException {
+		out.writeInt(dfa.start);
+		out.writeInt(dfa.accepting);
+		out.writeInt(dfa.silent);
+		out.writeInt(dfa.accelerated);
+		out.writeInt(dfa.escapes.length);
+		for (byte[] escapes : dfa.escapes) {
+			writeNullableBytes(escapes);
+		}
+		writeBytes(dfa.classes);
+		out.writeInt(dfa.classCount);
+	}
+
+	private void writeLazy(LazyDFA dfa) throws IOException {
+		out.writeInt(dfa.getCacheSize());
+		out.writeBoolean(dfa.isSimulateOnly());
+		Automaton automaton = dfa.getAutomaton();
+		writeCompact(automaton.nfa);
+		writeBytes(automaton.classes);
+		out.writeInt(automaton.classCount);
+		writeInts(automaton.representatives);
+	}
+
+	private void writeThompson(ThompsonNFA dfa) throws IOException {
+		writeCompact(dfa.getNFA());
+	}
+
+	private void writeCompact(CompactNFA nfa) throws IOException {
+		out.writeInt(nfa.start);
+		out.writeInt(nfa.stateCount);
+		writeBooleans(nfa.accepting);
+		writeBooleans(nfa.silent);
+		writeRanges(nfa.byteRanges);
+		out.writeInt(nfa.slotCount);
+		writeInts(nfa.epsilonOut);
+		writeInts(nfa.epsilonTarget);
+		writeInts(nfa.epsilonAction);
+		writeInts(nfa.out);
+		writeInts(nfa.from);
+		writeInts(nfa.to);
+		writeInts(nfa.target);
+		writeInts(nfa.action);
+	}
+
+	private void writeRanges(List<ByteRange> ranges) throws IOException {
+		out.writeInt(ranges.size());
+		for (ByteRange range : ranges) {
+			out.writeByte(range.from[0]);
+			out.writeByte(range.to[0]);
+		}
+	}
+
+	public void writeExtractor(GroupExtractor extractor) throws IOException {
+		if (extractor instanceof OnePassDFA) {
+			OnePassDFA onePass = (OnePassDFA) extractor;
+			out.writeByte(ONE_PASS);
+			writeBytes(onePass.classes);
+			out.writeInt(onePass.classCount);
+			out.writeInt(onePass.start);
+			writeInts(onePass.transitions);
+			writeRows(onePass.writes);
+			writeRows(onePass.accepts);
+			out.writeInt(onePass.slotCount);
+		} else if (extractor instanceof TaggedDFA) {
+			TaggedDFA tagged = (TaggedDFA) extractor;
+			out.writeByte(TAGGED);
+			writeBytes(tagged.classes);
+			out.writeInt(tagged.classCount);
+			out.writeInt(tagged.start);
+			writeInts(tagged.initial);
+			writeInts(tagged.transitions);
+			writeRows(tagged.operations);
+			writeRows(tagged.finals);
+			out.writeInt(tagged.slotCount);
+			out.writeInt(tagged.registerCount);
+		} else if (extractor instanceof PikeVM) {
+			out.writeByte(PIKE);
+			writeCompact(((PikeVM) extractor).program);
+		} else {
+			throw new IllegalArgumentException("cannot write " + extractor.getClass().getSimpleName());
+		}
+	}
+
+	public void writeBoolean(boolean value) throws IOException {
+		out.writeBoolean(value);
+	}
+
+	public void writeInt(int value) throws IOException {
+		out.writeInt(value);
+	}
+
+	public void writeString(String value) throws IOException {
+		writeBytes(value.getBytes(UTF_8));
+	}
+
+	public void writeNullableBytes(byte[] values) throws IOException {
+		if (values == null) {
+			out.writeInt(-1);
+		} else {
+			writeBytes(values);
+		}
+	}
+
+	public void writeBytes(byte[] values) throws IOException {
+		out.writeInt(values.length);
+		out.write(values);
+	}
+
+	private void writeBooleans(boolean[] values) throws IOException {
+		out.writeInt(values.length);
+		for (boolean value : values) {
+			out.writeBoolean(value);
+		}
+	}
+
+	private void writeShorts(short[] values) throws IOException {
+		out.writeInt(values.length);
+		for (short value : values) {
+			out.writeShort(value);
+		}
+	}
+
+	private void writeInts(int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private void writeRows(int[][] rows) throws IOException { // null rows are written with length -1
+		out.writeInt(rows.length);
+		for (int[] row : rows) {
+			if (row == null) {
+				out.writeInt(-1);
+			} else {
+				writeInts(row);
+			}
+		}
+	}
+
+}
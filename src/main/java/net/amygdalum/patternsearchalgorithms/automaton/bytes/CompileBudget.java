@@ -0,0 +1,38 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompileBudget {
+
+	private int maxStates;
+	private long deadline; // in System.nanoTime(), Long.MAX_VALUE if there is no deadline
+	private AtomicInteger states; // shared by the automata that are determinized in parallel
+
+	public CompileBudget(int maxStates, long deadline) {
+		this.maxStates = maxStates;
+		this.deadline = deadline;
+		this.states = new AtomicInteger();
+	}
+
+	public static CompileBudget unlimited() {
+		return new CompileBudget(Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	public int getStates() {
+		return states.get();
+	}
+
+	public void charge() {
+		if (states.getAndIncrement() >= maxStates) {
+			throw new CompileBudgetExceededException("more than " + maxStates + " states");
+		}
+		check();
+	}
+
+	public void check() {
+		if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+			throw new CompileBudgetExceededException("deadline exceeded");
+		}
+	}
+
+}
@@ -0,0 +1,11 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+public class CompileBudgetExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CompileBudgetExceededException(String message) {
+		super(message);
+	}
+
+}
@@ -1,106 +1,61 @@
 package net.amygdalum.patternsearchalgorithms.automaton.bytes;
 
-import java.util.Arrays;
-import java.util.Comparator;
-
-public class DFA {
+public abstract class DFA {
 
 	public int start;
-	public int accepting; // accepting to infinity is accepting
-	public int silent; // 0 to silent is silent
-	public int[] transitions;
 
-	public DFA(int start, int accepting, int silent, int[] transitions) {
+	public DFA(int start) {
 		this.start = start;
-		this.accepting = accepting;
-		this.silent = silent;
-		this.transitions = transitions;
 	}
 
 	public static DFA from(NFA nfa) {
-		nfa = nfa.clone();
-		nfa.determinize();
-		State start = nfa.getStart();
-		State[] states = nfa.states();
-		return new DFABuilder(start, states).build();
+		return TableDFA.from(nfa);
 	}
 
-	public int next(int s, byte b) {
-		return transitions[s * 256 + (b & 0xff)];
+	public static DFA from(NFA nfa, CompileBudget budget) {
+		return TableDFA.from(nfa, budget);
 	}
 
-	public boolean accept(int s) {
-		return s >= accepting;
+	public static DFA lazy(NFA nfa, int cacheSize) {
+		return LazyDFA.from(nfa, cacheSize);
 	}
 
-	public boolean silent(int s) {
-		return s <= silent;
+	public static DFA simulation(NFA nfa) {
+		return LazyDFA.simulation(nfa);
 	}
 
-	private static class DFABuilder implements Comparator<State> {
+	public static DFA thompson(NFA nfa) {
+		return ThompsonNFA.of(nfa);
+	}
 
-		private State start;
-		private State[] states;
-		private int[] transitions;
-		private int accepting; // accepting to infinity is accepting
-		private int silent; // 0 to silent is silent
+	public DFA instance() {
+		return this;
+	}
 
-		public DFABuilder(State start, State[] states) {
-			this.start = start;
-			this.states = states;
-		}
+	public abstract int next(int s, byte b);
 
-		private void computeTransitions() {
-			int[] transitions = new int[states.length * 256];
-			for (int i = 0; i < states.length; i++) {
-				nextbyte: for (int j = 0; j < 256; j++) {
-					byte b = (byte) j;
-					for (Transition next : states[i].out()) {
-						if (next instanceof OrdinaryTransition && ((OrdinaryTransition) next).accepts(b)) {
-							transitions[i * 256 + j] = next.getTarget().getId();
-							continue nextbyte;
-						}
-					}
-					transitions[i * 256 + j] = -1;
-				}
-			}
-			this.transitions = transitions;
-		}
+	public abstract boolean accept(int s);
 
-		private void partitionStates() {
-			Arrays.sort(states, this);
-			silent = -1;
-			accepting = 0;
-			for (int i = 0; i < states.length; i++) {
-				states[i].setId(i);
-				if (states[i].isSilent()) {
-					silent = i;
-				}
-				if (!states[i].isAccepting()) {
-					accepting = i + 1;
-				}
-			}
-		}
+	public abstract boolean silent(int s);
+
+	public abstract long tableBytes(); // memory held by the shared tables, instances may allocate more
 
-		@Override
-		public int compare(State s1, State s2) {
-			boolean accept1 = s1.isAccepting();
-			boolean accept2 = s2.isAccepting();
-			int compare = Boolean.compare(accept1, accept2);
-			if (compare == 0) {
-				boolean silent1 = s1.isSilent();
-				boolean silent2 = s2.isSilent();
-				compare = Boolean.compare(silent2, silent1);
+	static long bytesOf(int[][] tables) {
+		long bytes = 0;
+		for (int[] table : tables) {
+			if (table != null) {
+				bytes += table.length * 4L;
 			}
-			return compare;
 		}
+		return bytes;
+	}
 
-		public DFA build() {
-			partitionStates();
-			computeTransitions();
-
-			return new DFA(start.getId(), accepting, silent, transitions);
-		}
+	public boolean accelerated(int s) {
+		return false;
+	}
 
+	public byte[] escapes(int s) {
+		return null;
 	}
+
 }
@@ -0,0 +1,19 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import java.nio.charset.Charset;
+
+import net.amygdalum.util.io.ByteProvider;
+
+public interface GroupExtractor {
+
+	GroupExtractor instance();
+
+	Charset getCharset();
+
+	int slotCount();
+
+	long tableBytes();
+
+	boolean match(ByteProvider input, long start, long end, long[] slots); // writes the capture slots (start and end of groups 1..n) of the preferred match of [start, end) into slots, false if there is none
+
+}
@@ -2,39 +2,37 @@ package net.amygdalum.patternsearchalgorithms.automaton.bytes;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import net.amygdalum.util.io.ByteProvider;
 
 public class Groups implements Comparable<Groups> {
 
-	private static final SortedSet<SubMatch> EMPTY = new TreeSet<>();
+	private static final long[] EMPTY = new long[0];
 
 	private long start;
 	private long end;
-	private SubMatch[] submatches;
-	private SortedSet<SubMatch> allsubmatches;
+	private long[] slots; // start and end of group 1, 2, ..., -1 if unset
+	private boolean shared; // slots are shared with other groups and must be copied before writing
+	private boolean complete;
 
 	public Groups() {
 		this.start = -1;
 		this.end = -1;
-		this.allsubmatches = EMPTY;
+		this.slots = EMPTY;
 	}
 
 	public Groups(long start, long end) {
 		this.start = start;
 		this.end = end;
-		this.allsubmatches = EMPTY;
+		this.slots = EMPTY;
 	}
 
-	public Groups(long start, long end, SubMatch[] submatches, SortedSet<SubMatch> allsubmatches) {
+	private Groups(long start, long end, long[] slots, boolean complete) {
 		this.start = start;
 		this.end = end;
-		this.submatches = submatches;
-		this.allsubmatches = allsubmatches;
+		this.slots = slots;
+		this.shared = true;
+		this.complete = complete;
 	}
 
 	public static Groups longest(List<Groups> groups) {
@@ -48,7 +46,7 @@ public class Groups implements Comparable<Groups> {
 	}
 
 	public boolean isComplete() {
-		return submatches != null;
+		return complete;
 	}
 
 	public boolean invalid() {
@@ -75,13 +73,10 @@ public class Groups implements Comparable<Groups> {
 	}
 
 	public long getStart(int no) {
-		if (submatches != null && no < submatches.length) {
-			SubMatch subMatch = submatches[no];
-			if (subMatch != null) {
-				return subMatch.start;
-			}
+		if (!complete || no == 0) {
+			return -1;
 		}
-		return -1;
+		return slot((no - 1) * 2);
 	}
 
 	public long getEnd() {
@@ -89,13 +84,10 @@ public class Groups implements Comparable<Groups> {
 	}
 
 	public long getEnd(int no) {
-		if (submatches != null && no < submatches.length) {
-			SubMatch subMatch = submatches[no];
-			if (subMatch != null) {
-				return subMatch.end;
-			}
+		if (!complete || no == 0) {
+			return -1;
 		}
-		return -1;
+		return slot((no - 1) * 2 + 1);
 	}
 
 	public long range() {
@@ -103,60 +95,78 @@ public class Groups implements Comparable<Groups> {
 	}
 
 	public Groups startGroup(int no, long pos) {
+		shared = true;
 		if (no == 0) {
-			return new Groups(pos, end, submatches, allsubmatches);
+			return new Groups(pos, end, slots, complete);
 		} else {
-			SubMatch[] newSubmatches = newSubmatches(no);
-			newSubmatches[no] = SubMatch.start(pos);
-			return new Groups(start, end, newSubmatches, allsubmatches);
+			long[] newSlots = newSlots(no);
+			newSlots[(no - 1) * 2] = pos;
+			newSlots[(no - 1) * 2 + 1] = -1;
+			return new Groups(start, end, newSlots, true);
 		}
 	}
 
 	public Groups endGroup(int no, long pos) {
+		shared = true;
 		if (no == 0) {
-			return new Groups(start, pos, submatches, allsubmatches);
+			return new Groups(start, pos, slots, complete);
 		} else {
-			SubMatch[] newSubmatches = newSubmatches(no);
-			SortedSet<SubMatch> newAllSubmatches = new TreeSet<>(allsubmatches);
-			if (newSubmatches[no] != null) {
-				SubMatch newSubmatch = newSubmatches[no].end(pos);
-				newSubmatches[no] = newSubmatch;
-				newAllSubmatches.add(newSubmatch);
+			long[] newSlots = newSlots(no);
+			if (newSlots[(no - 1) * 2] >= 0) {
+				newSlots[(no - 1) * 2 + 1] = pos;
 			}
-			return new Groups(start, end, newSubmatches, newAllSubmatches);
+			return new Groups(start, end, newSlots, true);
 		}
 	}
 
-	public SubMatch[] newSubmatches(int no) {
-		int len = submatches == null ? 0 : submatches.length;
-		if (len <= no) {
-			len = no + 1;
-		}
-		SubMatch[] newsubmatches = new SubMatch[len];
-		if (submatches != null) {
-			System.arraycopy(submatches, 0, newsubmatches, 0, submatches.length);
+	private long[] newSlots(int no) {
+		int len = Math.max(slots.length, no * 2);
+		long[] newSlots = new long[len];
+		System.arraycopy(slots, 0, newSlots, 0, slots.length);
+		for (int i = slots.length; i < len; i++) {
+			newSlots[i] = -1;
 		}
-		return newsubmatches;
+		return newSlots;
+	}
+
+	private long slot(int i) {
+		return i < slots.length ? slots[i] : -1;
 	}
 
 	public void reset() {
 		this.start = -1;
 		this.end = -1;
+		this.complete = false;
 	}
 
 	public void update(long start, long end) {
 		this.start = start;
 		this.end = end;
+		this.complete = false;
 	}
 
 	public void update(Groups group) {
-		submatches = group.submatches;
-		allsubmatches = group.allsubmatches;
+		group.shared = true;
+		this.slots = group.slots;
+		this.shared = true;
+		this.complete = group.complete;
 	}
 
 	@Override
 	public String toString() {
-		return start + ":" + end + (submatches == null ? "" : " " + Arrays.toString(submatches));
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(start).append(':').append(end);
+		if (complete) {
+			buffer.append(" [");
+			for (int i = 0; i < slots.length; i += 2) {
+				if (i > 0) {
+					buffer.append(", ");
+				}
+				buffer.append(slots[i]).append(':').append(slots[i + 1]);
+			}
+			buffer.append(']');
+		}
+		return buffer.toString();
 	}
 
 	@Override
@@ -165,15 +175,22 @@ public class Groups implements Comparable<Groups> {
 		if (compare == 0) {
 			compare = Long.compare(end, group.end);
 		}
-		if (compare == 0) {
-			compare = compareSubMatches(allsubmatches, group.allsubmatches);
+		int len = Math.max(slots.length, group.slots.length);
+		for (int i = 0; compare == 0 && i < len; i++) {
+			compare = Long.compare(group.slot(i), slot(i));
 		}
 		return compare;
 	}
 
 	@Override
 	public int hashCode() {
-		return Long.valueOf(start).hashCode() * 7 + Long.valueOf(end).hashCode() * 5 + allsubmatches.hashCode();
+		int hash = Long.hashCode(start) * 7 + Long.hashCode(end) * 5;
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] != -1) {
+				hash = hash * 31 + i * 13 + Long.hashCode(slots[i]);
+			}
+		}
+		return hash;
 	}
 
 	@Override
@@ -188,95 +205,40 @@ public class Groups implements Comparable<Groups> {
 			return false;
 		}
 		Groups that = (Groups) obj;
-		return this.start == that.start
-			&& this.end == that.end
-			&& Arrays.equals(this.submatches, that.submatches)
-			&& this.allsubmatches.equals(that.allsubmatches);
-	}
-
-	public void process(ByteProvider input, NFA grouper) {
-		long groupStart = start;
-		NFAMatcherState state = NFAMatcherState.of(grouper.getStart(), new Groups(), groupStart);
-		input.move(groupStart);
-		while (!input.finished() && input.current() < getEnd()) {
-			byte b = input.next();
-			long current = input.current();
-			state = state.next(b, current);
+		if (this.start != that.start
+			|| this.end != that.end
+			|| this.complete != that.complete) {
+			return false;
 		}
-		update(state.getGroups().first());
-	}
-
-	private static int compareSubMatches(SortedSet<SubMatch> submatches1, SortedSet<SubMatch> submatches2) {
-		Queue<SubMatch> sub1 = new PriorityQueue<>(submatches1);
-		Queue<SubMatch> sub2 = new PriorityQueue<>(submatches2);
-		while (!sub1.isEmpty() && !sub2.isEmpty()) {
-			SubMatch match1 = sub1.remove();
-			SubMatch match2 = sub2.remove();
-			int compare = match2.compareTo(match1);
-			if (compare != 0) {
-				return compare;
+		int len = Math.max(this.slots.length, that.slots.length);
+		for (int i = 0; i < len; i++) {
+			if (this.slot(i) != that.slot(i)) {
+				return false;
 			}
 		}
-		return 0;
+		return true;
 	}
 
-	private static class SubMatch implements Comparable<SubMatch> {
-
-		public long start;
-		public long end;
-
-		private SubMatch(long start) {
-			this.start = start;
-		}
-
-		private SubMatch(long start, long end) {
-			this.start = start;
-			this.end = end;
-		}
-
-		public static SubMatch start(long start) {
-			return new SubMatch(start);
-		}
-
-		public SubMatch end(long end) {
-			return new SubMatch(start, end);
-		}
-
-		@Override
-		public String toString() {
-			return start + ":" + end;
-		}
-
-		@Override
-		public int compareTo(SubMatch submatch) {
-			int compare = Long.compare(start, submatch.start);
-			if (compare == 0) {
-				compare = Long.compare(end, submatch.end);
-			}
-			return compare;
+	public void process(ByteProvider input, GroupExtractor grouper) {
+		int slotCount = grouper.slotCount();
+		if (shared || slots.length != slotCount) {
+			slots = new long[slotCount];
+			shared = false;
 		}
-
-		@Override
-		public int hashCode() {
-			return Long.valueOf(start).hashCode() * 17 + Long.valueOf(end).hashCode() * 13;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) {
-				return true;
-			}
-			if (obj == null) {
-				return false;
-			}
-			if (getClass() != obj.getClass()) {
-				return false;
+		long current = input.current();
+		boolean match = grouper.match(input, start, end, slots); // the extractor writes into the slots of this match
+		input.move(current);
+		if (!match) {
+			Arrays.fill(slots, -1);
+		} else {
+			for (int i = 0; i < slotCount; i += 2) {
+				if (slots[i] < 0 || slots[i + 1] < 0) {
+					slots[i] = -1;
+					slots[i + 1] = -1;
+				}
 			}
-			SubMatch that = (SubMatch) obj;
-			return this.start == that.start
-				&& this.end == that.end;
 		}
-
+		complete = true;
 	}
 
 }
@@ -0,0 +1,22 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+public class IntTableDFA extends TableDFA {
+
+	public int[] transitions; // states * classCount, premultiplied targets
+
+	public IntTableDFA(int start, int accepting, int silent, int accelerated, byte[][] escapes, byte[] classes, int classCount, int[] transitions) {
+		super(start, accepting, silent, accelerated, escapes, classes, classCount);
+		this.transitions = transitions;
+	}
+
+	@Override
+	public int next(int s, byte b) {
+		return transitions[s + (classes[b & 0xff] & 0xff)];
+	}
+
+	@Override
+	public long tableBytes() {
+		return transitions.length * 4L + classBytes();
+	}
+
+}
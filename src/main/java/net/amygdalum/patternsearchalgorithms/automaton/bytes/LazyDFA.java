@@ -0,0 +1,319 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.amygdalum.util.text.ByteRange;
+
+public class LazyDFA extends DFA {
+
+	private static final int UNKNOWN = -2;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int MIN_FLUSHES = 3;
+	private static final int MIN_STEPS_PER_STATE = 10;
+
+	private Automaton automaton;
+	private int cacheSize;
+
+	private int[][] sets;
+	private int[] lengths;
+	private boolean[] accepting;
+	private boolean[] silent;
+	private int[] transitions;
+	private Map<StateSet, Integer> index;
+	private int size;
+
+	private int flushes;
+	private long steps;
+	private boolean simulating;
+	private boolean simulateOnly; // never cache states, simulate from the start
+
+	private int[] scratch;
+	private int[] marks;
+	private int generation;
+
+	LazyDFA(Automaton automaton, int cacheSize, boolean simulateOnly) {
+		super(0);
+		this.automaton = automaton;
+		this.cacheSize = Math.max(cacheSize, 3);
+		int capacity = Math.min(INITIAL_CAPACITY, this.cacheSize);
+		this.sets = new int[capacity][];
+		this.lengths = new int[capacity];
+		this.accepting = new boolean[capacity];
+		this.silent = new boolean[capacity];
+		this.transitions = new int[capacity * automaton.classCount];
+		this.index = new HashMap<>();
+		this.scratch = new int[automaton.nfa.stateCount];
+		this.marks = new int[automaton.nfa.stateCount];
+		this.simulateOnly = simulateOnly;
+		reset();
+		if (simulateOnly) {
+			simulating = true;
+			startSimulation(sets[0]);
+		}
+	}
+
+	public static LazyDFA from(NFA nfa, int cacheSize) {
+		nfa = nfa.clone();
+		nfa.eliminateEpsilons();
+		return new LazyDFA(Automaton.of(nfa), cacheSize, false);
+	}
+
+	public static LazyDFA simulation(NFA nfa) {
+		nfa = nfa.clone();
+		nfa.eliminateEpsilons();
+		return new LazyDFA(Automaton.of(nfa), 3, true);
+	}
+
+	@Override
+	public DFA instance() {
+		return new LazyDFA(automaton, cacheSize, simulateOnly);
+	}
+
+	public boolean isSimulating() {
+		return simulating;
+	}
+
+	Automaton getAutomaton() {
+		return automaton;
+	}
+
+	int getCacheSize() {
+		return cacheSize;
+	}
+
+	boolean isSimulateOnly() {
+		return simulateOnly;
+	}
+
+	@Override
+	public int next(int s, byte b) {
+		steps++;
+		int c = automaton.classes[b & 0xff] & 0xff;
+		if (simulating) {
+			return simulate(s, c);
+		}
+		int t = transitions[s * automaton.classCount + c];
+		if (t == UNKNOWN) {
+			t = compute(s, c);
+		}
+		return t;
+	}
+
+	@Override
+	public boolean accept(int s) {
+		return s >= 0 && accepting[s];
+	}
+
+	@Override
+	public boolean silent(int s) {
+		return s < 0 || silent[s];
+	}
+
+	@Override
+	public long tableBytes() { // cached states belong to the instances
+		return automaton.nfa.tableBytes();
+	}
+
+	private int compute(int s, int c) {
+		int count = successors(sets[s], lengths[s], c);
+		if (count == 0) {
+			transitions[s * automaton.classCount + c] = -1;
+			return -1;
+		}
+		int[] set = Arrays.copyOf(scratch, count);
+		Arrays.sort(set);
+		StateSet key = new StateSet(set);
+		Integer known = index.get(key);
+		if (known != null) {
+			transitions[s * automaton.classCount + c] = known;
+			return known;
+		}
+		if (size >= cacheSize) {
+			s = flush(s);
+			if (simulating) {
+				return simulate(s, c);
+			}
+		}
+		int t = add(key);
+		transitions[s * automaton.classCount + c] = t;
+		return t;
+	}
+
+	private int flush(int s) {
+		int[] current = Arrays.copyOf(sets[s], lengths[s]);
+		flushes++;
+		if (flushes >= MIN_FLUSHES && steps < (long) MIN_STEPS_PER_STATE * cacheSize) {
+			simulating = true;
+		}
+		steps = 0;
+		if (simulating) {
+			startSimulation(current);
+			return 1;
+		}
+		reset();
+		StateSet key = new StateSet(current);
+		Integer known = index.get(key);
+		if (known != null) {
+			return known;
+		}
+		return add(key);
+	}
+
+	private void reset() {
+		index.clear();
+		size = 0;
+		Arrays.fill(transitions, UNKNOWN);
+		add(new StateSet(new int[] { automaton.nfa.start }));
+	}
+
+	private int add(StateSet key) {
+		if (size >= sets.length) {
+			grow();
+		}
+		int id = size;
+		sets[id] = key.states;
+		lengths[id] = key.states.length;
+		flag(id);
+		index.put(key, id);
+		size++;
+		return id;
+	}
+
+	private void grow() {
+		int capacity = Math.min(sets.length * 2, cacheSize);
+		int oldTransitions = transitions.length;
+		sets = Arrays.copyOf(sets, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		accepting = Arrays.copyOf(accepting, capacity);
+		silent = Arrays.copyOf(silent, capacity);
+		transitions = Arrays.copyOf(transitions, capacity * automaton.classCount);
+		Arrays.fill(transitions, oldTransitions, transitions.length, UNKNOWN);
+	}
+
+	private void flag(int id) {
+		int[] set = sets[id];
+		boolean accept = false;
+		boolean silence = true;
+		for (int i = 0; i < lengths[id]; i++) {
+			accept |= automaton.nfa.accepting[set[i]];
+			silence &= automaton.nfa.silent[set[i]];
+		}
+		accepting[id] = accept;
+		silent[id] = silence;
+	}
+
+	private void startSimulation(int[] current) {
+		int[] start = sets[0];
+		index.clear();
+		transitions = new int[0];
+		sets = new int[][] { start, new int[automaton.nfa.stateCount], new int[automaton.nfa.stateCount] };
+		lengths = new int[] { start.length, current.length, 0 };
+		accepting = Arrays.copyOf(accepting, 3);
+		silent = Arrays.copyOf(silent, 3);
+		System.arraycopy(current, 0, sets[1], 0, current.length);
+		flag(1);
+		size = 3;
+	}
+
+	private int simulate(int s, int c) {
+		int count = successors(sets[s], lengths[s], c);
+		if (count == 0) {
+			return -1;
+		}
+		int t = s == 1 ? 2 : 1;
+		System.arraycopy(scratch, 0, sets[t], 0, count);
+		lengths[t] = count;
+		flag(t);
+		return t;
+	}
+
+	private int successors(int[] set, int length, int c) {
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(marks, 0);
+			generation = 1;
+		}
+		CompactNFA nfa = automaton.nfa;
+		int b = automaton.representatives[c];
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			int state = set[i];
+			for (int j = nfa.out[state]; j < nfa.out[state + 1]; j++) {
+				if (nfa.from[j] <= b && b <= nfa.to[j]) {
+					int target = nfa.target[j];
+					if (marks[target] != generation) {
+						marks[target] = generation;
+						scratch[count] = target;
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	static class Automaton {
+
+		public CompactNFA nfa;
+		public byte[] classes;
+		public int classCount;
+		public int[] representatives;
+
+		public static Automaton of(NFA nfa) {
+			Automaton automaton = new Automaton();
+			automaton.nfa = CompactNFA.of(nfa);
+
+			List<ByteRange> ranges = automaton.nfa.byteRanges;
+			automaton.classes = new byte[256];
+			automaton.classCount = ranges.size();
+			automaton.representatives = new int[ranges.size()];
+			for (int i = 0; i < ranges.size(); i++) {
+				ByteRange range = ranges.get(i);
+				int from = range.from[0] & 0xff;
+				int to = range.to[0] & 0xff;
+				for (int b = from; b <= to; b++) {
+					automaton.classes[b] = (byte) i;
+				}
+				automaton.representatives[i] = from;
+			}
+			return automaton;
+		}
+
+	}
+
+	private static class StateSet {
+
+		private int[] states;
+		private int hash;
+
+		public StateSet(int[] states) {
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			StateSet that = (StateSet) obj;
+			return this.hash == that.hash
+				&& Arrays.equals(this.states, that.states);
+		}
+
+	}
+}
@@ -5,16 +5,22 @@ import java.nio.charset.Charset;
 public class MinimalNFAComponentFactory implements NFAComponentFactory {
 
 	private Charset charset;
+	private CompileBudget budget;
 
 	public MinimalNFAComponentFactory(Charset charset) {
+		this(charset, CompileBudget.unlimited());
+	}
+
+	public MinimalNFAComponentFactory(Charset charset, CompileBudget budget) {
 		this.charset = charset;
+		this.budget = budget;
 	}
 
 	@Override
 	public NFAComponent create(State start, State end) {
 		end.setAccepting();
 		NFA nfa = new NFA(start, charset);
-		nfa.determinize();
+		nfa.determinize(budget);
 
 		return new NFAComponent(nfa.getStart(), getEnd(nfa));
 	}
@@ -1,26 +1,34 @@
 package net.amygdalum.patternsearchalgorithms.automaton.bytes;
 
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import net.amygdalum.patternsearchalgorithms.automaton.HashQueue;
+import net.amygdalum.patternsearchalgorithms.automaton.PartitionRefinement;
+import net.amygdalum.patternsearchalgorithms.automaton.StateSet;
+import net.amygdalum.patternsearchalgorithms.automaton.StateSetBuilder;
 import net.amygdalum.util.builders.Lists;
 import net.amygdalum.util.text.ByteRange;
 import net.amygdalum.util.worklist.WorkSet;
 
 public class NFA implements Cloneable {
 
+	private static final int[] NONE = new int[0];
+
 	private Charset charset;
 	private State start;
 	private List<ByteRange> byteRanges;
@@ -62,11 +70,15 @@ public class NFA implements Cloneable {
 		return Arrays.copyOfRange(states, accepting, states.length);
 	}
 
+	public List<ByteRange> getByteRanges() {
+		return byteRanges;
+	}
+
 	private static State[] clean(State start, State error) {
-		WorkSet<State> todo = new WorkSet<>();
+		WorkSet<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(start);
 		Set<State> dead = new HashSet<>();
-		WorkSet<State> live = new WorkSet<>();
+		WorkSet<State> live = new WorkSet<>(new HashQueue<State>());
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
 			if (state.isAccepting()) {
@@ -124,22 +136,75 @@ public class NFA implements Cloneable {
 		return right + 1;
 	}
 
+	public int maxLength() { // length of the longest accepted word, -1 if unbounded
+		CompactNFA nfa = CompactNFA.of(this);
+		int[] incoming = new int[nfa.stateCount];
+		for (int target : nfa.epsilonTarget) {
+			incoming[target]++;
+		}
+		for (int target : nfa.target) {
+			incoming[target]++;
+		}
+		int[] todo = new int[nfa.stateCount];
+		int size = 0;
+		for (int i = 0; i < nfa.stateCount; i++) {
+			if (incoming[i] == 0) {
+				todo[size++] = i;
+			}
+		}
+		int[] lengths = new int[nfa.stateCount];
+		int max = 0;
+		for (int done = 0; done < size; done++) {
+			int i = todo[done];
+			if (nfa.accepting[i]) {
+				max = Math.max(max, lengths[i]);
+			}
+			for (int t = nfa.epsilonOut[i]; t < nfa.epsilonOut[i + 1]; t++) {
+				size = relax(nfa.epsilonTarget[t], lengths[i], lengths, incoming, todo, size);
+			}
+			for (int t = nfa.out[i]; t < nfa.out[i + 1]; t++) {
+				size = relax(nfa.target[t], lengths[i] + 1, lengths, incoming, todo, size);
+			}
+		}
+		if (size < nfa.stateCount) { // cycle
+			return -1;
+		}
+		return max;
+	}
+
+	private static int relax(int target, int length, int[] lengths, int[] incoming, int[] todo, int size) {
+		lengths[target] = Math.max(lengths[target], length);
+		incoming[target]--;
+		if (incoming[target] == 0) {
+			todo[size++] = target;
+		}
+		return size;
+	}
+
 	public void prune() {
 		eliminateTrivialEpsilons();
+	}
+
+	public void eliminateEpsilons() {
+		eliminateAllEpsilons();
 		mergeTransitions();
 	}
 
 	public void determinize() {
+		determinize(CompileBudget.unlimited());
+	}
+
+	public void determinize(CompileBudget budget) {
 		eliminateAllEpsilons();
 		mergeTransitions();
-		determinizeStates();
+		determinizeStates(budget);
 		totalizeStates();
-		minimizeStates();
+		minimizeStates(budget);
 	}
 
 	private void totalizeStates() {
 		State error = new State();
-		Queue<State> todo = new WorkSet<>();
+		Queue<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(error);
 		todo.add(start);
 		while (!todo.isEmpty()) {
@@ -166,149 +231,115 @@ public class NFA implements Cloneable {
 		init(start, error);
 	}
 
-	private void minimizeStates() {
-		List<Set<State>> partitions = new LinkedList<>();
-		Queue<Set<State>> todo = new LinkedList<>();
-
-		SplitPartition initialPartition = initialPartition();
-
-		if (initialPartition.min.isEmpty()) {
-			partitions.add(initialPartition.max);
-		} else {
-			partitions.add(initialPartition.max);
-			partitions.add(initialPartition.min);
-			todo.add(initialPartition.min);
-		}
-
-		while (!todo.isEmpty()) {
-			Set<State> current = todo.remove();
-			for (ByteRange charRange : byteRanges) {
-				Set<State> origins = origins(current, charRange);
-				ListIterator<Set<State>> partitionIterator = partitions.listIterator();
-				while (partitionIterator.hasNext()) {
-					Set<State> partition = partitionIterator.next();
-					SplitPartition splitPartition = split(partition, origins);
-					if (splitPartition.min.isEmpty()) {
-						continue;
-					}
-					partitionIterator.set(splitPartition.max);
-					partitionIterator.add(splitPartition.min);
-					if (todo.contains(partition)) {
-						todo.remove(partition);
-						todo.add(splitPartition.max);
-						todo.add(splitPartition.min);
-					} else {
-						todo.add(splitPartition.min);
-					}
+	private void minimizeStates(CompileBudget budget) {
+		budget.check();
+		CompactNFA nfa = CompactNFA.of(this);
+		int symbolCount = byteRanges.size();
+		int[] symbols = symbolTable();
+		int[] transitions = new int[nfa.stateCount * symbolCount];
+		Arrays.fill(transitions, -1);
+		int[] initialBlocks = new int[nfa.stateCount];
+		for (int i = 0; i < nfa.stateCount; i++) {
+			initialBlocks[i] = nfa.accepting[i] ? 1 : 0;
+			for (int t = nfa.out[i]; t < nfa.out[i + 1]; t++) {
+				for (int b = nfa.from[t]; b <= nfa.to[t]; b++) {
+					transitions[i * symbolCount + symbols[b]] = nfa.target[t];
 				}
 			}
 		}
 
-		State newstart = digest(partitions);
+		int[] blocks = PartitionRefinement.minimize(nfa.stateCount, symbolCount, transitions, initialBlocks);
+
+		State newstart = digest(blocks, nfa);
 		init(newstart);
 	}
 
-	private State digest(List<Set<State>> partitions) {
-		Map<State, State> mapping = new IdentityHashMap<>();
-		State start = null;
-		for (Set<State> partition : partitions) {
-			State state = new State();
-			for (State partstate : partition) {
-				mapping.put(partstate, state);
-				if (partstate.isAccepting()) {
-					state.setAccepting();
-				}
-				if (!partstate.isSilent()) {
-					state.setSilent(false);
-				}
-				if (partstate == this.start) {
-					start = state;
-				}
+	private int[] symbolTable() {
+		int[] symbols = new int[256];
+		for (int i = 0; i < byteRanges.size(); i++) {
+			ByteRange range = byteRanges.get(i);
+			for (int b = range.from[0] & 0xff; b <= (range.to[0] & 0xff); b++) {
+				symbols[b] = i;
 			}
 		}
-
-		for (Set<State> partition : partitions) {
-			State representative = partition.iterator().next();
-
-			for (Transition transition : representative.out()) {
-				State origin = transition.getOrigin();
-				State mappedOrigin = mapping.get(origin);
-				State target = transition.getTarget();
-				State mappedTarget = mapping.get(target);
-				transition.asPrototype().withOrigin(mappedOrigin).withTarget(mappedTarget).connect();
-			}
-		}
-		return start;
+		return symbols;
 	}
 
-	private SplitPartition split(Set<State> partition, Set<State> splitter) {
-		Set<State> intersection = new HashSet<>(partition.size());
-		Set<State> remainder = new HashSet<>(partition.size());
-		for (State state : partition) {
-			if (splitter.contains(state)) {
-				intersection.add(state);
-			} else {
-				remainder.add(state);
+	private static State digest(int[] blocks, CompactNFA nfa) {
+		int blockCount = 0;
+		for (int block : blocks) {
+			blockCount = Math.max(blockCount, block + 1);
+		}
+		State[] mapping = new State[blockCount];
+		int[] representatives = new int[blockCount];
+		for (int i = 0; i < nfa.stateCount; i++) {
+			int block = blocks[i];
+			State state = mapping[block];
+			if (state == null) {
+				state = new State();
+				mapping[block] = state;
+				representatives[block] = i;
+			}
+			if (nfa.accepting[i]) {
+				state.setAccepting();
+			}
+			if (!nfa.silent[i]) {
+				state.setSilent(false);
 			}
 		}
-		return new SplitPartition(intersection, remainder);
-	}
 
-	private Set<State> origins(Set<State> states, ByteRange byteRange) {
-		Set<State> in = new HashSet<>();
-		for (State state : states) {
-			for (Transition transition : state.in()) {
-				if (transition instanceof OrdinaryTransition && ((OrdinaryTransition) transition).accepts(byteRange.from[0])) {
-					in.add(transition.getOrigin());
+		for (int block = 0; block < blockCount; block++) {
+			int representative = representatives[block];
+			State mappedOrigin = mapping[block];
+			for (int t = nfa.out[representative]; t < nfa.out[representative + 1]; t++) {
+				State mappedTarget = mapping[blocks[nfa.target[t]]];
+				byte from = (byte) nfa.from[t];
+				byte to = (byte) nfa.to[t];
+				if (from == to) {
+					new ByteTransition(mappedOrigin, from, mappedTarget).connect();
+				} else {
+					new BytesTransition(mappedOrigin, from, to, mappedTarget).connect();
 				}
 			}
 		}
-		return in;
+		return mapping[blocks[nfa.start]];
 	}
 
-	private SplitPartition initialPartition() {
-		Set<State> accept = new HashSet<>(states.length);
-		Set<State> nonaccept = new HashSet<>(states.length);
-		for (State state : states) {
-			if (state.isAccepting()) {
-				accept.add(state);
-			} else {
-				nonaccept.add(state);
-			}
-		}
-		return new SplitPartition(accept, nonaccept);
-	}
+	private void determinizeStates(CompileBudget budget) {
+		CompactNFA nfa = CompactNFA.of(this);
+		int symbolCount = byteRanges.size();
+		int[][] successors = successors(nfa, symbolCount, symbolTable());
 
-	private void determinizeStates() {
-		Map<Set<State>, State> dStates = new HashMap<>();
-		Queue<Set<State>> todo = new WorkSet<>();
+		Map<StateSet, State> dStates = new HashMap<>();
+		Queue<StateSet> todo = new ArrayDeque<>();
+		StateSetBuilder nextset = new StateSetBuilder(nfa.stateCount);
 
-		Set<State> startset = new HashSet<>();
-		startset.add(start);
+		nextset.add(nfa.start);
+		StateSet startset = nextset.build();
 		todo.add(startset);
 		State dStart = new State();
 		dStates.put(startset, dStart);
 
 		while (!todo.isEmpty()) {
-			Set<State> current = todo.remove();
+			StateSet current = todo.remove();
 			State dState = dStates.get(current);
-			transferAccept(current, dState);
+			transferAccept(nfa, current, dState);
 
-			for (ByteRange range : byteRanges) {
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				ByteRange range = byteRanges.get(symbol);
 				byte from = range.from[0];
 				byte to = range.to[0];
-				Set<State> nextset = new HashSet<>();
-				for (State state : current) {
-					for (Transition transition : state.out()) {
-						if (transition instanceof OrdinaryTransition && ((OrdinaryTransition) transition).accepts(from))
-							nextset.add(transition.getTarget());
-					}
+				nextset.clear();
+				for (int i = 0; i < current.size(); i++) {
+					nextset.addAll(successors[current.get(i) * symbolCount + symbol]);
 				}
-				State target = dStates.get(nextset);
+				StateSet next = nextset.build();
+				State target = dStates.get(next);
 				if (target == null) {
-					todo.add(nextset);
+					budget.charge();
+					todo.add(next);
 					target = new State();
-					dStates.put(nextset, target);
+					dStates.put(next, target);
 				}
 				if (from == to) {
 					new ByteTransition(dState, from, target).connect();
@@ -320,12 +351,33 @@ public class NFA implements Cloneable {
 		init(dStart);
 	}
 
-	private void transferAccept(Set<State> states, State dState) {
+	private static int[][] successors(CompactNFA nfa, int symbolCount, int[] symbols) {
+		int[][] successors = new int[nfa.stateCount * symbolCount][];
+		Arrays.fill(successors, NONE);
+		for (int i = 0; i < nfa.stateCount; i++) {
+			for (int t = nfa.out[i]; t < nfa.out[i + 1]; t++) {
+				for (int b = nfa.from[t]; b <= nfa.to[t]; b++) {
+					int index = i * symbolCount + symbols[b];
+					successors[index] = append(successors[index], nfa.target[t]);
+				}
+			}
+		}
+		return successors;
+	}
+
+	private static int[] append(int[] list, int value) {
+		int[] appended = Arrays.copyOf(list, list.length + 1);
+		appended[list.length] = value;
+		return appended;
+	}
+
+	private static void transferAccept(CompactNFA nfa, StateSet set, State dState) {
 		boolean accepting = false;
 		boolean silent = true;
-		for (State state : states) {
-			accepting |= state.isAccepting();
-			silent &= state.isSilent();
+		for (int i = 0; i < set.size(); i++) {
+			int state = set.get(i);
+			accepting |= nfa.accepting[state];
+			silent &= nfa.silent[state];
 		}
 		dState.setAccepting(accepting);
 		dState.setSilent(silent);
@@ -334,7 +386,7 @@ public class NFA implements Cloneable {
 	private static List<ByteRange> computeEquivalentByteRanges(State start) {
 		ByteRangeAccumulator acc = new ByteRangeAccumulator();
 
-		Queue<State> todo = new WorkSet<>();
+		Queue<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(start);
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
@@ -350,7 +402,7 @@ public class NFA implements Cloneable {
 	}
 
 	private void mergeTransitions() {
-		Queue<State> todo = new WorkSet<>();
+		Queue<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(start);
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
@@ -427,66 +479,83 @@ public class NFA implements Cloneable {
 		return null;
 	}
 
-	private void eliminateTrivialEpsilons() {
+	private void eliminateTrivialEpsilons() { // keeps the priority of the remaining transitions, a state tries its ordinary transitions before its epsilons
+		Map<State, List<Transition>> prioritized = new LinkedHashMap<>();
 		Queue<State> todo = new WorkSet<>();
 		todo.add(start);
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
-			for (Transition transition : state.out()) {
-				todo.add(transition.getTarget());
-			}
-			for (EpsilonTransition epsilon : transitiveEpsilons(state)) {
-				State origin = epsilon.getOrigin();
-				if (origin == state) {
-					epsilon.remove();
-				}
-				State target = epsilon.getTarget();
-				if (target.isAccepting()) {
-					state.setAccepting();
+			List<Transition> transitions = prioritized(state);
+			for (Transition transition : transitions) {
+				if (transition != null) {
+					todo.add(transition.getTarget());
 				}
-				if (!target.isSilent()) {
-					state.setSilent(false);
+			}
+			prioritized.put(state, transitions);
+		}
+		for (Map.Entry<State, List<Transition>> entry : prioritized.entrySet()) {
+			State state = entry.getKey();
+			for (Transition transition : new ArrayList<>(state.out())) {
+				transition.remove();
+			}
+			State run = state; // collects acceptance and ordinary transitions until the next epsilon
+			for (Transition transition : entry.getValue()) {
+				if (transition instanceof EpsilonTransition) {
+					transition.asPrototype().withOrigin(state).withTarget(transition.getTarget()).connect();
+					run = null;
+					continue;
 				}
-				for (Transition transition : target.out()) {
-					if (transition instanceof OrdinaryTransition) {
-						transition.asPrototype().withOrigin(state).withTarget(transition.getTarget()).connect();
-					}
+				if (run == null) {
+					run = new State();
+					new EpsilonTransition(state, run).connect();
 				}
-				for (Transition transition : target.out()) {
-					if (transition instanceof EpsilonTransition) {
-						Action action = transition.getAction();
-						if (action != null) {
-							transition.asPrototype().withOrigin(state).withTarget(transition.getTarget()).withAction(action).connect();
-						}
-					}
+				if (transition == null) {
+					run.setAccepting();
+				} else {
+					transition.asPrototype().withOrigin(run).withTarget(transition.getTarget()).connect();
 				}
 			}
 		}
+		for (State state : states) {
+			if (!prioritized.containsKey(state)) {
+				state.disconnect();
+			}
+		}
 		init(start);
 	}
 
-	private Set<EpsilonTransition> transitiveEpsilons(State state) {
-
-		WorkSet<EpsilonTransition> todo = new WorkSet<>();
-		for (Transition transition : state.out()) {
-			if (transition instanceof EpsilonTransition) {
-				todo.add((EpsilonTransition) transition);
+	private List<Transition> prioritized(State state) { // ordinary transitions and epsilons with actions reachable without action, in the order a backtracking matcher tries them, null for acceptance
+		List<Transition> prioritized = new ArrayList<>();
+		Set<State> visited = new HashSet<>();
+		Deque<Iterator<Transition>> stack = new ArrayDeque<>();
+		visited.add(state);
+		if (state.isAccepting()) {
+			prioritized.add(null);
+		}
+		stack.push(state.out().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<Transition> transitions = stack.peek();
+			if (!transitions.hasNext()) {
+				stack.pop();
+				continue;
 			}
-		}
-		while (!todo.isEmpty()) {
-			EpsilonTransition current = todo.remove();
-			if (current.getAction() != null) {
-				todo.remove(current);
+			Transition transition = transitions.next();
+			if (transition instanceof OrdinaryTransition || transition.getAction() != null) {
+				prioritized.add(transition);
 				continue;
 			}
-			State target = current.getTarget();
-			for (Transition transition : target.out()) {
-				if (transition instanceof EpsilonTransition) {
-					todo.add((EpsilonTransition) transition);
+			State target = transition.getTarget();
+			if (visited.add(target)) {
+				if (target.isAccepting()) {
+					prioritized.add(null);
+				}
+				if (!target.isSilent()) {
+					state.setSilent(false);
 				}
+				stack.push(target.out().iterator());
 			}
 		}
-		return todo.getDone();
+		return prioritized;
 	}
 
 	private void eliminateAllEpsilons() {
@@ -583,7 +652,7 @@ public class NFA implements Cloneable {
 		targets.add(epsilon.getTarget());
 		while (!targets.isEmpty()) {
 			State next = targets.remove();
-			for (Transition transition : next.out()) {
+			for (Transition transition : new ArrayList<>(next.out())) { // connecting may extend next.out() if next == origin
 				if (transition instanceof OrdinaryTransition) {
 					transition.asPrototype().withOrigin(origin).withTarget(transition.getTarget()).connect();
 				} else if (transition instanceof EpsilonTransition) {
@@ -608,7 +677,7 @@ public class NFA implements Cloneable {
 		origins.add(epsilon.getOrigin());
 		while (!origins.isEmpty()) {
 			State next = origins.remove();
-			for (Transition transition : next.in()) {
+			for (Transition transition : new ArrayList<>(next.in())) { // connecting may extend next.in() if next == target
 				if (transition instanceof OrdinaryTransition) {
 					transition.asPrototype().withOrigin(transition.getOrigin()).withTarget(target).connect();
 				} else if (transition instanceof EpsilonTransition) {
@@ -672,15 +741,4 @@ public class NFA implements Cloneable {
 
 	}
 
-	private static class SplitPartition {
-		public Set<State> max;
-		public Set<State> min;
-
-		public SplitPartition(Set<State> intersection, Set<State> remainder) {
-			this.max = intersection.size() > remainder.size() ? intersection : remainder;
-			this.min = intersection.size() <= remainder.size() ? intersection : remainder;
-		}
-
-	}
-
 }
@@ -79,6 +79,13 @@ public class NFABuilder implements RegexNodeVisitor<NFAComponent> {
 		return factory.create(s, e);
 	}
 
+	public NFAComponent matchAnyByte() {
+		State s = new State();
+		State e = new State();
+		new BytesTransition(s, (byte) 0x00, (byte) 0xff, e).connect();
+		return factory.create(s, e);
+	}
+
 	private void connect(State s, State e, byte[] bytes) {
 		if (bytes.length == 0) {
 			//do nothing
@@ -271,8 +278,8 @@ public class NFABuilder implements RegexNodeVisitor<NFAComponent> {
 	public NFAComponent matchOptional(NFAComponent a) {
 		State s = new State();
 		State e = new State();
-		new EpsilonTransition(s, e).connect();
 		new EpsilonTransition(s, a.start).connect();
+		new EpsilonTransition(s, e).connect();
 		new EpsilonTransition(a.end, e).connect();
 		return factory.create(s, e);
 	}
@@ -319,15 +326,15 @@ public class NFABuilder implements RegexNodeVisitor<NFAComponent> {
 	public NFAComponent matchUpToN(NFAComponent a, int count) {
 		State s = new State();
 		State e = new State();
-		new EpsilonTransition(s, e).connect();
 
 		State current = s;
-		for (int i = 0; i < count; i++) {
+		for (int i = 0; i < count; i++) { // each copy is tried before skipping the rest, as in greedy loops
 			NFAComponent ai = a.clone();
 			new EpsilonTransition(current, ai.start).connect();
-			new EpsilonTransition(ai.end, e).connect();
+			new EpsilonTransition(current, e).connect();
 			current = ai.end;
 		}
+		new EpsilonTransition(current, e).connect();
 		return factory.create(s, e);
 	}
 
@@ -8,6 +8,10 @@ public class StartGroup implements Action {
 		this.no = no;
 	}
 
+	public int getNo() {
+		return no;
+	}
+
 	@Override
 	public Groups applyTo(Groups groups, long pos) {
 		return groups.startGroup(no, pos);
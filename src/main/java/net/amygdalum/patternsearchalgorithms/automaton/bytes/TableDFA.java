@@ -0,0 +1,260 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.amygdalum.util.text.ByteRange;
+
+public abstract class TableDFA extends DFA {
+
+	public int accepting; // accepting to infinity is accepting
+	public int silent; // -1 to silent is silent
+	public int accelerated; // silent (exclusive) to accelerated is accelerated
+	public byte[][] escapes; // state index to bytes leaving an accelerated state
+	public byte[] classes; // byte to byte class, 256 entries
+	public int classCount; // stride, all state ids are premultiplied by classCount
+
+	public TableDFA(int start, int accepting, int silent, int accelerated, byte[][] escapes, byte[] classes, int classCount) {
+		super(start);
+		this.accepting = accepting;
+		this.silent = silent;
+		this.accelerated = accelerated;
+		this.escapes = escapes;
+		this.classes = classes;
+		this.classCount = classCount;
+	}
+
+	public static TableDFA from(NFA nfa) {
+		return from(nfa, CompileBudget.unlimited());
+	}
+
+	public static TableDFA from(NFA nfa, CompileBudget budget) {
+		nfa = nfa.clone();
+		nfa.determinize(budget);
+		return new DFABuilder(CompactNFA.of(nfa)).build();
+	}
+
+	@Override
+	public boolean accept(int s) {
+		return s >= accepting;
+	}
+
+	@Override
+	public boolean silent(int s) {
+		return s <= silent;
+	}
+
+	@Override
+	public boolean accelerated(int s) {
+		return s > silent && s <= accelerated;
+	}
+
+	@Override
+	public byte[] escapes(int s) {
+		return escapes[s / classCount];
+	}
+
+	long classBytes() {
+		long bytes = classes.length;
+		for (byte[] escape : escapes) {
+			if (escape != null) {
+				bytes += escape.length;
+			}
+		}
+		return bytes;
+	}
+
+	private static class DFABuilder {
+
+		private static final int MAX_ESCAPES = 3;
+
+		private CompactNFA nfa;
+		private List<ByteRange> ranges;
+		private int[] ids; // dfa state of each nfa state
+		private byte[] classes;
+		private int classCount;
+		private int[] transitions;
+		private byte[][] escapes; // per nfa state, null if the state is not accelerated
+		private int accepting; // accepting to infinity is accepting
+		private int silent; // 0 to silent is silent
+		private int accelerated; // silent (exclusive) to accelerated is accelerated
+
+		public DFABuilder(CompactNFA nfa) {
+			this.nfa = nfa;
+			this.ranges = nfa.byteRanges;
+		}
+
+		private void computeTransitions() {
+			Map<Column, Integer> columns = new HashMap<>();
+			int[][] classColumns = new int[ranges.size()][];
+			byte[] classes = new byte[256];
+			int classCount = 0;
+			for (ByteRange range : ranges) {
+				Column column = new Column(columnOf(range.from[0]));
+				Integer index = columns.get(column);
+				if (index == null) {
+					index = classCount;
+					columns.put(column, index);
+					classColumns[classCount] = column.targets;
+					classCount++;
+				}
+				int from = range.from[0] & 0xff;
+				int to = range.to[0] & 0xff;
+				for (int i = from; i <= to; i++) {
+					classes[i] = (byte) index.intValue();
+				}
+			}
+			int[] transitions = new int[nfa.stateCount * classCount];
+			for (int c = 0; c < classCount; c++) {
+				int[] column = classColumns[c];
+				for (int i = 0; i < nfa.stateCount; i++) {
+					transitions[i * classCount + c] = column[i];
+				}
+			}
+			this.classes = classes;
+			this.classCount = classCount;
+			this.transitions = transitions;
+		}
+
+		private int[] columnOf(byte b) {
+			int[] column = new int[nfa.stateCount];
+			for (int state = 0; state < nfa.stateCount; state++) {
+				int target = nfa.next(state, b);
+				column[ids[state]] = target < 0 ? -1 : ids[target];
+			}
+			return column;
+		}
+
+		private void computeEscapes() {
+			escapes = new byte[nfa.stateCount][];
+			nextstate: for (int state = 0; state < nfa.stateCount; state++) {
+				if (nfa.accepting[state] || nfa.silent[state]) {
+					continue;
+				}
+				byte[] bytes = new byte[MAX_ESCAPES];
+				int count = 0;
+				for (ByteRange range : ranges) {
+					if (nfa.next(state, range.from[0]) == state) {
+						continue;
+					}
+					int from = range.from[0] & 0xff;
+					int to = range.to[0] & 0xff;
+					if (count + to - from + 1 > MAX_ESCAPES) {
+						continue nextstate;
+					}
+					for (int i = from; i <= to; i++) {
+						bytes[count] = (byte) i;
+						count++;
+					}
+				}
+				escapes[state] = Arrays.copyOf(bytes, count);
+			}
+		}
+
+		private void partitionStates() { // non accepting before accepting, silent before not silent, accelerated before not accelerated, otherwise in nfa order
+			int[] counts = new int[9];
+			for (int state = 0; state < nfa.stateCount; state++) {
+				counts[rank(state) + 1]++;
+			}
+			for (int rank = 1; rank < counts.length; rank++) {
+				counts[rank] += counts[rank - 1];
+			}
+			ids = new int[nfa.stateCount];
+			silent = -1;
+			accepting = 0;
+			accelerated = -1;
+			for (int state = 0; state < nfa.stateCount; state++) {
+				int i = counts[rank(state)]++;
+				ids[state] = i;
+				if (nfa.silent[state]) {
+					silent = Math.max(silent, i);
+				}
+				if (!nfa.accepting[state]) {
+					accepting = Math.max(accepting, i + 1);
+				}
+				if (escapes[state] != null) {
+					accelerated = Math.max(accelerated, i);
+				}
+			}
+		}
+
+		private int rank(int state) {
+			return (nfa.accepting[state] ? 4 : 0) + (nfa.silent[state] ? 0 : 2) + (escapes[state] != null ? 0 : 1);
+		}
+
+		public TableDFA build() {
+			computeEscapes();
+			partitionStates();
+			computeTransitions();
+
+			int start = ids[nfa.start] * classCount;
+			int accepting = this.accepting * classCount;
+			int silent = (this.silent + 1) * classCount - 1;
+			int accelerated = this.accelerated > this.silent ? this.accelerated * classCount : silent;
+			byte[][] escapes = new byte[nfa.stateCount][];
+			for (int state = 0; state < nfa.stateCount; state++) {
+				escapes[ids[state]] = this.escapes[state];
+			}
+			int max = (nfa.stateCount - 1) * classCount;
+			if (max <= Byte.MAX_VALUE) {
+				byte[] transitions = new byte[this.transitions.length];
+				for (int i = 0; i < transitions.length; i++) {
+					transitions[i] = (byte) premultiplied(this.transitions[i]);
+				}
+				return new ByteTableDFA(start, accepting, silent, accelerated, escapes, classes, classCount, transitions);
+			} else if (max <= Short.MAX_VALUE) {
+				short[] transitions = new short[this.transitions.length];
+				for (int i = 0; i < transitions.length; i++) {
+					transitions[i] = (short) premultiplied(this.transitions[i]);
+				}
+				return new ShortTableDFA(start, accepting, silent, accelerated, escapes, classes, classCount, transitions);
+			} else {
+				int[] transitions = new int[this.transitions.length];
+				for (int i = 0; i < transitions.length; i++) {
+					transitions[i] = premultiplied(this.transitions[i]);
+				}
+				return new IntTableDFA(start, accepting, silent, accelerated, escapes, classes, classCount, transitions);
+			}
+		}
+
+		private int premultiplied(int state) {
+			if (state < 0) {
+				return -1;
+			}
+			return state * classCount;
+		}
+
+	}
+
+	private static class Column {
+
+		private int[] targets;
+
+		public Column(int[] targets) {
+			this.targets = targets;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(targets);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			Column that = (Column) obj;
+			return Arrays.equals(this.targets, that.targets);
+		}
+
+	}
+}
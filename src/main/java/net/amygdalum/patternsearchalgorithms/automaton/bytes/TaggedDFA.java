@@ -0,0 +1,366 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.text.ByteRange;
+
+public class TaggedDFA implements GroupExtractor {
+
+	private static final int MAX_NODES = 256;
+	private static final int MAX_REGISTERS = 32;
+
+	Charset charset;
+	byte[] classes; // byte to its equivalence class
+	int classCount;
+	int start; // premultiplied by classCount
+	int[] initial; // register operations entering start
+	int[] transitions; // nodes * classCount, premultiplied targets, -1 if there is none
+	int[][] operations; // per transition: source register of each register, -1 for the current position, null if registers are kept
+	int[][] finals; // per node: register of each slot, -1 if the slot is unset, null if the node does not accept
+	int slotCount;
+	int registerCount;
+
+	private long[] registers;
+	private long[] nextRegisters;
+
+	TaggedDFA(Charset charset, byte[] classes, int classCount, int start, int[] initial, int[] transitions, int[][] operations, int[][] finals, int slotCount, int registerCount) {
+		this.charset = charset;
+		this.classes = classes;
+		this.classCount = classCount;
+		this.start = start;
+		this.initial = initial;
+		this.transitions = transitions;
+		this.operations = operations;
+		this.finals = finals;
+		this.slotCount = slotCount;
+		this.registerCount = registerCount;
+		this.registers = new long[registerCount];
+		this.nextRegisters = new long[registerCount];
+	}
+
+	public static TaggedDFA of(NFA grouper) {
+		return of(CompactNFA.of(grouper));
+	}
+
+	public static TaggedDFA of(CompactNFA grouper) { // null if determinization needs more nodes or registers than the budget allows
+		try {
+			return new Builder(grouper).build();
+		} catch (CompileBudgetExceededException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public TaggedDFA instance() {
+		return new TaggedDFA(charset, classes, classCount, start, initial, transitions, operations, finals, slotCount, registerCount);
+	}
+
+	@Override
+	public Charset getCharset() {
+		return charset;
+	}
+
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	@Override
+	public long tableBytes() {
+		return (initial.length + transitions.length) * 4L + DFA.bytesOf(operations) + DFA.bytesOf(finals) + classes.length;
+	}
+
+	@Override
+	public boolean match(ByteProvider input, long start, long end, long[] slots) {
+		long[] registers = this.registers;
+		long[] next = this.nextRegisters;
+		for (int i = 0; i < initial.length; i++) {
+			registers[i] = start;
+		}
+		int node = this.start;
+		input.move(start);
+		while (!input.finished() && input.current() < end) {
+			int transition = node + (classes[input.next() & 0xff] & 0xff);
+			node = transitions[transition];
+			if (node < 0) {
+				return false;
+			}
+			int[] operation = operations[transition];
+			if (operation != null) {
+				long pos = input.current();
+				for (int i = 0; i < operation.length; i++) {
+					int source = operation[i];
+					next[i] = source < 0 ? pos : registers[source];
+				}
+				long[] swap = registers;
+				registers = next;
+				next = swap;
+			}
+		}
+		int[] accept = finals[node / classCount];
+		if (input.current() != end || accept == null) {
+			return false;
+		}
+		for (int i = 0; i < slotCount; i++) {
+			int register = accept[i];
+			slots[i] = register < 0 ? -1 : registers[register];
+		}
+		return true;
+	}
+
+	private static class Builder { // runs the pike vm on register numbers instead of positions, all writes of a step share a new register
+
+		private CompactNFA nfa;
+		private List<ByteRange> ranges;
+		private byte[] classes;
+		private int stride;
+		private int slotCount;
+		private CompileBudget budget;
+
+		private Map<Node, Integer> nodes;
+		private List<Node> todo;
+		private int registerCount;
+
+		private int[] dense; // threads of the next node, in priority order
+		private int[] sparse;
+		private int size;
+		private int[][] slots; // register of each slot, per thread
+		private int[] stack; // states of the pending epsilon closure, deepest last
+		private int[] stackNext; // next epsilon to follow from the state at the same index
+		private int stackSize;
+
+		Builder(CompactNFA grouper) {
+			this.nfa = grouper;
+			this.ranges = grouper.byteRanges;
+			this.classes = new byte[256];
+			for (int i = 0; i < ranges.size(); i++) {
+				ByteRange range = ranges.get(i);
+				for (int b = range.from[0] & 0xff; b <= (range.to[0] & 0xff); b++) {
+					classes[b] = (byte) i;
+				}
+			}
+			this.stride = ranges.size();
+			this.slotCount = grouper.slotCount;
+			this.budget = new CompileBudget(MAX_NODES, Long.MAX_VALUE);
+			this.nodes = new HashMap<>();
+			this.todo = new ArrayList<>();
+			this.dense = new int[grouper.stateCount];
+			this.sparse = new int[grouper.stateCount];
+			this.slots = new int[grouper.stateCount][];
+			this.stack = new int[grouper.stateCount];
+			this.stackNext = new int[grouper.stateCount];
+		}
+
+		public TaggedDFA build() {
+			size = 0;
+			int[] unset = new int[slotCount];
+			Arrays.fill(unset, -1);
+			add(nfa.start, unset, 0);
+			int[] initial = compact(0);
+			nodeOf();
+
+			List<int[]> transitions = new ArrayList<>();
+			List<int[][]> operations = new ArrayList<>();
+			List<int[]> finals = new ArrayList<>();
+			for (int i = 0; i < todo.size(); i++) {
+				Node node = todo.get(i);
+				int[] nodeTransitions = new int[stride];
+				int[][] nodeOperations = new int[stride][];
+				for (int index = 0; index < stride; index++) {
+					step(node, ranges.get(index).from[0]);
+					if (size == 0) {
+						nodeTransitions[index] = -1;
+						continue;
+					}
+					int[] operation = compact(node.registers);
+					nodeTransitions[index] = nodeOf() * stride;
+					nodeOperations[index] = isIdentity(operation, node.registers) ? null : operation;
+				}
+				transitions.add(nodeTransitions);
+				operations.add(nodeOperations);
+				finals.add(finalOf(node));
+			}
+
+			int count = todo.size();
+			int[] allTransitions = new int[count * stride];
+			int[][] allOperations = new int[count * stride][];
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(transitions.get(i), 0, allTransitions, i * stride, stride);
+				System.arraycopy(operations.get(i), 0, allOperations, i * stride, stride);
+			}
+			return new TaggedDFA(nfa.charset, classes, stride, 0, initial, allTransitions, allOperations, finals.toArray(new int[0][]), slotCount, registerCount);
+		}
+
+		private void step(Node node, byte b) {
+			size = 0;
+			int c = b & 0xff;
+			int current = node.registers; // the register of the position after b
+			for (int i = 0; i < node.states.length; i++) {
+				int state = node.states[i];
+				for (int t = nfa.out[state]; t < nfa.out[state + 1]; t++) {
+					if (nfa.from[t] <= c && c <= nfa.to[t]) {
+						add(nfa.target[t], apply(node.slots[i], nfa.action[t], current), current);
+					}
+				}
+			}
+		}
+
+		private void add(int id, int[] threadSlots, int current) { // same order as PikeVM.add, states reached before keep their threads
+			if (!push(id, threadSlots)) {
+				return;
+			}
+			while (stackSize > 0) {
+				int state = stack[stackSize - 1];
+				int t = stackNext[stackSize - 1];
+				if (t >= nfa.epsilonOut[state + 1]) {
+					stackSize--;
+					continue;
+				}
+				stackNext[stackSize - 1] = t + 1;
+				push(nfa.epsilonTarget[t], apply(slots[state], nfa.epsilonAction[t], current));
+			}
+		}
+
+		private boolean push(int id, int[] threadSlots) {
+			int index = sparse[id];
+			if (index < size && dense[index] == id) {
+				return false;
+			}
+			sparse[id] = size;
+			dense[size] = id;
+			size++;
+			slots[id] = threadSlots;
+			stack[stackSize] = id;
+			stackNext[stackSize] = nfa.epsilonOut[id];
+			stackSize++;
+			return true;
+		}
+
+		private static int[] apply(int[] threadSlots, int action, int current) {
+			if (action == 0) {
+				return threadSlots;
+			}
+			int[] applied = threadSlots.clone();
+			applied[action - 1] = current;
+			return applied;
+		}
+
+		private int[] compact(int registers) { // renumbers the registers used by the threads, returns the source register of each new register
+			boolean[] used = new boolean[registers + 1];
+			for (int i = 0; i < size; i++) {
+				for (int register : slots[dense[i]]) {
+					if (register >= 0) {
+						used[register] = true;
+					}
+				}
+			}
+			int[] renumbered = new int[registers + 1];
+			int count = 0;
+			for (int register = 0; register <= registers; register++) {
+				renumbered[register] = used[register] ? count++ : -1;
+			}
+			if (count > MAX_REGISTERS) {
+				throw new CompileBudgetExceededException("more than " + MAX_REGISTERS + " registers");
+			}
+			registerCount = Math.max(registerCount, count);
+			int[] operation = new int[count];
+			for (int register = 0; register <= registers; register++) {
+				if (used[register]) {
+					operation[renumbered[register]] = register == registers ? -1 : register;
+				}
+			}
+			for (int i = 0; i < size; i++) {
+				int[] threadSlots = slots[dense[i]].clone();
+				for (int j = 0; j < threadSlots.length; j++) {
+					if (threadSlots[j] >= 0) {
+						threadSlots[j] = renumbered[threadSlots[j]];
+					}
+				}
+				slots[dense[i]] = threadSlots;
+			}
+			return operation;
+		}
+
+		private static boolean isIdentity(int[] operation, int registers) {
+			if (operation.length != registers) {
+				return false;
+			}
+			for (int i = 0; i < operation.length; i++) {
+				if (operation[i] != i) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int nodeOf() {
+			int[] nodeStates = Arrays.copyOf(dense, size);
+			int[][] nodeSlots = new int[size][];
+			int registers = 0;
+			for (int i = 0; i < size; i++) {
+				nodeSlots[i] = slots[dense[i]];
+				for (int register : nodeSlots[i]) {
+					registers = Math.max(registers, register + 1);
+				}
+			}
+			Node node = new Node(nodeStates, nodeSlots, registers);
+			Integer id = nodes.get(node);
+			if (id == null) {
+				budget.charge();
+				id = todo.size();
+				nodes.put(node, id);
+				todo.add(node);
+			}
+			return id;
+		}
+
+		private int[] finalOf(Node node) { // the first accepting thread has the highest priority
+			for (int i = 0; i < node.states.length; i++) {
+				if (nfa.accepting[node.states[i]]) {
+					return node.slots[i];
+				}
+			}
+			return null;
+		}
+
+	}
+
+	private static class Node {
+
+		private int[] states; // nfa states of the threads, in pike vm order
+		private int[][] slots;
+		private int registers;
+
+		Node(int[] states, int[][] slots, int registers) {
+			this.states = states;
+			this.slots = slots;
+			this.registers = registers;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(states) * 31 + Arrays.deepHashCode(slots);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Node that = (Node) obj;
+			return Arrays.equals(this.states, that.states)
+				&& Arrays.deepEquals(this.slots, that.slots);
+		}
+
+	}
+
+}
@@ -0,0 +1,192 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.BYTE_TABLE;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.INT_TABLE;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.LAZY;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.NONE;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.ONE_PASS;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.PIKE;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.SHORT_TABLE;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.TAGGED;
+import static net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter.THOMPSON;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.LazyDFA.Automaton;
+import net.amygdalum.util.io.CharClassMapper;
+import net.amygdalum.util.text.CharRange;
+
+public class AutomatonReader {
+
+	private ByteBuffer in;
+
+	public AutomatonReader(ByteBuffer in) {
+		this.in = in;
+	}
+
+	public DFA readDFA() {
+		int kind = in.get();
+		switch (kind) {
+		case NONE:
+			return null;
+		case BYTE_TABLE: {
+			int[] table = readTable();
+			List<CharRange> ranges = readRanges();
+			CharClassMapper mapper = TableDFA.mapperOf(ranges);
+			return new ByteTableDFA(table[0], table[1], table[2], ranges, mapper, readBytes());
+		}
+		case SHORT_TABLE: {
+			int[] table = readTable();
+			List<CharRange> ranges = readRanges();
+			CharClassMapper mapper = TableDFA.mapperOf(ranges);
+			return new ShortTableDFA(table[0], table[1], table[2], ranges, mapper, readShorts());
+		}
+		case INT_TABLE: {
+			int[] table = readTable();
+			List<CharRange> ranges = readRanges();
+			CharClassMapper mapper = TableDFA.mapperOf(ranges);
+			return new IntTableDFA(table[0], table[1], table[2], ranges, mapper, readInts());
+		}
+		case LAZY:
+			return readLazy();
+		case THOMPSON:
+			return readThompson();
+		default:
+			throw new IllegalArgumentException("unknown automaton kind " + kind);
+		}
+	}
+
+	private int[] readTable() {
+		int start = in.getInt();
+		int accepting = in.getInt();
+		int silent = in.getInt();
+		return new int[] { start, accepting, silent };
+	}
+
+	private LazyDFA readLazy() {
+		int cacheSize = in.getInt();
+		boolean simulateOnly = readBoolean();
+		Automaton automaton = new Automaton();
+		automaton.nfa = readCompact();
+		automaton.ranges = readRanges();
+		automaton.mapper = TableDFA.mapperOf(automaton.ranges);
+		automaton.classCount = automaton.mapper.indexCount();
+		return new LazyDFA(automaton, cacheSize, simulateOnly);
+	}
+
+	private ThompsonNFA readThompson() {
+		return new ThompsonNFA(readCompact());
+	}
+
+	private CompactNFA readCompact() {
+		CompactNFA nfa = new CompactNFA();
+		nfa.start = in.getInt();
+		nfa.stateCount = in.getInt();
+		nfa.accepting = readBooleans();
+		nfa.silent = readBooleans();
+		nfa.charRanges = readRanges();
+		nfa.slotCount = in.getInt();
+		nfa.epsilonOut = readInts();
+		nfa.epsilonTarget = readInts();
+		nfa.epsilonAction = readInts();
+		nfa.out = readInts();
+		nfa.from = readChars();
+		nfa.to = readChars();
+		nfa.target = readInts();
+		nfa.action = readInts();
+		return nfa;
+	}
+
+	private List<CharRange> readRanges() {
+		int size = in.getInt();
+		List<CharRange> ranges = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			char from = in.getChar();
+			char to = in.getChar();
+			ranges.add(new CharRange(from, to));
+		}
+		return ranges;
+	}
+
+	public GroupExtractor readExtractor() {
+		int kind = in.get();
+		switch (kind) {
+		case ONE_PASS: {
+			List<CharRange> ranges = readRanges();
+			return new OnePassDFA(ranges, TableDFA.mapperOf(ranges), in.getInt(), readInts(), readRows(), readRows(), in.getInt());
+		}
+		case TAGGED: {
+			List<CharRange> ranges = readRanges();
+			return new TaggedDFA(ranges, TableDFA.mapperOf(ranges), in.getInt(), readInts(), readInts(), readRows(), readRows(), in.getInt(), in.getInt());
+		}
+		case PIKE: {
+			return new PikeVM(readCompact());
+		}
+		default:
+			throw new IllegalArgumentException("unknown extractor kind " + kind);
+		}
+	}
+
+	public boolean readBoolean() {
+		return in.get() != 0;
+	}
+
+	public int readInt() {
+		return in.getInt();
+	}
+
+	public String readString() {
+		return new String(readChars());
+	}
+
+	public char[] readChars() {
+		char[] values = new char[in.getInt()];
+		in.asCharBuffer().get(values);
+		in.position(in.position() + values.length * 2);
+		return values;
+	}
+
+	private boolean[] readBooleans() {
+		boolean[] values = new boolean[in.getInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readBoolean();
+		}
+		return values;
+	}
+
+	private byte[] readBytes() {
+		byte[] values = new byte[in.getInt()];
+		in.get(values);
+		return values;
+	}
+
+	private short[] readShorts() {
+		short[] values = new short[in.getInt()];
+		in.asShortBuffer().get(values);
+		in.position(in.position() + values.length * 2);
+		return values;
+	}
+
+	private int[] readInts() {
+		int[] values = new int[in.getInt()];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + values.length * 4);
+		return values;
+	}
+
+	private int[][] readRows() {
+		int[][] rows = new int[in.getInt()][];
+		for (int i = 0; i < rows.length; i++) {
+			int length = in.getInt();
+			if (length >= 0) {
+				rows[i] = new int[length];
+				in.asIntBuffer().get(rows[i]);
+				in.position(in.position() + length * 4);
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,125 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.amygdalum.util.text.CharRange;
+
+public class CompactNFA { // frozen nfa, states are numbered densely in the order of NFA.states()
+
+	public int start;
+	public int stateCount;
+	public boolean[] accepting;
+	public boolean[] silent;
+	public List<CharRange> charRanges;
+	public int slotCount;
+	public int[] epsilonOut; // epsilons of state s are at [epsilonOut[s], epsilonOut[s + 1])
+	public int[] epsilonTarget;
+	public int[] epsilonAction; // slot to write + 1, 0 if none
+	public int[] out; // char transitions of state s are at [out[s], out[s + 1])
+	public char[] from;
+	public char[] to;
+	public int[] target;
+	public int[] action;
+
+	public static CompactNFA of(NFA nfa) {
+		State[] states = nfa.states();
+		Map<State, Integer> ids = new IdentityHashMap<>();
+		int epsilonCount = 0;
+		int charCount = 0;
+		int groups = 0;
+		for (int i = 0; i < states.length; i++) {
+			ids.put(states[i], i);
+			for (Transition transition : states[i].out()) {
+				groups = Math.max(groups, groupOf(transition.getAction()));
+				if (transition instanceof OrdinaryTransition) {
+					charCount++;
+				} else {
+					epsilonCount++;
+				}
+			}
+		}
+
+		CompactNFA compact = new CompactNFA();
+		compact.start = ids.get(nfa.getStart());
+		compact.stateCount = states.length;
+		compact.accepting = new boolean[states.length];
+		compact.silent = new boolean[states.length];
+		compact.charRanges = nfa.getCharRanges();
+		compact.slotCount = groups * 2;
+		compact.epsilonOut = new int[states.length + 1];
+		compact.epsilonTarget = new int[epsilonCount];
+		compact.epsilonAction = new int[epsilonCount];
+		compact.out = new int[states.length + 1];
+		compact.from = new char[charCount];
+		compact.to = new char[charCount];
+		compact.target = new int[charCount];
+		compact.action = new int[charCount];
+		int e = 0;
+		int t = 0;
+		for (int i = 0; i < states.length; i++) {
+			State state = states[i];
+			compact.accepting[i] = state.isAccepting();
+			compact.silent[i] = state.isSilent();
+			compact.epsilonOut[i] = e;
+			compact.out[i] = t;
+			for (Transition transition : state.out()) {
+				int target = ids.get(transition.getTarget());
+				int action = slotOf(transition.getAction());
+				if (transition instanceof OrdinaryTransition) {
+					OrdinaryTransition ordinary = (OrdinaryTransition) transition;
+					compact.from[t] = ordinary.getFrom();
+					compact.to[t] = ordinary.getTo();
+					compact.target[t] = target;
+					compact.action[t] = action;
+					t++;
+				} else {
+					compact.epsilonTarget[e] = target;
+					compact.epsilonAction[e] = action;
+					e++;
+				}
+			}
+		}
+		compact.epsilonOut[states.length] = e;
+		compact.out[states.length] = t;
+		return compact;
+	}
+
+	public int next(int state, char c) { // target of the first char transition of state accepting c, -1 if there is none
+		for (int i = out[state]; i < out[state + 1]; i++) {
+			if (from[i] <= c && c <= to[i]) {
+				return target[i];
+			}
+		}
+		return -1;
+	}
+
+	public long tableBytes() {
+		return accepting.length + silent.length
+			+ (epsilonOut.length + epsilonTarget.length + epsilonAction.length) * 4L
+			+ (from.length + to.length) * 2L
+			+ (out.length + target.length + action.length) * 4L;
+	}
+
+	static int groupOf(Action action) {
+		if (action instanceof StartGroup) {
+			return ((StartGroup) action).getNo();
+		} else if (action instanceof EndGroup) {
+			return ((EndGroup) action).getNo();
+		}
+		return 0;
+	}
+
+	static int slotOf(Action action) { // group 0 is the match itself and needs no slot
+		if (action instanceof StartGroup) {
+			int no = ((StartGroup) action).getNo();
+			return no == 0 ? 0 : (no - 1) * 2 + 1;
+		} else if (action instanceof EndGroup) {
+			int no = ((EndGroup) action).getNo();
+			return no == 0 ? 0 : (no - 1) * 2 + 2;
+		}
+		return 0;
+	}
+
+}
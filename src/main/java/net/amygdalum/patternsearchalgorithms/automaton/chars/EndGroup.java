@@ -8,6 +8,10 @@ public class EndGroup implements Action {
 		this.no = no;
 	}
 
+	public int getNo() {
+		return no;
+	}
+
 	@Override
 	public Groups applyTo(Groups groups, long pos) {
 		return groups.endGroup(no, pos);
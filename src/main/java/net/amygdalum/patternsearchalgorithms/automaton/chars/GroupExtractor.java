@@ -0,0 +1,15 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import net.amygdalum.util.io.CharProvider;
+
+public interface GroupExtractor {
+
+	GroupExtractor instance();
+
+	int slotCount();
+
+	long tableBytes();
+
+	boolean match(CharProvider input, long start, long end, long[] slots); // writes the capture slots (start and end of groups 1..n) of the preferred match of [start, end) into slots, false if there is none
+
+}
@@ -0,0 +1,27 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import java.util.List;
+
+import net.amygdalum.util.io.CharClassMapper;
+import net.amygdalum.util.text.CharRange;
+
+public class IntTableDFA extends TableDFA {
+
+	public int[] transitions; // states * mapper.indexCount(), premultiplied targets
+
+	public IntTableDFA(int start, int accepting, int silent, List<CharRange> ranges, CharClassMapper mapper, int[] transitions) {
+		super(start, accepting, silent, ranges, mapper);
+		this.transitions = transitions;
+	}
+
+	@Override
+	public int next(int s, char c) {
+		return transitions[s + mapper.getIndex(c)];
+	}
+
+	@Override
+	public long tableBytes() {
+		return transitions.length * 4L;
+	}
+
+}
@@ -2,11 +2,21 @@ package net.amygdalum.patternsearchalgorithms.automaton.chars;
 
 public class MinimalNFAComponentFactory implements NFAComponentFactory {
 
+	private CompileBudget budget;
+
+	public MinimalNFAComponentFactory() {
+		this(CompileBudget.unlimited());
+	}
+
+	public MinimalNFAComponentFactory(CompileBudget budget) {
+		this.budget = budget;
+	}
+
 	@Override
 	public NFAComponent create(State start, State end) {
 		end.setAccepting();
 		NFA nfa = new NFA(start);
-		nfa.determinize();
+		nfa.determinize(budget);
 
 		return new NFAComponent(nfa.getStart(), getEnd(nfa));
 	}
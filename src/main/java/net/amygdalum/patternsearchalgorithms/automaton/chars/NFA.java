@@ -1,25 +1,33 @@
 package net.amygdalum.patternsearchalgorithms.automaton.chars;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import net.amygdalum.patternsearchalgorithms.automaton.HashQueue;
+import net.amygdalum.patternsearchalgorithms.automaton.PartitionRefinement;
+import net.amygdalum.patternsearchalgorithms.automaton.StateSet;
+import net.amygdalum.patternsearchalgorithms.automaton.StateSetBuilder;
 import net.amygdalum.util.text.CharRange;
 import net.amygdalum.util.text.CharRangeAccumulator;
 import net.amygdalum.util.worklist.WorkSet;
 
 public class NFA implements Cloneable {
 
+	private static final int[] NONE = new int[0];
+
 	private State start;
 	private List<CharRange> charRanges;
 	private State[] states;
@@ -60,10 +68,10 @@ public class NFA implements Cloneable {
 	}
 
 	private static State[] clean(State start, State error) {
-		WorkSet<State> todo = new WorkSet<>();
+		WorkSet<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(start);
 		Set<State> dead = new HashSet<>();
-		WorkSet<State> live = new WorkSet<>();
+		WorkSet<State> live = new WorkSet<>(new HashQueue<State>());
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
 			if (state.isAccepting()) {
@@ -121,22 +129,75 @@ public class NFA implements Cloneable {
 		return right + 1;
 	}
 
+	public int maxLength() { // length of the longest accepted word, -1 if unbounded
+		CompactNFA nfa = CompactNFA.of(this);
+		int[] incoming = new int[nfa.stateCount];
+		for (int target : nfa.epsilonTarget) {
+			incoming[target]++;
+		}
+		for (int target : nfa.target) {
+			incoming[target]++;
+		}
+		int[] todo = new int[nfa.stateCount];
+		int size = 0;
+		for (int i = 0; i < nfa.stateCount; i++) {
+			if (incoming[i] == 0) {
+				todo[size++] = i;
+			}
+		}
+		int[] lengths = new int[nfa.stateCount];
+		int max = 0;
+		for (int done = 0; done < size; done++) {
+			int i = todo[done];
+			if (nfa.accepting[i]) {
+				max = Math.max(max, lengths[i]);
+			}
+			for (int t = nfa.epsilonOut[i]; t < nfa.epsilonOut[i + 1]; t++) {
+				size = relax(nfa.epsilonTarget[t], lengths[i], lengths, incoming, todo, size);
+			}
+			for (int t = nfa.out[i]; t < nfa.out[i + 1]; t++) {
+				size = relax(nfa.target[t], lengths[i] + 1, lengths, incoming, todo, size);
+			}
+		}
+		if (size < nfa.stateCount) { // cycle
+			return -1;
+		}
+		return max;
+	}
+
+	private static int relax(int target, int length, int[] lengths, int[] incoming, int[] todo, int size) {
+		lengths[target] = Math.max(lengths[target], length);
+		incoming[target]--;
+		if (incoming[target] == 0) {
+			todo[size++] = target;
+		}
+		return size;
+	}
+
 	public void prune() {
 		eliminateTrivialEpsilons();
+	}
+
+	public void eliminateEpsilons() {
+		eliminateAllEpsilons();
 		mergeTransitions();
 	}
 
 	public void determinize() {
+		determinize(CompileBudget.unlimited());
+	}
+
+	public void determinize(CompileBudget budget) {
 		eliminateAllEpsilons();
 		mergeTransitions();
-		determinizeStates();
+		determinizeStates(budget);
 		totalizeStates();
-		minimizeStates();
+		minimizeStates(budget);
 	}
 
 	private void totalizeStates() {
 		State error = new State();
-		Queue<State> todo = new WorkSet<>();
+		Queue<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(error);
 		todo.add(start);
 		while (!todo.isEmpty()) {
@@ -163,149 +224,117 @@ public class NFA implements Cloneable {
 		init(start, error);
 	}
 
-	private void minimizeStates() {
-		List<Set<State>> partitions = new LinkedList<>();
-		Queue<Set<State>> todo = new LinkedList<>();
-
-		SplitPartition initialPartition = initialPartition();
-
-		if (initialPartition.min.isEmpty()) {
-			partitions.add(initialPartition.max);
-		} else {
-			partitions.add(initialPartition.max);
-			partitions.add(initialPartition.min);
-			todo.add(initialPartition.min);
-		}
-
-		while (!todo.isEmpty()) {
-			Set<State> current = todo.remove();
-			for (CharRange charRange : charRanges) {
-				Set<State> origins = origins(current, charRange);
-				ListIterator<Set<State>> partitionIterator = partitions.listIterator();
-				while (partitionIterator.hasNext()) {
-					Set<State> partition = partitionIterator.next();
-					SplitPartition splitPartition = split(partition, origins);
-					if (splitPartition.min.isEmpty()) {
-						continue;
-					}
-					partitionIterator.set(splitPartition.max);
-					partitionIterator.add(splitPartition.min);
-					if (todo.contains(partition)) {
-						todo.remove(partition);
-						todo.add(splitPartition.max);
-						todo.add(splitPartition.min);
-					} else {
-						todo.add(splitPartition.min);
-					}
+	private void minimizeStates(CompileBudget budget) {
+		budget.check();
+		CompactNFA nfa = CompactNFA.of(this);
+		int symbolCount = charRanges.size();
+		int[] transitions = new int[nfa.stateCount * symbolCount];
+		Arrays.fill(transitions, -1);
+		int[] initialBlocks = new int[nfa.stateCount];
+		for (int i = 0; i < nfa.stateCount; i++) {
+			initialBlocks[i] = nfa.accepting[i] ? 1 : 0;
+			for (int t = nfa.out[i]; t < nfa.out[i + 1]; t++) {
+				for (int symbol = symbolOf(nfa.from[t]); symbol < symbolCount && charRanges.get(symbol).from <= nfa.to[t]; symbol++) {
+					transitions[i * symbolCount + symbol] = nfa.target[t];
 				}
 			}
 		}
 
-		State newstart = digest(partitions);
+		int[] blocks = PartitionRefinement.minimize(nfa.stateCount, symbolCount, transitions, initialBlocks);
+
+		State newstart = digest(blocks, nfa);
 		init(newstart);
 	}
 
-	private State digest(List<Set<State>> partitions) {
-		Map<State, State> mapping = new IdentityHashMap<>();
-		State start = null;
-		for (Set<State> partition : partitions) {
-			State state = new State();
-			for (State partstate : partition) {
-				mapping.put(partstate, state);
-				if (partstate.isAccepting()) {
-					state.setAccepting();
-				}
-				if (!partstate.isSilent()) {
-					state.setSilent(false);
-				}
-				if (partstate == this.start) {
-					start = state;
-				}
-			}
-		}
-
-		for (Set<State> partition : partitions) {
-			State representative = partition.iterator().next();
-
-			for (Transition transition : representative.out()) {
-				State origin = transition.getOrigin();
-				State mappedOrigin = mapping.get(origin);
-				State target = transition.getTarget();
-				State mappedTarget = mapping.get(target);
-				transition.asPrototype().withOrigin(mappedOrigin).withTarget(mappedTarget).connect();
+	private int symbolOf(char c) {
+		int low = 0;
+		int high = charRanges.size() - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (charRanges.get(mid).from <= c) {
+				low = mid;
+			} else {
+				high = mid - 1;
 			}
 		}
-		return start;
+		return low;
 	}
 
-	private SplitPartition split(Set<State> partition, Set<State> splitter) {
-		Set<State> intersection = new HashSet<>(partition.size());
-		Set<State> remainder = new HashSet<>(partition.size());
-		for (State state : partition) {
-			if (splitter.contains(state)) {
-				intersection.add(state);
-			} else {
-				remainder.add(state);
+	private static State digest(int[] blocks, CompactNFA nfa) {
+		int blockCount = 0;
+		for (int block : blocks) {
+			blockCount = Math.max(blockCount, block + 1);
+		}
+		State[] mapping = new State[blockCount];
+		int[] representatives = new int[blockCount];
+		for (int i = 0; i < nfa.stateCount; i++) {
+			int block = blocks[i];
+			State state = mapping[block];
+			if (state == null) {
+				state = new State();
+				mapping[block] = state;
+				representatives[block] = i;
+			}
+			if (nfa.accepting[i]) {
+				state.setAccepting();
+			}
+			if (!nfa.silent[i]) {
+				state.setSilent(false);
 			}
 		}
-		return new SplitPartition(intersection, remainder);
-	}
 
-	private Set<State> origins(Set<State> states, CharRange charRange) {
-		Set<State> in = new HashSet<>();
-		for (State state : states) {
-			for (Transition transition : state.in()) {
-				if (transition instanceof OrdinaryTransition && ((OrdinaryTransition) transition).accepts(charRange.from)) {
-					in.add(transition.getOrigin());
+		for (int block = 0; block < blockCount; block++) {
+			int representative = representatives[block];
+			State mappedOrigin = mapping[block];
+			for (int t = nfa.out[representative]; t < nfa.out[representative + 1]; t++) {
+				State mappedTarget = mapping[blocks[nfa.target[t]]];
+				char from = nfa.from[t];
+				char to = nfa.to[t];
+				if (from == to) {
+					new CharTransition(mappedOrigin, from, mappedTarget).connect();
+				} else {
+					new CharsTransition(mappedOrigin, from, to, mappedTarget).connect();
 				}
 			}
 		}
-		return in;
+		return mapping[blocks[nfa.start]];
 	}
 
-	private SplitPartition initialPartition() {
-		Set<State> accept = new HashSet<>(states.length);
-		Set<State> nonaccept = new HashSet<>(states.length);
-		for (State state : states) {
-			if (state.isAccepting()) {
-				accept.add(state);
-			} else {
-				nonaccept.add(state);
-			}
-		}
-		return new SplitPartition(accept, nonaccept);
-	}
+	private void determinizeStates(CompileBudget budget) {
+		CompactNFA nfa = CompactNFA.of(this);
+		int symbolCount = charRanges.size();
+		int[][] successors = successors(nfa, symbolCount);
 
-	private void determinizeStates() {
-		Map<Set<State>, State> dStates = new HashMap<>();
-		Queue<Set<State>> todo = new WorkSet<>();
+		Map<StateSet, State> dStates = new HashMap<>();
+		Queue<StateSet> todo = new ArrayDeque<>();
+		StateSetBuilder nextset = new StateSetBuilder(nfa.stateCount);
 
-		Set<State> startset = new HashSet<>();
-		startset.add(start);
+		nextset.add(nfa.start);
+		StateSet startset = nextset.build();
 		todo.add(startset);
 		State dStart = new State();
 		dStates.put(startset, dStart);
 
 		while (!todo.isEmpty()) {
-			Set<State> current = todo.remove();
+			StateSet current = todo.remove();
 			State dState = dStates.get(current);
-			transferAccept(current, dState);
+			transferAccept(nfa, current, dState);
 
-			for (CharRange range : charRanges) {
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				CharRange range = charRanges.get(symbol);
 				char from = range.from;
 				char to = range.to;
-				Set<State> nextset = new HashSet<>();
-				for (State state : current) {
-					for (Transition transition : state.out()) {
-						if (transition instanceof OrdinaryTransition && ((OrdinaryTransition) transition).accepts(from))
-							nextset.add(transition.getTarget());
-					}
+				nextset.clear();
+				for (int i = 0; i < current.size(); i++) {
+					nextset.addAll(successors[current.get(i) * symbolCount + symbol]);
 				}
-				State target = dStates.get(nextset);
+				StateSet next = nextset.build();
+				State target = dStates.get(next);
 				if (target == null) {
-					todo.add(nextset);
+					budget.charge();
+					todo.add(next);
 					target = new State();
-					dStates.put(nextset, target);
+					dStates.put(next, target);
 				}
 				if (from == to) {
 					new CharTransition(dState, from, target).connect();
@@ -317,12 +346,33 @@ public class NFA implements Cloneable {
 		init(dStart);
 	}
 
-	private void transferAccept(Set<State> states, State dState) {
+	private int[][] successors(CompactNFA nfa, int symbolCount) {
+		int[][] successors = new int[nfa.stateCount * symbolCount][];
+		Arrays.fill(successors, NONE);
+		for (int i = 0; i < nfa.stateCount; i++) {
+			for (int t = nfa.out[i]; t < nfa.out[i + 1]; t++) {
+				for (int symbol = symbolOf(nfa.from[t]); symbol < symbolCount && charRanges.get(symbol).from <= nfa.to[t]; symbol++) {
+					int index = i * symbolCount + symbol;
+					successors[index] = append(successors[index], nfa.target[t]);
+				}
+			}
+		}
+		return successors;
+	}
+
+	private static int[] append(int[] list, int value) {
+		int[] appended = Arrays.copyOf(list, list.length + 1);
+		appended[list.length] = value;
+		return appended;
+	}
+
+	private static void transferAccept(CompactNFA nfa, StateSet set, State dState) {
 		boolean accepting = false;
 		boolean silent = true;
-		for (State state : states) {
-			accepting |= state.isAccepting();
-			silent &= state.isSilent();
+		for (int i = 0; i < set.size(); i++) {
+			int state = set.get(i);
+			accepting |= nfa.accepting[state];
+			silent &= nfa.silent[state];
 		}
 		dState.setAccepting(accepting);
 		dState.setSilent(silent);
@@ -331,7 +381,7 @@ public class NFA implements Cloneable {
 	private static List<CharRange> computeEquivalentCharRanges(State start) {
 		CharRangeAccumulator acc = new CharRangeAccumulator();
 
-		Queue<State> todo = new WorkSet<>();
+		Queue<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(start);
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
@@ -347,7 +397,7 @@ public class NFA implements Cloneable {
 	}
 
 	private void mergeTransitions() {
-		Queue<State> todo = new WorkSet<>();
+		Queue<State> todo = new WorkSet<>(new HashQueue<State>());
 		todo.add(start);
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
@@ -424,66 +474,83 @@ public class NFA implements Cloneable {
 		return null;
 	}
 
-	private void eliminateTrivialEpsilons() {
+	private void eliminateTrivialEpsilons() { // keeps the priority of the remaining transitions, a state tries its ordinary transitions before its epsilons
+		Map<State, List<Transition>> prioritized = new LinkedHashMap<>();
 		Queue<State> todo = new WorkSet<>();
 		todo.add(start);
 		while (!todo.isEmpty()) {
 			State state = todo.remove();
-			for (Transition transition : state.out()) {
-				todo.add(transition.getTarget());
-			}
-			for (EpsilonTransition epsilon : transitiveEpsilons(state)) {
-				State origin = epsilon.getOrigin();
-				if (origin == state) {
-					epsilon.remove();
-				}
-				State target = epsilon.getTarget();
-				if (target.isAccepting()) {
-					state.setAccepting();
+			List<Transition> transitions = prioritized(state);
+			for (Transition transition : transitions) {
+				if (transition != null) {
+					todo.add(transition.getTarget());
 				}
-				if (!target.isSilent()) {
-					state.setSilent(false);
+			}
+			prioritized.put(state, transitions);
+		}
+		for (Map.Entry<State, List<Transition>> entry : prioritized.entrySet()) {
+			State state = entry.getKey();
+			for (Transition transition : new ArrayList<>(state.out())) {
+				transition.remove();
+			}
+			State run = state; // collects acceptance and ordinary transitions until the next epsilon
+			for (Transition transition : entry.getValue()) {
+				if (transition instanceof EpsilonTransition) {
+					transition.asPrototype().withOrigin(state).withTarget(transition.getTarget()).connect();
+					run = null;
+					continue;
 				}
-				for (Transition transition : target.out()) {
-					if (transition instanceof OrdinaryTransition) {
-						transition.asPrototype().withOrigin(state).withTarget(transition.getTarget()).connect();
-					}
+				if (run == null) {
+					run = new State();
+					new EpsilonTransition(state, run).connect();
 				}
-				for (Transition transition : target.out()) {
-					if (transition instanceof EpsilonTransition) {
-						Action action = transition.getAction();
-						if (action != null) {
-							transition.asPrototype().withOrigin(state).withTarget(transition.getTarget()).withAction(action).connect();
-						}
-					}
+				if (transition == null) {
+					run.setAccepting();
+				} else {
+					transition.asPrototype().withOrigin(run).withTarget(transition.getTarget()).connect();
 				}
 			}
 		}
+		for (State state : states) {
+			if (!prioritized.containsKey(state)) {
+				state.disconnect();
+			}
+		}
 		init(start);
 	}
 
-	private Set<EpsilonTransition> transitiveEpsilons(State state) {
-
-		WorkSet<EpsilonTransition> todo = new WorkSet<>();
-		for (Transition transition : state.out()) {
-			if (transition instanceof EpsilonTransition) {
-				todo.add((EpsilonTransition) transition);
+	private List<Transition> prioritized(State state) { // ordinary transitions and epsilons with actions reachable without action, in the order a backtracking matcher tries them, null for acceptance
+		List<Transition> prioritized = new ArrayList<>();
+		Set<State> visited = new HashSet<>();
+		Deque<Iterator<Transition>> stack = new ArrayDeque<>();
+		visited.add(state);
+		if (state.isAccepting()) {
+			prioritized.add(null);
+		}
+		stack.push(state.out().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<Transition> transitions = stack.peek();
+			if (!transitions.hasNext()) {
+				stack.pop();
+				continue;
 			}
-		}
-		while (!todo.isEmpty()) {
-			EpsilonTransition current = todo.remove();
-			if (current.getAction() != null) {
-				todo.remove(current);
+			Transition transition = transitions.next();
+			if (transition instanceof OrdinaryTransition || transition.getAction() != null) {
+				prioritized.add(transition);
 				continue;
 			}
-			State target = current.getTarget();
-			for (Transition transition : target.out()) {
-				if (transition instanceof EpsilonTransition) {
-					todo.add((EpsilonTransition) transition);
+			State target = transition.getTarget();
+			if (visited.add(target)) {
+				if (target.isAccepting()) {
+					prioritized.add(null);
+				}
+				if (!target.isSilent()) {
+					state.setSilent(false);
 				}
+				stack.push(target.out().iterator());
 			}
 		}
-		return todo.getDone();
+		return prioritized;
 	}
 
 	private void eliminateAllEpsilons() {
@@ -580,7 +647,7 @@ public class NFA implements Cloneable {
 		targets.add(epsilon.getTarget());
 		while (!targets.isEmpty()) {
 			State next = targets.remove();
-			for (Transition transition : next.out()) {
+			for (Transition transition : new ArrayList<>(next.out())) { // connecting may extend next.out() if next == origin
 				if (transition instanceof OrdinaryTransition) {
 					transition.asPrototype().withOrigin(origin).withTarget(transition.getTarget()).connect();
 				} else if (transition instanceof EpsilonTransition) {
@@ -605,7 +672,7 @@ public class NFA implements Cloneable {
 		origins.add(epsilon.getOrigin());
 		while (!origins.isEmpty()) {
 			State next = origins.remove();
-			for (Transition transition : next.in()) {
+			for (Transition transition : new ArrayList<>(next.in())) { // connecting may extend next.in() if next == target
 				if (transition instanceof OrdinaryTransition) {
 					transition.asPrototype().withOrigin(transition.getOrigin()).withTarget(target).connect();
 				} else if (transition instanceof EpsilonTransition) {
@@ -636,15 +703,4 @@ public class NFA implements Cloneable {
 		}
 	}
 
-	private static class SplitPartition {
-		public Set<State> max;
-		public Set<State> min;
-
-		public SplitPartition(Set<State> intersection, Set<State> remainder) {
-			this.max = intersection.size() > remainder.size() ? intersection : remainder;
-			this.min = intersection.size() <= remainder.size() ? intersection : remainder;
-		}
-
-	}
-
 }
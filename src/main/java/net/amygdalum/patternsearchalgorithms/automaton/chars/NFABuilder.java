@@ -147,8 +147,8 @@ public class NFABuilder implements RegexNodeVisitor<NFAComponent> {
 	public NFAComponent matchOptional(NFAComponent a) {
 		State s = new State();
 		State e = new State();
-		new EpsilonTransition(s, e).connect();
 		new EpsilonTransition(s, a.start).connect();
+		new EpsilonTransition(s, e).connect();
 		new EpsilonTransition(a.end, e).connect();
 		return factory.create(s, e);
 	}
@@ -195,15 +195,15 @@ public class NFABuilder implements RegexNodeVisitor<NFAComponent> {
 	public NFAComponent matchUpToN(NFAComponent a, int count) {
 		State s = new State();
 		State e = new State();
-		new EpsilonTransition(s, e).connect();
 
 		State current = s;
-		for (int i = 0; i < count; i++) {
+		for (int i = 0; i < count; i++) { // each copy is tried before skipping the rest, as in greedy loops
 			NFAComponent ai = a.clone();
 			new EpsilonTransition(current, ai.start).connect();
-			new EpsilonTransition(ai.end, e).connect();
+			new EpsilonTransition(current, e).connect();
 			current = ai.end;
 		}
+		new EpsilonTransition(current, e).connect();
 		return factory.create(s, e);
 	}
 
@@ -44,12 +44,12 @@ public class NFAComponent implements Cloneable {
 	}
 
 	@Override
-	protected NFAComponent clone() {
+	public NFAComponent clone() {
 		try {
 			NFAComponent clone = (NFAComponent) super.clone();
 			StateClone statClone = StateClone.cloneTree(start);
 			clone.start = statClone.get(start);
-			clone.end = statClone.get(end);
+			clone.end = end == null || statClone.get(end) != null ? statClone.get(end) : end.asPrototype(); // end may be unreachable
 			return clone;
 		} catch (CloneNotSupportedException e) {
 			return null;
@@ -0,0 +1,216 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.amygdalum.util.io.CharClassMapper;
+import net.amygdalum.util.io.CharProvider;
+import net.amygdalum.util.text.CharRange;
+
+public class OnePassDFA implements GroupExtractor {
+
+	private static final int[] NONE = new int[0];
+
+	List<CharRange> ranges; // live char ranges, the source of mapper
+	CharClassMapper mapper;
+	int start; // premultiplied by mapper.indexCount()
+	int[] transitions; // nodes * mapper.indexCount(), premultiplied targets, -1 if there is none
+	int[][] writes; // slots (+ 1) to write before taking the transition
+	int[][] accepts; // per node: slots (+ 1) to write when accepting, null if the node does not accept
+	int slotCount;
+
+	OnePassDFA(List<CharRange> ranges, CharClassMapper mapper, int start, int[] transitions, int[][] writes, int[][] accepts, int slotCount) {
+		this.ranges = ranges;
+		this.mapper = mapper;
+		this.start = start;
+		this.transitions = transitions;
+		this.writes = writes;
+		this.accepts = accepts;
+		this.slotCount = slotCount;
+	}
+
+	public static OnePassDFA of(NFA grouper) {
+		return of(CompactNFA.of(grouper));
+	}
+
+	public static OnePassDFA of(CompactNFA grouper) { // null if a char could continue more than one thread, threads of lower priority reaching the same state are dropped
+		return new Builder(grouper).build();
+	}
+
+	@Override
+	public OnePassDFA instance() {
+		return new OnePassDFA(ranges, mapper, start, transitions, writes, accepts, slotCount);
+	}
+
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	@Override
+	public long tableBytes() {
+		return transitions.length * 4L + DFA.bytesOf(writes) + DFA.bytesOf(accepts);
+	}
+
+	@Override
+	public boolean match(CharProvider input, long start, long end, long[] slots) {
+		Arrays.fill(slots, -1);
+		int stride = mapper.indexCount();
+		int node = this.start;
+		input.move(start);
+		while (!input.finished() && input.current() < end) {
+			long pos = input.current();
+			int transition = node + mapper.getIndex(input.next());
+			node = transitions[transition];
+			if (node < 0) {
+				return false;
+			}
+			write(writes[transition], pos, slots);
+		}
+		int[] accept = accepts[node / stride];
+		if (input.current() != end || accept == null) {
+			return false;
+		}
+		write(accept, end, slots);
+		return true;
+	}
+
+	private static void write(int[] writes, long pos, long[] slots) {
+		for (int slot : writes) {
+			slots[slot - 1] = pos;
+		}
+	}
+
+	private static class Builder {
+
+		private CompactNFA nfa;
+		private CharClassMapper mapper;
+		private int stride;
+
+		private int[] nodes; // node of each nfa state, -1 if the state is not a node
+		private int[] todo; // nfa state of each node
+		private int nodeCount;
+		private int[] transitions;
+		private int[][] writes;
+		private int[][] accepts;
+
+		private int[][] closure; // actions reaching each nfa state of the current closure, null if not reached
+		private int[] pending;
+		private int[] stack; // states of the current closure, deepest last
+		private int[] stackNext; // next epsilon to follow from the state at the same index
+
+		Builder(CompactNFA grouper) {
+			this.nfa = grouper;
+			this.mapper = TableDFA.mapperOf(grouper.charRanges);
+			this.stride = mapper.indexCount();
+			this.nodes = new int[grouper.stateCount];
+			Arrays.fill(nodes, -1);
+			this.todo = new int[grouper.stateCount];
+			this.closure = new int[grouper.stateCount][];
+			this.pending = new int[grouper.stateCount];
+			this.stack = new int[grouper.stateCount];
+			this.stackNext = new int[grouper.stateCount];
+		}
+
+		public OnePassDFA build() {
+			transitions = new int[nfa.stateCount * stride];
+			Arrays.fill(transitions, -1);
+			writes = new int[nfa.stateCount * stride][];
+			accepts = new int[nfa.stateCount][];
+			nodeOf(nfa.start);
+			for (int node = 0; node < nodeCount; node++) {
+				if (!computeNode(node, todo[node])) {
+					return null;
+				}
+			}
+			return new OnePassDFA(nfa.charRanges, mapper, 0, Arrays.copyOf(transitions, nodeCount * stride), Arrays.copyOf(writes, nodeCount * stride), Arrays.copyOf(accepts, nodeCount), nfa.slotCount);
+		}
+
+		private int nodeOf(int state) {
+			int node = nodes[state];
+			if (node < 0) {
+				node = nodeCount++;
+				nodes[state] = node;
+				todo[node] = state;
+			}
+			return node;
+		}
+
+		private boolean computeNode(int node, int state) { // false if threads of the closure of state continue to different states, the closure is visited in priority order like in PikeVM
+			int size = 0;
+			int depth = 0;
+			closure[state] = NONE;
+			pending[size++] = state;
+			stack[depth] = state;
+			stackNext[depth] = nfa.epsilonOut[state];
+			depth++;
+			boolean onePass = visit(node, state, NONE);
+			while (onePass && depth > 0) {
+				int current = stack[depth - 1];
+				int t = stackNext[depth - 1];
+				if (t >= nfa.epsilonOut[current + 1]) {
+					depth--;
+					continue;
+				}
+				stackNext[depth - 1] = t + 1;
+				int target = nfa.epsilonTarget[t];
+				if (closure[target] != null) { // reached by a thread of higher priority
+					continue;
+				}
+				int slot = nfa.epsilonAction[t];
+				int[] actions = slot == 0 ? closure[current] : append(closure[current], slot);
+				closure[target] = actions;
+				pending[size++] = target;
+				stack[depth] = target;
+				stackNext[depth] = nfa.epsilonOut[target];
+				depth++;
+				onePass = visit(node, target, actions);
+			}
+			for (int i = 0; i < size; i++) {
+				closure[pending[i]] = null;
+			}
+			return onePass;
+		}
+
+		private boolean visit(int node, int state, int[] actions) {
+			if (nfa.accepting[state] && accepts[node] == null) {
+				accepts[node] = actions;
+			}
+			for (int t = nfa.out[state]; t < nfa.out[state + 1]; t++) {
+				if (nfa.action[t] != 0 || !computeTransitions(node, t, actions)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean computeTransitions(int node, int transition, int[] actions) {
+			int target = -1;
+			for (int index = 0; index < stride; index++) {
+				char c = mapper.representative(index);
+				if (c < nfa.from[transition] || c > nfa.to[transition]) {
+					continue;
+				}
+				if (target < 0) {
+					target = nodeOf(nfa.target[transition]) * stride;
+				}
+				int i = node * stride + index;
+				if (transitions[i] < 0) {
+					transitions[i] = target;
+					writes[i] = actions;
+				} else if (transitions[i] != target) { // threads continuing to different states cannot be told apart, the first thread to reach a target keeps it
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int[] append(int[] actions, int slot) {
+			int[] appended = Arrays.copyOf(actions, actions.length + 1);
+			appended[actions.length] = slot;
+			return appended;
+		}
+
+	}
+
+}
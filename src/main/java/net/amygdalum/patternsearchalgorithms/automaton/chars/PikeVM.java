@@ -0,0 +1,156 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import java.util.Arrays;
+
+import net.amygdalum.util.io.CharProvider;
+
+public class PikeVM implements GroupExtractor {
+
+	CompactNFA program;
+
+	private int[] dense; // sparse set of the threads of the current position, in priority order
+	private int[] sparse;
+	private int size;
+	private long[] slots; // capture slots of each thread, one row per state
+	private int[] nextDense;
+	private int[] nextSparse;
+	private int nextSize;
+	private long[] nextSlots;
+	private long[] scratch;
+	private int[] stack; // states of the pending epsilon closure, deepest last
+	private int[] stackNext; // next epsilon to follow from the state at the same index
+	private int stackSize;
+
+	public PikeVM(NFA grouper) {
+		this(CompactNFA.of(grouper));
+	}
+
+	public PikeVM(CompactNFA grouper) {
+		this.program = grouper;
+	}
+
+	private void init() { // buffers are allocated on first use, most matchers never extract groups
+		int states = program.stateCount;
+		int slotCount = program.slotCount;
+		this.dense = new int[states];
+		this.sparse = new int[states];
+		this.slots = new long[states * slotCount];
+		this.nextDense = new int[states];
+		this.nextSparse = new int[states];
+		this.nextSlots = new long[states * slotCount];
+		this.scratch = new long[slotCount];
+		this.stack = new int[states];
+		this.stackNext = new int[states];
+	}
+
+	@Override
+	public PikeVM instance() {
+		return new PikeVM(program);
+	}
+
+	@Override
+	public int slotCount() {
+		return program.slotCount;
+	}
+
+	@Override
+	public long tableBytes() {
+		return program.tableBytes();
+	}
+
+	@Override
+	public boolean match(CharProvider input, long start, long end, long[] result) { // the thread of highest priority wins, as in a backtracking matcher
+		if (dense == null) {
+			init();
+		}
+		CompactNFA program = this.program;
+		int slotCount = program.slotCount;
+		nextSize = 0;
+		Arrays.fill(scratch, -1);
+		add(program.start, scratch, start);
+		swap();
+		input.move(start);
+		while (size > 0 && !input.finished() && input.current() < end) {
+			char c = input.next();
+			long pos = input.current();
+			nextSize = 0;
+			for (int i = 0; i < size; i++) {
+				int state = dense[i];
+				for (int t = program.out[state]; t < program.out[state + 1]; t++) {
+					if (c >= program.from[t] && c <= program.to[t]) {
+						System.arraycopy(slots, state * slotCount, scratch, 0, slotCount);
+						apply(program.action[t], scratch, pos);
+						add(program.target[t], scratch, pos);
+					}
+				}
+			}
+			swap();
+		}
+		if (input.current() != end) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			int state = dense[i];
+			if (program.accepting[state]) {
+				System.arraycopy(slots, state * slotCount, result, 0, slotCount);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void add(int state, long[] threadSlots, long pos) { // adds the thread and its epsilon closure depth first, states reached before keep their threads
+		CompactNFA program = this.program;
+		int slotCount = program.slotCount;
+		if (!push(state, threadSlots)) {
+			return;
+		}
+		while (stackSize > 0) {
+			int current = stack[stackSize - 1];
+			int t = stackNext[stackSize - 1];
+			if (t >= program.epsilonOut[current + 1]) {
+				stackSize--;
+				continue;
+			}
+			stackNext[stackSize - 1] = t + 1;
+			System.arraycopy(nextSlots, current * slotCount, scratch, 0, slotCount);
+			apply(program.epsilonAction[t], scratch, pos);
+			push(program.epsilonTarget[t], scratch);
+		}
+	}
+
+	private boolean push(int state, long[] threadSlots) {
+		int index = nextSparse[state];
+		if (index < nextSize && nextDense[index] == state) {
+			return false;
+		}
+		nextSparse[state] = nextSize;
+		nextDense[nextSize] = state;
+		nextSize++;
+		System.arraycopy(threadSlots, 0, nextSlots, state * program.slotCount, program.slotCount);
+		stack[stackSize] = state;
+		stackNext[stackSize] = program.epsilonOut[state];
+		stackSize++;
+		return true;
+	}
+
+	private void swap() {
+		int[] swapDense = dense;
+		dense = nextDense;
+		nextDense = swapDense;
+		int[] swapSparse = sparse;
+		sparse = nextSparse;
+		nextSparse = swapSparse;
+		long[] swapSlots = slots;
+		slots = nextSlots;
+		nextSlots = swapSlots;
+		size = nextSize;
+	}
+
+	private static void apply(int action, long[] slots, long pos) {
+		if (action > 0) {
+			slots[action - 1] = pos;
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import java.util.List;
+
+import net.amygdalum.util.io.CharClassMapper;
+import net.amygdalum.util.text.CharRange;
+
+public class ShortTableDFA extends TableDFA {
+
+	public short[] transitions; // states * mapper.indexCount(), premultiplied targets
+
+	public ShortTableDFA(int start, int accepting, int silent, List<CharRange> ranges, CharClassMapper mapper, short[] transitions) {
+		super(start, accepting, silent, ranges, mapper);
+		this.transitions = transitions;
+	}
+
+	@Override
+	public int next(int s, char c) {
+		return transitions[s + mapper.getIndex(c)];
+	}
+
+	@Override
+	public long tableBytes() {
+		return transitions.length * 2L;
+	}
+
+}
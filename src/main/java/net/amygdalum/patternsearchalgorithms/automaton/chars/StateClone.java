@@ -5,6 +5,7 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Queue;
 
+import net.amygdalum.patternsearchalgorithms.automaton.HashQueue;
 import net.amygdalum.util.tuples.Pair;
 import net.amygdalum.util.worklist.WorkSet;
 
@@ -27,7 +28,7 @@ public class StateClone {
 	}
 
 	private void process() {
-		Queue<Pair<State, State>> workset = new WorkSet<>();
+		Queue<Pair<State, State>> workset = new WorkSet<>(new HashQueue<Pair<State, State>>());
 		State clonedStart = start.asPrototype();
 		workset.add(new Pair<>(start, clonedStart));
 		states.put(start, clonedStart);
@@ -0,0 +1,192 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.amygdalum.util.io.BitMaskCharClassMapper;
+import net.amygdalum.util.io.CharClassMapper;
+import net.amygdalum.util.io.LowByteCharClassMapper;
+import net.amygdalum.util.io.SmallRangeCharClassMapper;
+import net.amygdalum.util.text.CharRange;
+
+public abstract class TableDFA extends DFA {
+
+	public int accepting; // accepting to infinity is accepting
+	public int silent; // -1 to silent is silent
+	public List<CharRange> ranges; // live char ranges, the source of mapper
+	public CharClassMapper mapper; // stride, all state ids are premultiplied by mapper.indexCount()
+
+	public TableDFA(int start, int accepting, int silent, List<CharRange> ranges, CharClassMapper mapper) {
+		super(start);
+		this.accepting = accepting;
+		this.silent = silent;
+		this.ranges = ranges;
+		this.mapper = mapper;
+	}
+
+	public static TableDFA from(NFA nfa) {
+		return from(nfa, CompileBudget.unlimited());
+	}
+
+	public static TableDFA from(NFA nfa, CompileBudget budget) {
+		nfa = nfa.clone();
+		nfa.determinize(budget);
+		return new DFABuilder(CompactNFA.of(nfa)).build();
+	}
+
+	@Override
+	public boolean accept(int s) {
+		return s >= accepting;
+	}
+
+	@Override
+	public boolean silent(int s) {
+		return s <= silent;
+	}
+
+	static CharClassMapper mapperOf(List<CharRange> liveRanges) {
+		boolean lowByte = computeLowByte(liveRanges);
+		boolean smallRange = computeSmallRange(liveRanges, lowByte);
+		if (smallRange) {
+			return new SmallRangeCharClassMapper(liveRanges);
+		} else if (lowByte) {
+			return new LowByteCharClassMapper(liveRanges);
+		} else {
+			return new BitMaskCharClassMapper(liveRanges);
+		}
+	}
+
+	static List<CharRange> live(CompactNFA nfa) {
+		List<CharRange> live = new ArrayList<>();
+		nextrange: for (CharRange range : nfa.charRanges) {
+			char c = range.from;
+			for (int i = 0; i < nfa.from.length; i++) {
+				if (nfa.from[i] <= c && c <= nfa.to[i]) {
+					live.add(range);
+					continue nextrange;
+				}
+			}
+		}
+		return live;
+	}
+
+	private static boolean computeLowByte(List<CharRange> liveRanges) {
+		Set<Integer> highbytes = new HashSet<>();
+		for (CharRange range : liveRanges) {
+			highbytes.add(range.from & 0xff00);
+			highbytes.add(range.to & 0xff00);
+		}
+		return highbytes.size() <= 1;
+	}
+
+	private static boolean computeSmallRange(List<CharRange> liveRanges, boolean lowByte) {
+		if (liveRanges.isEmpty()) {
+			return true;
+		} else {
+			char min = liveRanges.get(0).from;
+			char max = liveRanges.get(liveRanges.size() - 1).to;
+			if (lowByte) {
+				return max - min <= 64;
+			} else {
+				return max - min <= 256;
+			}
+		}
+	}
+
+	private static class DFABuilder {
+
+		private CompactNFA nfa;
+		private int[] ids; // dfa state of each nfa state
+		private List<CharRange> liveRanges;
+		private CharClassMapper mapper;
+		private int[] transitions;
+		private int accepting; // accepting to infinity is accepting
+		private int silent; // 0 to silent is silent
+
+		public DFABuilder(CompactNFA nfa) {
+			this.nfa = nfa;
+		}
+
+		private void computeTransitions() {
+			int stride = mapper.indexCount();
+			int[] transitions = new int[nfa.stateCount * stride];
+			for (int state = 0; state < nfa.stateCount; state++) {
+				int i = ids[state];
+				for (int index = 0; index < stride; index++) {
+					int target = nfa.next(state, mapper.representative(index));
+					transitions[i * stride + index] = target < 0 ? -1 : ids[target];
+				}
+			}
+			this.transitions = transitions;
+		}
+
+		private void partitionStates() { // non accepting before accepting, silent before not silent, otherwise in nfa order
+			int[] counts = new int[5];
+			for (int state = 0; state < nfa.stateCount; state++) {
+				counts[rank(state) + 1]++;
+			}
+			for (int rank = 1; rank < counts.length; rank++) {
+				counts[rank] += counts[rank - 1];
+			}
+			ids = new int[nfa.stateCount];
+			silent = -1;
+			accepting = 0;
+			for (int state = 0; state < nfa.stateCount; state++) {
+				int i = counts[rank(state)]++;
+				ids[state] = i;
+				if (nfa.silent[state]) {
+					silent = Math.max(silent, i);
+				}
+				if (!nfa.accepting[state]) {
+					accepting = Math.max(accepting, i + 1);
+				}
+			}
+		}
+
+		private int rank(int state) {
+			return (nfa.accepting[state] ? 2 : 0) + (nfa.silent[state] ? 0 : 1);
+		}
+
+		public TableDFA build() {
+			partitionStates();
+			liveRanges = live(nfa);
+			mapper = mapperOf(liveRanges);
+			computeTransitions();
+
+			int stride = mapper.indexCount();
+			int start = ids[nfa.start] * stride;
+			int accepting = this.accepting * stride;
+			int silent = (this.silent + 1) * stride - 1;
+			int max = (nfa.stateCount - 1) * stride;
+			if (max <= Byte.MAX_VALUE) {
+				byte[] transitions = new byte[this.transitions.length];
+				for (int i = 0; i < transitions.length; i++) {
+					transitions[i] = (byte) premultiplied(this.transitions[i], stride);
+				}
+				return new ByteTableDFA(start, accepting, silent, liveRanges, mapper, transitions);
+			} else if (max <= Short.MAX_VALUE) {
+				short[] transitions = new short[this.transitions.length];
+				for (int i = 0; i < transitions.length; i++) {
+					transitions[i] = (short) premultiplied(this.transitions[i], stride);
+				}
+				return new ShortTableDFA(start, accepting, silent, liveRanges, mapper, transitions);
+			} else {
+				int[] transitions = new int[this.transitions.length];
+				for (int i = 0; i < transitions.length; i++) {
+					transitions[i] = premultiplied(this.transitions[i], stride);
+				}
+				return new IntTableDFA(start, accepting, silent, liveRanges, mapper, transitions);
+			}
+		}
+
+		private int premultiplied(int state, int stride) {
+			if (state < 0) {
+				return -1;
+			}
+			return state * stride;
+		}
+
+	}
+}
@@ -0,0 +1,108 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+public class ThompsonNFA extends DFA {
+
+	private CompactNFA nfa;
+
+	private int[][] dense; // state sets: 0 is the start, 1 and 2 alternate
+	private int[][] sparse;
+	private int[] sizes;
+	private boolean[] accepting;
+	private boolean[] silent;
+
+	ThompsonNFA(CompactNFA nfa) {
+		super(0);
+		this.nfa = nfa;
+		int states = nfa.stateCount;
+		this.dense = new int[][] { new int[states], new int[states], new int[states] };
+		this.sparse = new int[][] { new int[states], new int[states], new int[states] };
+		this.sizes = new int[3];
+		this.accepting = new boolean[3];
+		this.silent = new boolean[3];
+		add(0, nfa.start);
+		closure(0);
+	}
+
+	public static ThompsonNFA of(NFA nfa) { // simulates the nfa as it is, epsilons are followed while matching
+		return new ThompsonNFA(CompactNFA.of(nfa));
+	}
+
+	@Override
+	public DFA instance() {
+		return new ThompsonNFA(nfa);
+	}
+
+	CompactNFA getNFA() {
+		return nfa;
+	}
+
+	@Override
+	public int next(int s, char c) {
+		if (s < 0) {
+			return -1;
+		}
+		int t = s == 1 ? 2 : 1;
+		sizes[t] = 0;
+		CompactNFA nfa = this.nfa;
+		int[] states = dense[s];
+		int size = sizes[s];
+		for (int i = 0; i < size; i++) {
+			int state = states[i];
+			for (int j = nfa.out[state]; j < nfa.out[state + 1]; j++) {
+				if (nfa.from[j] <= c && c <= nfa.to[j]) {
+					add(t, nfa.target[j]);
+				}
+			}
+		}
+		if (sizes[t] == 0) {
+			return -1;
+		}
+		closure(t);
+		return t;
+	}
+
+	@Override
+	public boolean accept(int s) {
+		return s >= 0 && accepting[s];
+	}
+
+	@Override
+	public boolean silent(int s) {
+		return s < 0 || silent[s];
+	}
+
+	@Override
+	public long tableBytes() {
+		return nfa.tableBytes();
+	}
+
+	private void add(int s, int state) {
+		int[] states = dense[s];
+		int index = sparse[s][state];
+		int size = sizes[s];
+		if (index < size && states[index] == state) {
+			return;
+		}
+		sparse[s][state] = size;
+		states[size] = state;
+		sizes[s] = size + 1;
+	}
+
+	private void closure(int s) { // the set itself is the work list, states added by epsilons are visited in turn
+		CompactNFA nfa = this.nfa;
+		int[] states = dense[s];
+		boolean accept = false;
+		boolean silence = true;
+		for (int i = 0; i < sizes[s]; i++) {
+			int state = states[i];
+			accept |= nfa.accepting[state];
+			silence &= nfa.silent[state];
+			for (int j = nfa.epsilonOut[state]; j < nfa.epsilonOut[state + 1]; j++) {
+				add(s, nfa.epsilonTarget[j]);
+			}
+		}
+		accepting[s] = accept;
+		silent[s] = silence;
+	}
+
+}
@@ -1,7 +1,15 @@
 package net.amygdalum.patternsearchalgorithms.pattern;
 
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MATCH;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.pattern.bytes.ByteArrayProvider;
 import net.amygdalum.patternsearchalgorithms.pattern.bytes.MatcherFactory;
 import net.amygdalum.patternsearchalgorithms.pattern.bytes.SearchMatcherFactory;
 import net.amygdalum.patternsearchalgorithms.pattern.bytes.SimpleMatcherFactory;
@@ -10,16 +18,17 @@ import net.amygdalum.regexparser.RegexParser;
 import net.amygdalum.regexparser.RegexParserOption;
 import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
-import net.amygdalum.util.io.StringByteProvider;
 
 class BytePattern extends Pattern {
 
 	private String pattern;
+	private OptimizationTarget target;
 	private MatcherFactory factory;
 	private Charset charset;
 
-	BytePattern(String pattern, MatcherFactory factory, Charset charset) {
+	BytePattern(String pattern, OptimizationTarget target, MatcherFactory factory, Charset charset) {
 		this.pattern = pattern;
+		this.target = target;
 		this.factory = factory;
 		this.charset = charset;
 	}
@@ -29,9 +38,19 @@ class BytePattern extends Pattern {
 		return pattern;
 	}
 
+	@Override
+	public Engine engine() {
+		return factory.engine();
+	}
+
+	@Override
+	long tableBytes() {
+		return factory.tableBytes();
+	}
+
 	@Override
 	public Matcher matcher(String input) {
-		ByteProvider bytes = new StringByteProvider(input, 0, charset);
+		ByteProvider bytes = ByteArrayProvider.encode(input, charset);
 		return factory.newMatcher(bytes);
 	}
 
@@ -42,7 +61,7 @@ class BytePattern extends Pattern {
 
 	@Override
 	public Matcher matcher(byte[] input) {
-		return factory.newMatcher(new StringByteProvider(input, 0, charset));
+		return factory.newMatcher(new ByteArrayProvider(input, 0, charset));
 	}
 
 	@Override
@@ -50,24 +69,45 @@ class BytePattern extends Pattern {
 		return factory.newMatcher(input);
 	}
 
-	static Pattern compile(String pattern, CharsetOption charset, RegexOption[] regexOptions, OptimizationTarget optimizations, SearchMode mode) {
+	static Pattern compile(String pattern, CharsetOption charset, RegexOption[] regexOptions, OptimizationTarget optimizations, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
 		RegexNode node = buildNFAFrom(pattern, regexOptions);
 
-		MatcherFactory factory = buildFactory(node, charset, optimizations, mode);
+		MatcherFactory factory = buildFactory(node, charset, optimizations, mode, lazy, budget);
 
-		return new BytePattern(pattern, factory, charset.getCharset());
+		return new BytePattern(pattern, optimizations, factory, charset.getCharset());
 	}
 
-	private static MatcherFactory buildFactory(RegexNode node, CharsetOption charset, OptimizationTarget optimizationTarget, SearchMode mode) {
+	private static MatcherFactory buildFactory(RegexNode node, CharsetOption charset, OptimizationTarget optimizationTarget, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
 		switch (optimizationTarget) {
 		case SEARCH:
-			return SearchMatcherFactory.compile(node, charset.getCharset(), mode);
+			return SearchMatcherFactory.compile(node, charset.getCharset(), mode, lazy, budget);
+		case MEMORY:
+			return SearchMatcherFactory.compileThompson(node, charset.getCharset(), mode);
 		case MATCH:
 		default:
-			return SimpleMatcherFactory.compile(node, charset.getCharset(), mode);
+			return SimpleMatcherFactory.compile(node, charset.getCharset(), mode, lazy, budget);
 		}
 	}
 
+	static Pattern read(ByteBuffer buffer) {
+		AutomatonReader in = new AutomatonReader(buffer);
+		String pattern = in.readString();
+		Charset charset = Charset.forName(in.readString());
+		OptimizationTarget target = OptimizationTarget.values()[in.readInt()];
+		MatcherFactory factory = target == MATCH ? SimpleMatcherFactory.readFrom(in, charset) : SearchMatcherFactory.readFrom(in, charset);
+		return new BytePattern(pattern, target, factory, charset);
+	}
+
+	@Override
+	void write(DataOutputStream data) throws IOException {
+		data.writeByte(BYTES);
+		AutomatonWriter out = new AutomatonWriter(data);
+		out.writeString(pattern);
+		out.writeString(charset.name());
+		out.writeInt(target.ordinal());
+		factory.writeTo(out);
+	}
+
 	public static RegexNode buildNFAFrom(String pattern, RegexOption[] regexOptions) {
 		RegexParserOption[] parserOptions = RegexOption.toRegexParserOptions(regexOptions);
 		RegexParser parser = new RegexParser(pattern, parserOptions);
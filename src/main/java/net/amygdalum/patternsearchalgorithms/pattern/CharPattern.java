@@ -1,24 +1,33 @@
 package net.amygdalum.patternsearchalgorithms.pattern;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MATCH;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter;
 import net.amygdalum.patternsearchalgorithms.pattern.chars.MatcherFactory;
 import net.amygdalum.patternsearchalgorithms.pattern.chars.SearchMatcherFactory;
 import net.amygdalum.patternsearchalgorithms.pattern.chars.SimpleMatcherFactory;
+import net.amygdalum.patternsearchalgorithms.pattern.chars.StringProvider;
 import net.amygdalum.regexparser.RegexNode;
 import net.amygdalum.regexparser.RegexParser;
 import net.amygdalum.regexparser.RegexParserOption;
 import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
-import net.amygdalum.util.io.StringCharProvider;
 
 class CharPattern extends Pattern {
 
 	private String pattern;
+	private OptimizationTarget target;
 	private MatcherFactory factory;
 
-	CharPattern(String pattern, MatcherFactory factory) {
+	CharPattern(String pattern, OptimizationTarget target, MatcherFactory factory) {
 		this.pattern = pattern;
+		this.target = target;
 		this.factory = factory;
 	}
 
@@ -27,9 +36,19 @@ class CharPattern extends Pattern {
 		return pattern;
 	}
 
+	@Override
+	public Engine engine() {
+		return factory.engine();
+	}
+
+	@Override
+	long tableBytes() {
+		return factory.tableBytes();
+	}
+
 	@Override
 	public Matcher matcher(String input) {
-		CharProvider chars = new StringCharProvider(input, 0);
+		CharProvider chars = new StringProvider(input, 0);
 		return factory.newMatcher(chars);
 	}
 
@@ -40,7 +59,7 @@ class CharPattern extends Pattern {
 
 	@Override
 	public Matcher matcher(byte[] input) {
-		CharProvider chars = new StringCharProvider(new String(input, UTF_8), 0);
+		CharProvider chars = new StringProvider(new String(input, UTF_8), 0);
 		return factory.newMatcher(chars);
 	}
 
@@ -49,24 +68,43 @@ class CharPattern extends Pattern {
 		throw new UnsupportedOperationException();
 	}
 
-	static Pattern compile(String pattern, RegexOption[] regexOptions, OptimizationTarget optimizations, SearchMode mode) {
+	static Pattern compile(String pattern, RegexOption[] regexOptions, OptimizationTarget optimizations, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
 		RegexNode node = buildNFAFrom(pattern, regexOptions);
 
-		MatcherFactory factory = buildFactory(node, optimizations, mode);
+		MatcherFactory factory = buildFactory(node, optimizations, mode, lazy, budget);
 
-		return new CharPattern(pattern, factory);
+		return new CharPattern(pattern, optimizations, factory);
 	}
 
-	private static MatcherFactory buildFactory(RegexNode node, OptimizationTarget optimizationTarget, SearchMode mode) {
+	private static MatcherFactory buildFactory(RegexNode node, OptimizationTarget optimizationTarget, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
 		switch (optimizationTarget) {
 		case SEARCH:
-			return SearchMatcherFactory.compile(node, mode);
+			return SearchMatcherFactory.compile(node, mode, lazy, budget);
+		case MEMORY:
+			return SearchMatcherFactory.compileThompson(node, mode);
 		case MATCH:
 		default:
-			return SimpleMatcherFactory.compile(node, mode);
+			return SimpleMatcherFactory.compile(node, mode, lazy, budget);
 		}
 	}
 
+	static Pattern read(ByteBuffer buffer) {
+		AutomatonReader in = new AutomatonReader(buffer);
+		String pattern = in.readString();
+		OptimizationTarget target = OptimizationTarget.values()[in.readInt()];
+		MatcherFactory factory = target == MATCH ? SimpleMatcherFactory.readFrom(in) : SearchMatcherFactory.readFrom(in);
+		return new CharPattern(pattern, target, factory);
+	}
+
+	@Override
+	void write(DataOutputStream data) throws IOException {
+		data.writeByte(CHARS);
+		AutomatonWriter out = new AutomatonWriter(data);
+		out.writeString(pattern);
+		out.writeInt(target.ordinal());
+		factory.writeTo(out);
+	}
+
 	public static RegexNode buildNFAFrom(String pattern, RegexOption[] regexOptions) {
 		RegexParserOption[] parserOptions = RegexOption.toRegexParserOptions(regexOptions);
 		RegexParser parser = new RegexParser(pattern, parserOptions);
@@ -0,0 +1,55 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import java.util.concurrent.TimeUnit;
+
+public class CompileBudgetOption implements PatternOption {
+
+	public static final int UNLIMITED_STATES = Integer.MAX_VALUE;
+	public static final long UNLIMITED_TIME = Long.MAX_VALUE;
+
+	private int maxStates;
+	private long maxMillis;
+
+	public CompileBudgetOption(int maxStates) {
+		this(maxStates, UNLIMITED_TIME);
+	}
+
+	public CompileBudgetOption(int maxStates, long maxMillis) {
+		this.maxStates = maxStates;
+		this.maxMillis = maxMillis;
+	}
+
+	public static CompileBudgetOption maxStates(int maxStates) {
+		return new CompileBudgetOption(maxStates, UNLIMITED_TIME);
+	}
+
+	public static CompileBudgetOption maxTime(long time, TimeUnit unit) {
+		return new CompileBudgetOption(UNLIMITED_STATES, unit.toMillis(time));
+	}
+
+	public static CompileBudgetOption firstOf(PatternOption[] options) {
+		for (PatternOption option : options) {
+			if (option instanceof CompileBudgetOption) {
+				return (CompileBudgetOption) option;
+			}
+		}
+		return null;
+	}
+
+	public int getMaxStates() {
+		return maxStates;
+	}
+
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+
+	public long deadline() {
+		long maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+		if (maxNanos == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return System.nanoTime() + maxNanos;
+	}
+
+}
@@ -0,0 +1,26 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class CompilePoolOption implements PatternOption {
+
+	private ForkJoinPool pool;
+
+	public CompilePoolOption(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public static CompilePoolOption firstOf(PatternOption[] options) {
+		for (PatternOption option : options) {
+			if (option instanceof CompilePoolOption) {
+				return (CompilePoolOption) option;
+			}
+		}
+		return null;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+}
@@ -0,0 +1,7 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+public enum Engine {
+
+	DFA, LAZY_DFA, NFA_SIMULATION, THOMPSON_NFA;
+
+}
@@ -0,0 +1,85 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import java.util.List;
+
+import net.amygdalum.regexparser.ConcatNode;
+import net.amygdalum.regexparser.GroupNode;
+import net.amygdalum.regexparser.RegexNode;
+import net.amygdalum.regexparser.SingleCharNode;
+import net.amygdalum.regexparser.StringNode;
+
+public class InnerLiteral {
+
+	private List<RegexNode> prefix;
+	private String literal;
+	private List<RegexNode> suffix;
+
+	public InnerLiteral(List<RegexNode> prefix, String literal, List<RegexNode> suffix) {
+		this.prefix = prefix;
+		this.literal = literal;
+		this.suffix = suffix;
+	}
+
+	public static InnerLiteral of(RegexNode node) {
+		if (!(node instanceof ConcatNode)) {
+			return null;
+		}
+		List<RegexNode> nodes = ((ConcatNode) node).getSubNodes();
+		int best = -1;
+		int bestRarity = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			String literal = literalOf(nodes.get(i));
+			if (literal == null) {
+				continue;
+			}
+			int rarity = rarity(literal);
+			if (rarity > bestRarity) {
+				best = i;
+				bestRarity = rarity;
+			}
+		}
+		if (best < 0) {
+			return null;
+		}
+		return new InnerLiteral(nodes.subList(0, best), literalOf(nodes.get(best)), nodes.subList(best + 1, nodes.size()));
+	}
+
+	private static String literalOf(RegexNode node) {
+		if (node instanceof GroupNode) {
+			return literalOf(((GroupNode) node).getSubNode());
+		} else if (node instanceof StringNode) {
+			return ((StringNode) node).getValue();
+		} else if (node instanceof SingleCharNode) {
+			return String.valueOf(((SingleCharNode) node).getValue());
+		} else {
+			return null;
+		}
+	}
+
+	private static int rarity(String literal) {
+		int rarity = 0;
+		for (char c : literal.toCharArray()) {
+			if (c == ' ' || c >= 'a' && c <= 'z') {
+				rarity += 1; // frequent in text
+			} else if (c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') {
+				rarity += 2;
+			} else {
+				rarity += 4;
+			}
+		}
+		return rarity;
+	}
+
+	public List<RegexNode> getPrefix() {
+		return prefix;
+	}
+
+	public String getLiteral() {
+		return literal;
+	}
+
+	public List<RegexNode> getSuffix() {
+		return suffix;
+	}
+
+}
@@ -0,0 +1,30 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+public class LazyDFAOption implements PatternOption {
+
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private int cacheSize;
+
+	public LazyDFAOption() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	public LazyDFAOption(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	public static LazyDFAOption firstOf(PatternOption[] options) {
+		for (PatternOption option : options) {
+			if (option instanceof LazyDFAOption) {
+				return (LazyDFAOption) option;
+			}
+		}
+		return null;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+}
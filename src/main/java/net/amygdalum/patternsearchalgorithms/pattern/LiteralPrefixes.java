@@ -0,0 +1,241 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static java.util.Collections.singleton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.amygdalum.regexparser.AlternativesNode;
+import net.amygdalum.regexparser.AnyCharNode;
+import net.amygdalum.regexparser.BoundedLoopNode;
+import net.amygdalum.regexparser.CharClassNode;
+import net.amygdalum.regexparser.CompClassNode;
+import net.amygdalum.regexparser.ConcatNode;
+import net.amygdalum.regexparser.DefinedCharNode;
+import net.amygdalum.regexparser.EmptyNode;
+import net.amygdalum.regexparser.GroupNode;
+import net.amygdalum.regexparser.OptionalNode;
+import net.amygdalum.regexparser.RangeCharNode;
+import net.amygdalum.regexparser.RegexNode;
+import net.amygdalum.regexparser.RegexNodeVisitor;
+import net.amygdalum.regexparser.SingleCharNode;
+import net.amygdalum.regexparser.SpecialCharClassNode;
+import net.amygdalum.regexparser.StringNode;
+import net.amygdalum.regexparser.UnboundedLoopNode;
+
+public class LiteralPrefixes implements RegexNodeVisitor<LiteralPrefixes.Prefixes> {
+
+	private static final int MAX_LITERALS = 16;
+	private static final int MAX_LENGTH = 32;
+	private static final int SELECTIVE_LENGTH = 3; // longer prefixes are not worth multiplying the number of literals
+
+	public static List<String> of(RegexNode node) {
+		Prefixes prefixes = node.accept(new LiteralPrefixes());
+		List<String> literals = new ArrayList<>();
+		for (String literal : prefixes.strings) {
+			if (literal.isEmpty()) {
+				return new ArrayList<>();
+			}
+			if (!hasPrefixIn(literal, literals)) {
+				literals.add(literal);
+			}
+		}
+		return literals;
+	}
+
+	private static boolean hasPrefixIn(String literal, List<String> literals) {
+		for (String prefix : literals) {
+			if (literal.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Prefixes visitAlternatives(AlternativesNode node) {
+		Set<String> strings = new TreeSet<>();
+		boolean complete = true;
+		for (RegexNode subNode : node.getSubNodes()) {
+			Prefixes prefixes = subNode.accept(this);
+			strings.addAll(prefixes.strings);
+			complete &= prefixes.complete;
+		}
+		if (strings.size() > MAX_LITERALS) {
+			return Prefixes.unknown();
+		}
+		return new Prefixes(strings, complete);
+	}
+
+	@Override
+	public Prefixes visitAnyChar(AnyCharNode node) {
+		return Prefixes.unknown();
+	}
+
+	@Override
+	public Prefixes visitCharClass(CharClassNode node) {
+		return chars(node.toCharNodes());
+	}
+
+	@Override
+	public Prefixes visitCompClass(CompClassNode node) {
+		return Prefixes.unknown();
+	}
+
+	@Override
+	public Prefixes visitConcat(ConcatNode node) {
+		Prefixes prefixes = Prefixes.empty();
+		for (RegexNode subNode : node.getSubNodes()) {
+			if (!prefixes.complete) {
+				break;
+			}
+			prefixes = prefixes.concat(subNode.accept(this));
+		}
+		return prefixes;
+	}
+
+	@Override
+	public Prefixes visitEmpty(EmptyNode node) {
+		return Prefixes.empty();
+	}
+
+	@Override
+	public Prefixes visitGroup(GroupNode node) {
+		return node.getSubNode().accept(this);
+	}
+
+	@Override
+	public Prefixes visitBoundedLoop(BoundedLoopNode node) {
+		return loop(node.getSubNode(), node.getFrom(), node.getFrom() == node.getTo());
+	}
+
+	@Override
+	public Prefixes visitUnboundedLoop(UnboundedLoopNode node) {
+		return loop(node.getSubNode(), node.getFrom(), false);
+	}
+
+	private Prefixes loop(RegexNode subNode, int from, boolean fixed) {
+		if (from == 0) {
+			return Prefixes.unknown();
+		}
+		Prefixes sub = subNode.accept(this);
+		Prefixes prefixes = sub;
+		for (int i = 1; i < from && prefixes.complete; i++) {
+			prefixes = prefixes.concat(sub);
+		}
+		if (fixed) {
+			return prefixes;
+		}
+		return prefixes.incomplete();
+	}
+
+	@Override
+	public Prefixes visitOptional(OptionalNode node) {
+		Prefixes prefixes = node.getSubNode().accept(this);
+		Set<String> strings = new TreeSet<>(prefixes.strings);
+		strings.add("");
+		return new Prefixes(strings, prefixes.complete);
+	}
+
+	@Override
+	public Prefixes visitRangeChar(RangeCharNode node) {
+		return chars(node.toCharNodes());
+	}
+
+	@Override
+	public Prefixes visitSingleChar(SingleCharNode node) {
+		return new Prefixes(singleton(String.valueOf(node.getValue())), true);
+	}
+
+	@Override
+	public Prefixes visitSpecialCharClass(SpecialCharClassNode node) {
+		return chars(node.toCharNodes());
+	}
+
+	@Override
+	public Prefixes visitString(StringNode node) {
+		return new Prefixes(singleton(node.getValue()), true).truncate();
+	}
+
+	private Prefixes chars(List<DefinedCharNode> charNodes) {
+		Set<String> strings = new TreeSet<>();
+		for (DefinedCharNode charNode : charNodes) {
+			if (strings.size() + charNode.size() > MAX_LITERALS) {
+				return Prefixes.unknown();
+			}
+			for (char c : charNode.chars()) {
+				strings.add(String.valueOf(c));
+			}
+		}
+		return new Prefixes(strings, true);
+	}
+
+	public static class Prefixes {
+
+		private Set<String> strings;
+		private boolean complete; // strings are exactly the matched words, not only their prefixes
+
+		public Prefixes(Collection<String> strings, boolean complete) {
+			this.strings = new TreeSet<>(strings);
+			this.complete = complete;
+		}
+
+		public static Prefixes empty() {
+			return new Prefixes(singleton(""), true);
+		}
+
+		public static Prefixes unknown() {
+			return new Prefixes(singleton(""), false);
+		}
+
+		public Prefixes incomplete() {
+			return new Prefixes(strings, false);
+		}
+
+		public Prefixes concat(Prefixes next) {
+			if (!complete) {
+				return this;
+			}
+			if (strings.size() * next.strings.size() > MAX_LITERALS) {
+				return incomplete();
+			}
+			if (next.strings.size() > 1 && minLength() >= SELECTIVE_LENGTH) {
+				return incomplete();
+			}
+			Set<String> concatenated = new TreeSet<>();
+			for (String prefix : strings) {
+				for (String suffix : next.strings) {
+					concatenated.add(prefix + suffix);
+				}
+			}
+			return new Prefixes(concatenated, next.complete).truncate();
+		}
+
+		private int minLength() {
+			int minLength = Integer.MAX_VALUE;
+			for (String string : strings) {
+				minLength = Math.min(minLength, string.length());
+			}
+			return minLength;
+		}
+
+		public Prefixes truncate() {
+			Set<String> truncated = new TreeSet<>();
+			boolean complete = this.complete;
+			for (String string : strings) {
+				if (string.length() > MAX_LENGTH) {
+					truncated.add(string.substring(0, MAX_LENGTH));
+					complete = false;
+				} else {
+					truncated.add(string);
+				}
+			}
+			return new Prefixes(truncated, complete);
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import java.util.Arrays;
+
+public class MatchQueue {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] starts; // binary min heap ordered by start, then end
+	private long[] ends;
+	private int size;
+
+	public MatchQueue() {
+		this.starts = new long[INITIAL_CAPACITY];
+		this.ends = new long[INITIAL_CAPACITY];
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long start() {
+		return starts[0];
+	}
+
+	public long end() {
+		return ends[0];
+	}
+
+	public void add(long start, long end) {
+		if (size >= starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+		}
+		int i = size;
+		size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (compare(start, end, parent) >= 0) {
+				break;
+			}
+			starts[i] = starts[parent];
+			ends[i] = ends[parent];
+			i = parent;
+		}
+		starts[i] = start;
+		ends[i] = end;
+	}
+
+	public void remove() {
+		size--;
+		if (size == 0) {
+			return;
+		}
+		long start = starts[size];
+		long end = ends[size];
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && compare(starts[right], ends[right], child) < 0) {
+				child = right;
+			}
+			if (compare(start, end, child) <= 0) {
+				break;
+			}
+			starts[i] = starts[child];
+			ends[i] = ends[child];
+			i = child;
+		}
+		starts[i] = start;
+		ends[i] = end;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	private int compare(long start, long end, int i) {
+		int compare = Long.compare(start, starts[i]);
+		if (compare == 0) {
+			compare = Long.compare(end, ends[i]);
+		}
+		return compare;
+	}
+
+}
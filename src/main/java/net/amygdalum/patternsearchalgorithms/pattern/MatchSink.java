@@ -0,0 +1,7 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+public interface MatchSink {
+
+	void match(long start, long end);
+
+}
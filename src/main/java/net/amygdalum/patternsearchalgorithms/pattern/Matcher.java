@@ -1,5 +1,8 @@
 package net.amygdalum.patternsearchalgorithms.pattern;
 
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.CharProvider;
+
 public interface Matcher {
 
 	boolean matches();
@@ -8,6 +11,12 @@ public interface Matcher {
 
 	boolean find();
 
+	long findAll(MatchSink sink);
+
+	boolean containsMatch();
+
+	long count();
+
 	long start();
 
 	long start(int no);
@@ -20,4 +29,12 @@ public interface Matcher {
 
 	String group(int no);
 
+	void reset(String input);
+
+	void reset(CharProvider input);
+
+	void reset(byte[] input, int offset, int length);
+
+	void reset(ByteProvider input);
+
 }
@@ -2,7 +2,7 @@ package net.amygdalum.patternsearchalgorithms.pattern;
 
 public enum OptimizationTarget implements PatternOption {
 
-	MATCH, SEARCH;
+	MATCH, SEARCH, MEMORY;
 
 	public static OptimizationTarget bestOf(PatternOption[] options) {
 		OptimizationTarget target = MATCH;
@@ -1,26 +1,122 @@
 package net.amygdalum.patternsearchalgorithms.pattern;
 
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+
 import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
 
 public abstract class Pattern {
 
+	private static final int MAGIC = 0x50534150; // "PSAP"
+	private static final int VERSION = 4;
+	static final byte CHARS = 'C';
+	static final byte BYTES = 'B';
+
+	private ThreadLocal<Matcher> local = new ThreadLocal<>();
+
 	public static Pattern compile(String pattern, PatternOption... options) {
+		PatternCache cache = PatternCache.firstOf(options);
+		if (cache != null) {
+			return cache.compile(pattern, options);
+		}
+		return build(pattern, options);
+	}
+
+	static Pattern build(final String pattern, final PatternOption[] options) {
+		CompilePoolOption pool = CompilePoolOption.firstOf(options);
+		if (pool == null) {
+			return buildInPool(pattern, options); // automata are determinized in parallel on the common pool
+		}
+		return pool.getPool().invoke(ForkJoinTask.adapt(new Callable<Pattern>() {
+			@Override
+			public Pattern call() {
+				return buildInPool(pattern, options);
+			}
+		}));
+	}
+
+	private static Pattern buildInPool(String pattern, PatternOption[] options) {
 		CharsetOption charset = CharsetOption.firstOf(options);
 		RegexOption[] regexOptions = RegexOption.allOf(options);
 
 		OptimizationTarget optimizations = OptimizationTarget.bestOf(options);
 		SearchMode mode = SearchMode.firstOf(options);
+		LazyDFAOption lazy = LazyDFAOption.firstOf(options);
+		CompileBudgetOption budget = CompileBudgetOption.firstOf(options);
 
 		if (charset == null) {
-			return CharPattern.compile(pattern, regexOptions, optimizations, mode);
+			return CharPattern.compile(pattern, regexOptions, optimizations, mode, lazy, budget);
 		} else {
-			return BytePattern.compile(pattern, charset, regexOptions, optimizations, mode);
+			return BytePattern.compile(pattern, charset, regexOptions, optimizations, mode, lazy, budget);
+		}
+	}
+
+	public static Pattern load(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read = in.read(buffer);
+		while (read >= 0) {
+			bytes.write(buffer, 0, read);
+			read = in.read(buffer);
+		}
+		return load(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	public static Pattern load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, READ)) {
+			return load(channel.map(READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	public static Pattern load(ByteBuffer buffer) {
+		ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		if (in.remaining() < 9 || in.getInt() != MAGIC) {
+			throw new IllegalArgumentException("input is not a compiled pattern");
+		}
+		int version = in.getInt();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("unsupported compiled pattern version " + version);
+		}
+		byte kind = in.get();
+		switch (kind) {
+		case CHARS:
+			return CharPattern.read(in);
+		case BYTES:
+			return BytePattern.read(in);
+		default:
+			throw new IllegalArgumentException("unknown compiled pattern kind " + kind);
 		}
 	}
 
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		write(data);
+		data.flush();
+	}
+
+	abstract void write(DataOutputStream out) throws IOException;
+
 	public abstract String pattern();
 
+	public abstract Engine engine();
+
+	abstract long tableBytes(); // size of the automata tables, the weight of this pattern in a PatternCache
+
 	public abstract Matcher matcher(String input);
 
 	public abstract Matcher matcher(CharProvider input);
@@ -29,4 +125,47 @@ public abstract class Pattern {
 
 	public abstract Matcher matcher(ByteProvider input);
 
+	public Matcher localMatcher(String input) { // reuses the matcher of the current thread, valid until the next call on this thread
+		Matcher matcher = local.get();
+		if (matcher == null) {
+			matcher = matcher(input);
+			local.set(matcher);
+		} else {
+			matcher.reset(input);
+		}
+		return matcher;
+	}
+
+	public Matcher localMatcher(CharProvider input) {
+		Matcher matcher = local.get();
+		if (matcher == null) {
+			matcher = matcher(input);
+			local.set(matcher);
+		} else {
+			matcher.reset(input);
+		}
+		return matcher;
+	}
+
+	public Matcher localMatcher(byte[] input, int offset, int length) {
+		Matcher matcher = local.get();
+		if (matcher == null) {
+			matcher = matcher(new byte[0]);
+			local.set(matcher);
+		}
+		matcher.reset(input, offset, length);
+		return matcher;
+	}
+
+	public Matcher localMatcher(ByteProvider input) {
+		Matcher matcher = local.get();
+		if (matcher == null) {
+			matcher = matcher(input);
+			local.set(matcher);
+		} else {
+			matcher.reset(input);
+		}
+		return matcher;
+	}
+
 }
@@ -0,0 +1,221 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+public class PatternCache implements PatternOption {
+
+	private long maxBytes;
+	private Map<Key, Entry> entries; // in access order, the eldest entry is evicted first
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public PatternCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public static PatternCache firstOf(PatternOption[] options) {
+		for (PatternOption option : options) {
+			if (option instanceof PatternCache) {
+				return (PatternCache) option;
+			}
+		}
+		return null;
+	}
+
+	public Pattern compile(final String pattern, final PatternOption... options) {
+		Key key = new Key(pattern, options);
+		Entry entry;
+		boolean compiling = false;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(new Callable<Pattern>() {
+					@Override
+					public Pattern call() throws Exception {
+						return Pattern.build(pattern, options);
+					}
+				});
+				entries.put(key, entry);
+				compiling = true;
+				misses++;
+			} else {
+				hits++;
+			}
+		}
+		if (compiling) {
+			entry.pattern.run();
+			long size = -1;
+			try {
+				size = entry.pattern.get().tableBytes();
+			} catch (InterruptedException | ExecutionException e) {
+				// rethrown by await, failed compiles are not cached
+			} finally {
+				account(key, entry, size);
+			}
+		}
+		return await(entry);
+	}
+
+	private synchronized void account(Key key, Entry entry, long size) {
+		if (entries.get(key) != entry) {
+			return;
+		}
+		if (size < 0) {
+			entries.remove(key);
+			return;
+		}
+		entry.bytes = size;
+		bytes += size;
+		evict();
+	}
+
+	private void evict() { // entries that are still compiling have no size yet and are kept
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.bytes >= 0) {
+				iterator.remove();
+				bytes -= entry.bytes;
+				evictions++;
+			}
+		}
+	}
+
+	private static Pattern await(Entry entry) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return entry.pattern.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new RuntimeException(cause);
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private static class Entry {
+
+		private FutureTask<Pattern> pattern;
+		private long bytes;
+
+		Entry(Callable<Pattern> compile) {
+			this.pattern = new FutureTask<>(compile);
+			this.bytes = -1;
+		}
+
+	}
+
+	private static class Key {
+
+		private String pattern;
+		private Charset charset;
+		private Set<RegexOption> regexOptions;
+		private OptimizationTarget target;
+		private SearchMode mode;
+		private int lazyCacheSize; // -1 if the dfa is not lazy
+		private int maxStates;
+		private long maxMillis;
+		private int hash;
+
+		Key(String pattern, PatternOption[] options) {
+			CharsetOption charset = CharsetOption.firstOf(options);
+			LazyDFAOption lazy = LazyDFAOption.firstOf(options);
+			CompileBudgetOption budget = CompileBudgetOption.firstOf(options);
+			this.pattern = pattern;
+			this.charset = charset == null ? null : charset.getCharset();
+			this.regexOptions = EnumSet.noneOf(RegexOption.class);
+			this.regexOptions.addAll(Arrays.asList(RegexOption.allOf(options)));
+			this.target = OptimizationTarget.bestOf(options);
+			this.mode = SearchMode.firstOf(options);
+			this.lazyCacheSize = lazy == null ? -1 : lazy.getCacheSize();
+			this.maxStates = budget == null ? CompileBudgetOption.UNLIMITED_STATES : budget.getMaxStates();
+			this.maxMillis = budget == null ? CompileBudgetOption.UNLIMITED_TIME : budget.getMaxMillis();
+			this.hash = Objects.hash(pattern, this.charset, regexOptions, target, mode, lazyCacheSize, maxStates, maxMillis);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return this.hash == that.hash
+				&& this.pattern.equals(that.pattern)
+				&& Objects.equals(this.charset, that.charset)
+				&& this.regexOptions.equals(that.regexOptions)
+				&& this.target == that.target
+				&& this.mode == that.mode
+				&& this.lazyCacheSize == that.lazyCacheSize
+				&& this.maxStates == that.maxStates
+				&& this.maxMillis == that.maxMillis;
+		}
+
+	}
+
+}
@@ -16,6 +16,14 @@ public class SearchMode implements PatternOption {
 		this.overlapping = overlapping;
 	}
 
+	public static SearchMode of(boolean longest, boolean overlapping) {
+		if (longest) {
+			return overlapping ? LONGEST_WITH_OVERLAP : LONGEST_NON_OVERLAPPING;
+		} else {
+			return overlapping ? ALL : FIRSTMATCH_NON_OVERLAPPING;
+		}
+	}
+
 	public boolean findLongest() {
 		return longest;
 	}
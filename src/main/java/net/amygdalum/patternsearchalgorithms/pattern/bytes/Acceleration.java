@@ -0,0 +1,20 @@
+package net.amygdalum.patternsearchalgorithms.pattern.bytes;
+
+import net.amygdalum.util.io.ByteProvider;
+
+final class Acceleration {
+
+	private Acceleration() {
+	}
+
+	static void skip(ByteProvider input, byte[] escapes) {
+		if (input instanceof ByteArrayProvider) {
+			((ByteArrayProvider) input).skipTo(escapes);
+			return;
+		}
+		while (!input.finished() && !ByteArrayProvider.contains(escapes, input.lookahead())) {
+			input.next();
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+package net.amygdalum.patternsearchalgorithms.pattern.bytes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.text.ByteString;
+
+public class ByteArrayProvider implements ByteProvider {
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final int NO_MARK = -1;
+
+	private Charset charset;
+	private byte[] bytes;
+	private ByteBuffer words;
+	private int offset; // positions are relative to offset
+	private int limit; // index of the end of input in bytes
+	private int pos; // index of the current byte in bytes
+	private int mark;
+
+	public ByteArrayProvider(byte[] bytes, int start, Charset charset) {
+		this(bytes, 0, bytes.length, charset);
+		move(start);
+	}
+
+	public ByteArrayProvider(byte[] bytes, int offset, int length, Charset charset) {
+		this.charset = charset;
+		reset(bytes, offset, length);
+	}
+
+	public static ByteArrayProvider encode(String input, Charset charset) {
+		try {
+			ByteBuffer encoded = charset.newEncoder().encode(CharBuffer.wrap(input));
+			return new ByteArrayProvider(Arrays.copyOf(encoded.array(), encoded.limit()), 0, charset);
+		} catch (CharacterCodingException e) {
+			return new ByteArrayProvider(new byte[0], 0, charset);
+		}
+	}
+
+	public void reset(byte[] bytes, int offset, int length) { // re-points this provider to bytes[offset, offset + length), without copying
+		if (this.bytes != bytes) {
+			this.bytes = bytes;
+			this.words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		this.offset = offset;
+		this.limit = offset + length;
+		this.pos = offset;
+		this.mark = NO_MARK;
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public byte next() {
+		return bytes[pos++];
+	}
+
+	@Override
+	public byte lookahead() {
+		return bytes[pos];
+	}
+
+	@Override
+	public byte lookahead(int i) {
+		return bytes[pos + i];
+	}
+
+	@Override
+	public byte prev() {
+		return bytes[--pos];
+	}
+
+	@Override
+	public byte lookbehind() {
+		return bytes[pos - 1];
+	}
+
+	@Override
+	public byte lookbehind(int i) {
+		return bytes[pos - i - 1];
+	}
+
+	@Override
+	public long current() {
+		return pos - offset;
+	}
+
+	@Override
+	public void move(long i) {
+		pos = offset + (int) i;
+	}
+
+	@Override
+	public void forward(int i) {
+		pos += i;
+	}
+
+	@Override
+	public void finish() {
+		pos = limit;
+	}
+
+	@Override
+	public boolean finished() {
+		return pos >= limit;
+	}
+
+	@Override
+	public boolean finished(int i) {
+		return limit - pos <= i;
+	}
+
+	@Override
+	public byte at(long i) {
+		return bytes[offset + (int) i];
+	}
+
+	@Override
+	public byte[] between(long start, long end) {
+		if (end <= start) {
+			return new byte[0];
+		}
+		return Arrays.copyOfRange(bytes, offset + (int) start, offset + (int) end);
+	}
+
+	@Override
+	public ByteString slice(long start, long end) {
+		return new ByteString(between(start, end), charset);
+	}
+
+	@Override
+	public void mark() {
+		mark = pos;
+	}
+
+	@Override
+	public boolean changed() {
+		boolean changed = mark != NO_MARK && mark != pos;
+		mark = NO_MARK;
+		return changed;
+	}
+
+	public void skipTo(byte[] escapes) {
+		if (escapes.length == 0) {
+			pos = limit;
+			return;
+		}
+		long p0 = pattern(escapes[0]);
+		long p1 = escapes.length > 1 ? pattern(escapes[1]) : p0;
+		long p2 = escapes.length > 2 ? pattern(escapes[2]) : p0;
+		int last = limit - 8;
+		while (pos <= last) {
+			long word = words.getLong(pos);
+			long found = zeros(word ^ p0) | zeros(word ^ p1) | zeros(word ^ p2);
+			if (found != 0) {
+				pos += Long.numberOfTrailingZeros(found) >>> 3;
+				return;
+			}
+			pos += 8;
+		}
+		while (pos < limit && !contains(escapes, bytes[pos])) {
+			pos++;
+		}
+	}
+
+	private static long pattern(byte b) {
+		return (b & 0xffL) * ONES;
+	}
+
+	private static long zeros(long word) {
+		return (word - ONES) & ~word & HIGHS;
+	}
+
+	static boolean contains(byte[] escapes, byte b) {
+		for (byte escape : escapes) {
+			if (escape == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		long current = current();
+		long end = limit - offset;
+		ByteString prefix = slice(0, current);
+		StringBuilder buffer = new StringBuilder(prefix.getMappablePrefix());
+		if (prefix.isMappable()) {
+			buffer.append('|');
+		} else {
+			buffer.append("~|~");
+			while (current < end && !slice(current, end).isMappable()) {
+				current++;
+			}
+		}
+		if (current < end) {
+			buffer.append(slice(current, end).getMappableSuffix());
+		}
+		return buffer.toString();
+	}
+
+}
@@ -0,0 +1,171 @@
+package net.amygdalum.patternsearchalgorithms.pattern.bytes;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.DFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchQueue;
+import net.amygdalum.util.io.ByteProvider;
+
+public class InnerLiteralSearch {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private byte[] literal;
+	private int maxLength; // of a match, -1 if unbounded
+	private LiteralPrefilter search;
+	private DFA prefix; // reverse, anchored at the literal start, null if the literal starts the pattern
+	private DFA suffix; // anchored at the literal end, null if the literal ends the pattern
+
+	private int[] starts; // of the matches around the current literal, descending
+	private int[] ends; // of the matches around the current literal, ascending
+	private long[] found; // start << 32 | end of each match
+	private int foundSize;
+
+	public InnerLiteralSearch(byte[] literal, DFA prefix, DFA suffix, int maxLength) {
+		this.literal = literal;
+		this.maxLength = maxLength;
+		this.search = new LiteralPrefilter(new byte[][] { literal });
+		this.prefix = prefix;
+		this.suffix = suffix;
+		this.starts = new int[INITIAL_CAPACITY];
+		this.ends = new int[INITIAL_CAPACITY];
+		this.found = new long[INITIAL_CAPACITY];
+	}
+
+	public long tableBytes() {
+		return (prefix == null ? 0 : prefix.tableBytes()) + (suffix == null ? 0 : suffix.tableBytes());
+	}
+
+	public static InnerLiteralSearch readFrom(AutomatonReader in, int maxLength) {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		byte[] literal = in.readBytes();
+		DFA prefix = in.readDFA();
+		DFA suffix = in.readDFA();
+		return new InnerLiteralSearch(literal, prefix, suffix, maxLength);
+	}
+
+	public static void writeTo(InnerLiteralSearch inner, AutomatonWriter out) throws IOException {
+		out.writeBoolean(inner != null);
+		if (inner == null) {
+			return;
+		}
+		out.writeBytes(inner.literal);
+		out.writeDFA(inner.prefix);
+		out.writeDFA(inner.suffix);
+	}
+
+	public InnerLiteralSearch instance() {
+		return new InnerLiteralSearch(literal,
+			prefix == null ? null : prefix.instance(),
+			suffix == null ? null : suffix.instance(),
+			maxLength);
+	}
+
+	public boolean supports(ByteProvider input) {
+		return input instanceof ByteArrayProvider;
+	}
+
+	public void collect(ByteProvider input, MatchQueue matches) {
+		ByteArrayProvider array = (ByteArrayProvider) input;
+		byte[] bytes = array.getBytes();
+		int offset = array.getOffset();
+		int length = array.getLimit();
+		foundSize = 0;
+		int pos = search.find(bytes, offset + (int) input.current(), length);
+		while (pos < length) {
+			int startCount = starts(bytes, pos, offset);
+			if (startCount > 0) {
+				int limit = maxLength < 0 ? length : (int) Math.min(length, (long) starts[startCount - 1] + maxLength);
+				int endCount = ends(bytes, pos + literal.length, limit);
+				found(startCount, endCount);
+			}
+			pos = search.find(bytes, pos + 1, length);
+		}
+		queue(matches, offset);
+		input.finish();
+	}
+
+	private int starts(byte[] bytes, int pos, int offset) {
+		if (prefix == null) {
+			starts[0] = pos;
+			return 1;
+		}
+		int count = 0;
+		int state = prefix.start;
+		if (prefix.accept(state)) {
+			count = addStart(count, pos);
+		}
+		int min = maxLength < 0 ? offset : Math.max(offset, pos + literal.length - maxLength);
+		for (int i = pos - 1; i >= min && state >= 0; i--) {
+			state = prefix.next(state, bytes[i]);
+			if (prefix.accept(state)) {
+				count = addStart(count, i);
+			}
+		}
+		return count;
+	}
+
+	private int ends(byte[] bytes, int pos, int limit) {
+		if (suffix == null) {
+			ends[0] = pos;
+			return 1;
+		}
+		int count = 0;
+		int state = suffix.start;
+		if (suffix.accept(state)) {
+			count = addEnd(count, pos);
+		}
+		for (int i = pos; i < limit && state >= 0; i++) {
+			state = suffix.next(state, bytes[i]);
+			if (suffix.accept(state)) {
+				count = addEnd(count, i + 1);
+			}
+		}
+		return count;
+	}
+
+	private int addStart(int count, int start) {
+		if (count >= starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+		}
+		starts[count] = start;
+		return count + 1;
+	}
+
+	private int addEnd(int count, int end) {
+		if (count >= ends.length) {
+			ends = Arrays.copyOf(ends, count * 2);
+		}
+		ends[count] = end;
+		return count + 1;
+	}
+
+	private void found(int startCount, int endCount) {
+		int size = foundSize + startCount * endCount;
+		if (size > found.length) {
+			found = Arrays.copyOf(found, Math.max(size, found.length * 2));
+		}
+		for (int i = 0; i < startCount; i++) {
+			long start = (long) starts[i] << 32;
+			for (int j = 0; j < endCount; j++) {
+				found[foundSize++] = start | ends[j];
+			}
+		}
+	}
+
+	private void queue(MatchQueue matches, int offset) { // a match around more than one literal is found once per literal
+		Arrays.sort(found, 0, foundSize);
+		for (int i = 0; i < foundSize; i++) {
+			long match = found[i];
+			if (i == 0 || match != found[i - 1]) {
+				matches.add((match >>> 32) - offset, (match & 0xffffffffL) - offset);
+			}
+		}
+	}
+
+}
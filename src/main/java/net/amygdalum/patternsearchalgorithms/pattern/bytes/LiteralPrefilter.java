@@ -0,0 +1,117 @@
+package net.amygdalum.patternsearchalgorithms.pattern.bytes;
+
+import static net.amygdalum.util.text.ByteEncoding.encode;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter;
+import net.amygdalum.util.io.ByteProvider;
+
+public class LiteralPrefilter {
+
+	private byte[][] literals;
+	private int minLength;
+	private int[] shift;
+
+	public LiteralPrefilter(byte[][] literals) {
+		this.literals = literals;
+		this.minLength = minLength(literals);
+		this.shift = computeShift(literals, minLength);
+	}
+
+	public static LiteralPrefilter of(List<String> literals, Charset charset) {
+		if (literals.isEmpty()) {
+			return null;
+		}
+		byte[][] encoded = new byte[literals.size()][];
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = encode(literals.get(i), charset);
+			if (encoded[i].length == 0) {
+				return null;
+			}
+		}
+		return new LiteralPrefilter(encoded);
+	}
+
+	public static LiteralPrefilter readFrom(AutomatonReader in) {
+		int count = in.readInt();
+		if (count == 0) {
+			return null;
+		}
+		byte[][] literals = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			literals[i] = in.readBytes();
+		}
+		return new LiteralPrefilter(literals);
+	}
+
+	public static void writeTo(LiteralPrefilter prefilter, AutomatonWriter out) throws IOException {
+		if (prefilter == null) {
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(prefilter.literals.length);
+		for (byte[] literal : prefilter.literals) {
+			out.writeBytes(literal);
+		}
+	}
+
+	private static int minLength(byte[][] literals) {
+		int minLength = Integer.MAX_VALUE;
+		for (byte[] literal : literals) {
+			minLength = Math.min(minLength, literal.length);
+		}
+		return minLength;
+	}
+
+	private static int[] computeShift(byte[][] literals, int minLength) {
+		int[] shift = new int[256];
+		Arrays.fill(shift, minLength);
+		for (byte[] literal : literals) {
+			for (int i = 0; i < minLength - 1; i++) {
+				int b = literal[i] & 0xff;
+				shift[b] = Math.min(shift[b], minLength - 1 - i);
+			}
+		}
+		return shift;
+	}
+
+	public void skip(ByteProvider input) {
+		if (input instanceof ByteArrayProvider) {
+			ByteArrayProvider array = (ByteArrayProvider) input;
+			int offset = array.getOffset();
+			input.move(find(array.getBytes(), offset + (int) input.current(), array.getLimit()) - offset);
+		}
+	}
+
+	public int find(byte[] bytes, int pos, int limit) { // index of the first literal in bytes[pos, limit), limit if there is none
+		int last = minLength - 1;
+		while (pos + last < limit) {
+			if (matchesAt(bytes, pos, limit)) {
+				return pos;
+			}
+			pos += shift[bytes[pos + last] & 0xff];
+		}
+		return limit;
+	}
+
+	private boolean matchesAt(byte[] bytes, int pos, int limit) {
+		nextliteral: for (byte[] literal : literals) {
+			if (pos + literal.length > limit) {
+				continue;
+			}
+			for (int i = 0; i < literal.length; i++) {
+				if (bytes[pos + i] != literal[i]) {
+					continue nextliteral;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -1,5 +1,9 @@
 package net.amygdalum.patternsearchalgorithms.pattern.bytes;
 
+import java.io.IOException;
+
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.pattern.Engine;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
 import net.amygdalum.util.io.ByteProvider;
 
@@ -7,4 +11,10 @@ public interface MatcherFactory {
 
 	Matcher newMatcher(ByteProvider input);
 
+	Engine engine();
+
+	long tableBytes();
+
+	void writeTo(AutomatonWriter out) throws IOException;
+
 }
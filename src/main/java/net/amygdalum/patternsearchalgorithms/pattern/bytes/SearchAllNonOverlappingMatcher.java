@@ -1,35 +1,45 @@
 package net.amygdalum.patternsearchalgorithms.pattern.bytes;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
-import java.util.Queue;
-
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.bytes.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchQueue;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
 import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.CharProvider;
 import net.amygdalum.util.io.ReverseByteProvider;
 
 public class SearchAllNonOverlappingMatcher implements Matcher {
 
 	private DFA finder;
 	private DFA backmatcher;
-	private NFA grouper;
+	private int maxLength;
+	private GroupExtractor grouper;
+	private LiteralPrefilter prefilter;
+	private InnerLiteralSearch inner;
+	private StartScanner scanner;
 	private ByteProvider input;
-	private final long start;
+	private ByteArrayProvider array; // owned by this matcher, re-pointed by reset(byte[], int, int)
+	private long start;
 
 	private Groups groups;
-	private Queue<Groups> nextgroups;
+	private MatchQueue nextgroups;
+	private ByteProvider reverse;
 
-	public SearchAllNonOverlappingMatcher(DFA finder, DFA backmatcher, NFA grouper, ByteProvider input) {
+	public SearchAllNonOverlappingMatcher(DFA finder, DFA backmatcher, int maxLength, GroupExtractor grouper, LiteralPrefilter prefilter, InnerLiteralSearch inner, StartScanner scanner, ByteProvider input) {
 		this.finder = finder;
 		this.backmatcher = backmatcher;
+		this.maxLength = maxLength;
 		this.grouper = grouper;
+		this.prefilter = prefilter;
+		this.inner = inner;
+		this.scanner = scanner;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
-		this.nextgroups = new PriorityQueue<>();
+		this.nextgroups = new MatchQueue();
+		this.reverse = new ReverseByteProvider(input);
 	}
 
 	@Override
@@ -55,6 +65,12 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 			return true;
 		}
 		while (!input.finished() && state >= 0 && !finder.silent(state)) {
+			if (finder.accelerated(state)) {
+				Acceleration.skip(input, finder.escapes(state));
+				if (input.finished()) {
+					break;
+				}
+			}
 			byte b = input.next();
 			state = finder.next(state, b);
 			if (finder.accept(state)) {
@@ -73,7 +89,6 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 	}
 
 	private boolean verifyPrefix(long pos) {
-		ByteProvider reverse = new ReverseByteProvider(input);
 		int state = backmatcher.start;
 		while (reverse.current() > pos && state >= 0) {
 			byte b = reverse.next();
@@ -84,82 +99,185 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 
 	@Override
 	public boolean find() {
+		if (scanner != null) {
+			return scan();
+		}
 		if (!nextgroups.isEmpty()) {
-			Groups first = nextGroup();
-			if (groups.subsumes(first)) {
-				return false;
-			}
-			groups.update(first.getStart(), first.getEnd());
-			return true;
+			return nextGroup();
 		}
 		int state = finder.start;
 		long start = input.current();
 		if (finder.accept(state)) {
-			nextgroups.add(new Groups(start, input.current()));
-		} else {
-			groups.reset();
+			nextgroups.add(start, input.current());
 		}
-		while (!input.finished() && state >= 0 && !finder.silent(state)) {
-			byte b = input.next();
-			state = finder.next(state, b);
+		if (inner != null && inner.supports(input)) {
+			inner.collect(input, nextgroups);
+		} else {
+			while (!input.finished() && state >= 0 && !finder.silent(state)) {
+				if (prefilter != null && state == finder.start) {
+					prefilter.skip(input);
+					if (input.finished()) {
+						break;
+					}
+				} else if (finder.accelerated(state)) {
+					Acceleration.skip(input, finder.escapes(state));
+					if (input.finished()) {
+						break;
+					}
+				}
+				byte b = input.next();
+				state = finder.next(state, b);
+				if (finder.accept(state)) {
+					long end = input.current();
+					verifyMatches();
+					input.move(end);
+				}
+			}
 			if (finder.accept(state)) {
 				long end = input.current();
 				verifyMatches();
 				input.move(end);
 			}
 		}
-		if (finder.accept(state)) {
-			long end = input.current();
-			verifyMatches();
-			input.move(end);
+		return nextGroup();
+	}
+
+	@Override
+	public long findAll(MatchSink sink) {
+		if (scanner != null) {
+			return scanAll(sink);
 		}
-		if (nextgroups.isEmpty()) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		skipReported();
+		if (!nextgroups.isEmpty()) { // candidates queued by the last find are still to be reported
+			return true;
+		}
+		long from = input.current();
+		int state = finder.start;
+		boolean found = finder.accept(state) && !(groups.getStart() == from && groups.getEnd() == from); // the empty match at from was reported last
+		while (!found && !input.finished() && state >= 0 && !finder.silent(state)) {
+			if (prefilter != null && state == finder.start) {
+				prefilter.skip(input);
+				if (input.finished()) {
+					break;
+				}
+			} else if (finder.accelerated(state)) {
+				Acceleration.skip(input, finder.escapes(state));
+				if (input.finished()) {
+					break;
+				}
+			}
+			byte b = input.next();
+			state = finder.next(state, b);
+			found = finder.accept(state);
+		}
+		input.move(from);
+		return found;
+	}
+
+	@Override
+	public long count() {
+		if (scanner != null) {
+			return scanAll(null);
+		}
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
+	}
+
+	private boolean scan() {
+		long from = input.current();
+		boolean skipEmpty = groups.getStart() == from && groups.getEnd() == from;
+		long start = scanner.match(input, from, false, skipEmpty);
+		if (start < 0) {
+			groups.reset();
 			return false;
-		} else {
-			Groups first = nextGroup();
-			if (groups.subsumes(first)) {
-				return false;
+		}
+		long end = scanner.end();
+		groups.update(start, end);
+		input.move(end);
+		return true;
+	}
+
+	private long scanAll(MatchSink sink) {
+		long count = 0;
+		long lastStart = groups.getStart();
+		long lastEnd = groups.getEnd();
+		long from = input.current();
+		while (true) {
+			long start = scanner.match(input, from, false, lastStart == from && lastEnd == from);
+			if (start < 0) {
+				break;
 			}
-			groups.update(first.getStart(), first.getEnd());
-			return true;
+			long end = scanner.end();
+			if (sink != null) {
+				sink.match(start, end);
+			}
+			count++;
+			lastStart = start;
+			lastEnd = end;
+			from = end;
 		}
+		groups.reset();
+		return count;
 	}
 
 	private void verifyMatches() {
 		long end = input.current();
+		long limit = maxLength < 0 ? Long.MIN_VALUE : end - maxLength;
 
-		ByteProvider reverse = new ReverseByteProvider(input);
 		int state = backmatcher.start;
 		if (backmatcher.accept(state)) {
-			nextgroups.add(new Groups(end, end));
+			nextgroups.add(end, end);
 		}
-		while (!reverse.finished() && state >= 0) {
+		while (!reverse.finished() && reverse.current() > limit && state >= 0) {
 			byte b = reverse.next();
 			state = backmatcher.next(state, b);
 			if (backmatcher.accept(state)) {
 				long start = input.current();
-				nextgroups.add(new Groups(start, end));
+				nextgroups.add(start, end);
 			}
 		}
 		if (backmatcher.accept(state)) {
 			long start = input.current();
-			nextgroups.add(new Groups(start, end));
+			nextgroups.add(start, end);
 		}
 	}
 
-	private Groups nextGroup() {
-		Groups groups = nextgroups.remove();
-		Iterator<Groups> groupsIterator = nextgroups.iterator();
-		while (groupsIterator.hasNext()) {
-			Groups current = groupsIterator.next();
-			if (current.overlaps(groups) && groups.getEnd() != current.getStart()) {
-				groupsIterator.remove();
-			} else {
-				break;
-			}
+	private boolean nextGroup() { // the leftmost candidate not before the end of the last match, and its shortest end, as the scanner selects it
+		skipReported();
+		if (nextgroups.isEmpty()) {
+			groups.reset();
+			return false;
 		}
+		long start = nextgroups.start();
+		long end = nextgroups.end();
+		nextgroups.remove();
+		groups.update(start, end);
+		skipReported();
+		return true;
+	}
 
-		return groups;
+	private void skipReported() { // drops candidates starting inside the last match, and the empty match at its end if it was empty
+		long start = groups.getStart();
+		long end = groups.getEnd();
+		if (start < 0) {
+			return;
+		}
+		while (!nextgroups.isEmpty() && (nextgroups.start() < end || start == end && nextgroups.start() == end && nextgroups.end() == end)) {
+			nextgroups.remove();
+		}
 	}
 
 	@Override
@@ -213,4 +331,35 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(ByteArrayProvider.encode(input, grouper.getCharset()));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		if (array == null) {
+			array = new ByteArrayProvider(input, offset, length, grouper.getCharset());
+		} else {
+			array.reset(input, offset, length);
+		}
+		reset(array);
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		if (input != this.input) {
+			this.reverse = new ReverseByteProvider(input);
+		}
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+		this.nextgroups.clear();
+	}
+
 }
@@ -1,37 +1,49 @@
 package net.amygdalum.patternsearchalgorithms.pattern.bytes;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.Arrays;
 
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.bytes.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchQueue;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
 import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.CharProvider;
 import net.amygdalum.util.io.ReverseByteProvider;
 
 public class SearchLongestOverlappingMatcher implements Matcher {
 
 	private DFA finder;
 	private DFA backmatcher;
-	private NFA grouper;
+	private int maxLength;
+	private GroupExtractor grouper;
+	private LiteralPrefilter prefilter;
+	private InnerLiteralSearch inner;
+	private MatchCounter counter;
 	private ByteProvider input;
-	private final long start;
+	private ByteArrayProvider array; // owned by this matcher, re-pointed by reset(byte[], int, int)
+	private long start;
 
 	private Groups groups;
-	private Queue<Groups> nextgroups;
+	private MatchQueue nextgroups;
+	private ByteProvider reverse;
+	private long[] ends;
 
-	public SearchLongestOverlappingMatcher(DFA finder, DFA backmatcher, NFA grouper, ByteProvider input) {
+	public SearchLongestOverlappingMatcher(DFA finder, DFA backmatcher, int maxLength, GroupExtractor grouper, LiteralPrefilter prefilter, InnerLiteralSearch inner, MatchCounter counter, ByteProvider input) {
 		this.finder = finder;
 		this.backmatcher = backmatcher;
+		this.maxLength = maxLength;
 		this.grouper = grouper;
+		this.prefilter = prefilter;
+		this.inner = inner;
+		this.counter = counter;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
-		this.nextgroups = new PriorityQueue<>();
+		this.nextgroups = new MatchQueue();
+		this.reverse = new ReverseByteProvider(input);
+		this.ends = new long[16];
 	}
 
 	@Override
@@ -50,20 +62,32 @@ public class SearchLongestOverlappingMatcher implements Matcher {
 
 	@Override
 	public boolean prefixes() {
-		List<Long> indexes = new LinkedList<>();
+		int count = 0;
 		int state = finder.start;
 		if (finder.accept(state)) {
-			indexes.add(0, start);
+			ends[0] = start;
+			count++;
 		}
 		while (!input.finished() && state >= 0 && !finder.silent(state)) {
+			if (finder.accelerated(state)) {
+				Acceleration.skip(input, finder.escapes(state));
+				if (input.finished()) {
+					break;
+				}
+			}
 			byte b = input.next();
 			state = finder.next(state, b);
 			if (finder.accept(state)) {
 				long end = input.current();
-				indexes.add(0, end);
+				if (count >= ends.length) {
+					ends = Arrays.copyOf(ends, count * 2);
+				}
+				ends[count] = end;
+				count++;
 			}
 		}
-		for (long index : indexes) {
+		for (int i = count - 1; i >= 0; i--) {
+			long index = ends[i];
 			input.move(index);
 			boolean match = verifyPrefix(start);
 			if (match) {
@@ -77,7 +101,6 @@ public class SearchLongestOverlappingMatcher implements Matcher {
 	}
 
 	private boolean verifyPrefix(long pos) {
-		ByteProvider reverse = new ReverseByteProvider(input);
 		int state = backmatcher.start;
 		while (reverse.current() > pos && state >= 0) {
 			byte b = reverse.next();
@@ -89,81 +112,143 @@ public class SearchLongestOverlappingMatcher implements Matcher {
 	@Override
 	public boolean find() {
 		if (!nextgroups.isEmpty()) {
-			Groups first = nextGroup();
-			groups.update(first.getStart(), first.getEnd());
-			return true;
+			return nextGroup(groups.getStart() + 1);
 		}
 		int state = finder.start;
 		long start = input.current();
 		if (finder.accept(state)) {
-			nextgroups.add(new Groups(start, input.current()));
-		} else {
-			groups.reset();
+			nextgroups.add(start, input.current());
 		}
-		while (!input.finished() && state >= 0 && !finder.silent(state)) {
-			byte b = input.next();
-			state = finder.next(state, b);
+		if (inner != null && inner.supports(input)) {
+			inner.collect(input, nextgroups);
+		} else {
+			while (!input.finished() && state >= 0 && !finder.silent(state)) {
+				if (prefilter != null && state == finder.start) {
+					prefilter.skip(input);
+					if (input.finished()) {
+						break;
+					}
+				} else if (finder.accelerated(state)) {
+					Acceleration.skip(input, finder.escapes(state));
+					if (input.finished()) {
+						break;
+					}
+				}
+				byte b = input.next();
+				state = finder.next(state, b);
+				if (finder.accept(state)) {
+					long end = input.current();
+					verifyMatches();
+					input.move(end);
+				}
+			}
 			if (finder.accept(state)) {
 				long end = input.current();
 				verifyMatches();
 				input.move(end);
 			}
 		}
-		if (finder.accept(state)) {
-			long end = input.current();
-			verifyMatches();
-			input.move(end);
+		return nextGroup(Math.max(start, groups.getStart() + 1));
+	}
+
+	@Override
+	public long findAll(MatchSink sink) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
 		}
-		if (nextgroups.isEmpty()) {
-			return false;
-		} else {
-			Groups first = nextGroup();
-			if (groups.subsumes(first)) {
-				return false;
-			}
-			groups.update(first.getStart(), first.getEnd());
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		skipReported(groups.getStart() + 1);
+		if (!nextgroups.isEmpty()) { // candidates queued by the last find are still to be reported
 			return true;
 		}
+		long from = input.current();
+		int state = finder.start;
+		boolean found = finder.accept(state) && groups.getStart() != from; // the matches at from were reported already
+		while (!found && !input.finished() && state >= 0 && !finder.silent(state)) {
+			if (prefilter != null && state == finder.start) {
+				prefilter.skip(input);
+				if (input.finished()) {
+					break;
+				}
+			} else if (finder.accelerated(state)) {
+				Acceleration.skip(input, finder.escapes(state));
+				if (input.finished()) {
+					break;
+				}
+			}
+			byte b = input.next();
+			state = finder.next(state, b);
+			found = finder.accept(state);
+		}
+		input.move(from);
+		return found;
+	}
+
+	@Override
+	public long count() {
+		if (counter != null && nextgroups.isEmpty() && groups.getStart() < 0) {
+			long count = counter.countStarts(input, input.current());
+			groups.reset();
+			return count;
+		}
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
 	}
 
 	private void verifyMatches() {
 		long end = input.current();
+		long limit = maxLength < 0 ? Long.MIN_VALUE : end - maxLength;
 
-		ByteProvider reverse = new ReverseByteProvider(input);
 		int state = backmatcher.start;
 		if (backmatcher.accept(state)) {
-			nextgroups.add(new Groups(end, end));
+			nextgroups.add(end, end);
 		}
-		while (!reverse.finished() && state >= 0) {
+		while (!reverse.finished() && reverse.current() > limit && state >= 0) {
 			byte b = reverse.next();
 			state = backmatcher.next(state, b);
 			if (backmatcher.accept(state)) {
 				long start = input.current();
-				nextgroups.add(new Groups(start, end));
+				nextgroups.add(start, end);
 			}
 		}
 		if (backmatcher.accept(state)) {
 			long start = input.current();
-			nextgroups.add(new Groups(start, end));
+			nextgroups.add(start, end);
 		}
 	}
 
-	private Groups nextGroup() {
-		Groups groups = nextgroups.remove();
-		Iterator<Groups> groupsIterator = nextgroups.iterator();
-		while (groupsIterator.hasNext()) {
-			Groups current = groupsIterator.next();
-			if (current.subsumes(groups)) {
-				groups = current;
-				groupsIterator.remove();
-			} else {
-				break;
-			}
+	private boolean nextGroup(long from) { // the longest candidate at the first start from on, each start is reported once
+		skipReported(from);
+		if (nextgroups.isEmpty()) {
+			return false;
+		}
+		long start = nextgroups.start();
+		long end = nextgroups.end();
+		nextgroups.remove();
+		while (!nextgroups.isEmpty() && nextgroups.start() == start) { // the longest of the candidates at start comes last
+			end = nextgroups.end();
+			nextgroups.remove();
 		}
+		groups.update(start, end);
+		return true;
+	}
 
-		return groups;
+	private void skipReported(long from) { // drops candidates before from, they are stale or reported already
+		while (!nextgroups.isEmpty() && nextgroups.start() < from) {
+			nextgroups.remove();
+		}
 	}
 
+
 	@Override
 	public long start() {
 		return groups.getStart();
@@ -215,4 +300,35 @@ public class SearchLongestOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(ByteArrayProvider.encode(input, grouper.getCharset()));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		if (array == null) {
+			array = new ByteArrayProvider(input, offset, length, grouper.getCharset());
+		} else {
+			array.reset(input, offset, length);
+		}
+		reset(array);
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		if (input != this.input) {
+			this.reverse = new ReverseByteProvider(input);
+		}
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+		this.nextgroups.clear();
+	}
+
 }
@@ -1,11 +1,26 @@
 package net.amygdalum.patternsearchalgorithms.pattern.bytes;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.CompactNFA;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.CompileBudget;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.CompileBudgetExceededException;
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.NFA;
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.NFABuilder;
 import net.amygdalum.patternsearchalgorithms.automaton.bytes.NFAComponent;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.OnePassDFA;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.PikeVM;
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.TaggedDFA;
+import net.amygdalum.patternsearchalgorithms.pattern.CompileBudgetOption;
+import net.amygdalum.patternsearchalgorithms.pattern.Engine;
+import net.amygdalum.patternsearchalgorithms.pattern.LazyDFAOption;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
 import net.amygdalum.patternsearchalgorithms.pattern.SearchMode;
 import net.amygdalum.regexparser.RegexNode;
@@ -14,35 +29,63 @@ import net.amygdalum.util.io.ByteProvider;
 public class SimpleMatcherFactory implements MatcherFactory {
 
 	private SearchMode mode;
+	private LazyDFAOption lazy;
+	private CompileBudget budget;
+	private Engine engine;
 	private Charset charset;
 	private DFA matcher;
-	private NFA grouper;
+	private GroupExtractor extractor;
 
-	public SimpleMatcherFactory(SearchMode mode, Charset charset) {
+	public SimpleMatcherFactory(SearchMode mode, Charset charset, LazyDFAOption lazy, CompileBudgetOption budget) {
 		this.mode = mode;
+		this.lazy = lazy;
 		this.charset = charset;
+		this.budget = budget == null ? CompileBudget.unlimited() : new CompileBudget(budget.getMaxStates(), budget.deadline());
+		this.engine = lazy == null ? Engine.DFA : Engine.LAZY_DFA;
 	}
 
-	public static SimpleMatcherFactory compile(RegexNode node, Charset charset, SearchMode mode) {
-		return new SimpleMatcherFactory(mode, charset).compile(node);
+	public static SimpleMatcherFactory compile(RegexNode node, Charset charset, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
+		return new SimpleMatcherFactory(mode, charset, lazy, budget).compile(node);
+	}
+
+	public static SimpleMatcherFactory readFrom(AutomatonReader in, Charset charset) {
+		boolean longest = in.readBoolean();
+		boolean overlapping = in.readBoolean();
+		SimpleMatcherFactory factory = new SimpleMatcherFactory(SearchMode.of(longest, overlapping), charset, null, null);
+		factory.engine = Engine.values()[in.readInt()];
+		factory.matcher = in.readDFA();
+		factory.extractor = in.readExtractor(charset);
+		return factory;
 	}
 
 	private SimpleMatcherFactory compile(RegexNode node) {
-		this.matcher = matcherFrom(node);
-		this.grouper = grouperFrom(node);
+		try {
+			build(node);
+		} catch (CompileBudgetExceededException e) {
+			engine = Engine.NFA_SIMULATION;
+			build(node);
+		}
 
 		return this;
 	}
 
-	private DFA matcherFrom(RegexNode node) {
+	private void build(RegexNode node) {
 		NFABuilder builder = new NFABuilder(charset);
-		return DFA.from(builder.build(node));
-	}
+		NFAComponent base = node.accept(builder);
 
-	private NFA grouperFrom(RegexNode node) {
-		NFABuilder builder = new NFABuilder(charset);
+		NFA grouper = grouperFrom(builder, base.clone());
+		NFA matcher = builder.build(base);
 
-		NFAComponent base = builder.matchGroup(node.accept(builder), 0);
+		Determinize matcherTask = new Determinize(matcher);
+		Extract extractorTask = new Extract(grouper);
+		ForkJoinTask.invokeAll(matcherTask, extractorTask); // forks into the pool of the compiling thread, the common pool unless a CompilePoolOption is given
+
+		this.matcher = matcherTask.join();
+		this.extractor = extractorTask.join();
+	}
+
+	private NFA grouperFrom(NFABuilder builder, NFAComponent groups) {
+		NFAComponent base = builder.matchGroup(groups, 0);
 
 		NFA grouper = builder.build(base);
 		grouper.prune();
@@ -50,19 +93,99 @@ public class SimpleMatcherFactory implements MatcherFactory {
 		return grouper;
 	}
 
+	private GroupExtractor extractorFrom(NFA nfa) {
+		CompactNFA grouper = CompactNFA.of(nfa);
+		OnePassDFA onePass = OnePassDFA.of(grouper);
+		if (onePass != null) {
+			return onePass;
+		}
+		TaggedDFA tagged = TaggedDFA.of(grouper);
+		if (tagged != null) {
+			return tagged;
+		}
+		return new PikeVM(grouper);
+	}
+
+	private DFA dfaFrom(NFA nfa) {
+		switch (engine) {
+		case NFA_SIMULATION:
+			return DFA.simulation(nfa);
+		case LAZY_DFA:
+			return DFA.lazy(nfa, lazy.getCacheSize());
+		case DFA:
+		default:
+			return DFA.from(nfa, budget);
+		}
+	}
+
+	private class Determinize extends RecursiveTask<DFA> {
+
+		private static final long serialVersionUID = 1L;
+
+		private NFA nfa;
+
+		Determinize(NFA nfa) {
+			this.nfa = nfa;
+		}
+
+		@Override
+		protected DFA compute() {
+			return dfaFrom(nfa);
+		}
+
+	}
+
+	private class Extract extends RecursiveTask<GroupExtractor> {
+
+		private static final long serialVersionUID = 1L;
+
+		private NFA nfa;
+
+		Extract(NFA nfa) {
+			this.nfa = nfa;
+		}
+
+		@Override
+		protected GroupExtractor compute() {
+			return extractorFrom(nfa);
+		}
+
+	}
+
+	@Override
+	public Engine engine() {
+		return engine;
+	}
+
+	@Override
+	public long tableBytes() {
+		return matcher.tableBytes() + extractor.tableBytes();
+	}
+
+	@Override
+	public void writeTo(AutomatonWriter out) throws IOException {
+		out.writeBoolean(mode.findLongest());
+		out.writeBoolean(mode.findOverlapping());
+		out.writeInt(engine.ordinal());
+		out.writeDFA(matcher);
+		out.writeExtractor(extractor);
+	}
+
 	@Override
 	public Matcher newMatcher(ByteProvider input) {
+		DFA matcher = this.matcher.instance();
+		StartScanner scanner = engine == Engine.DFA ? new StartScanner(matcher) : null;
 		if (mode.findLongest()) {
 			if (mode.findOverlapping()) {
-				return new SimpleLongestOverlappingMatcher(matcher, grouper, input);
+				return new SimpleLongestOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			} else {
-				return new SimpleLongestNonOverlappingMatcher(matcher, grouper, input);
+				return new SimpleLongestNonOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			}
 		} else {
 			if (mode.findOverlapping()) {
-				return new SimpleAllOverlappingMatcher(matcher, grouper, input);
+				return new SimpleAllOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			} else {
-				return new SimpleAllNonOverlappingMatcher(matcher, grouper, input);
+				return new SimpleAllNonOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			}
 		}
 	}
@@ -0,0 +1,196 @@
+package net.amygdalum.patternsearchalgorithms.pattern.bytes;
+
+import java.util.Arrays;
+
+import net.amygdalum.patternsearchalgorithms.automaton.bytes.DFA;
+import net.amygdalum.util.io.ByteProvider;
+
+public class StartScanner {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private DFA matcher;
+	private LiteralPrefilter prefilter;
+
+	private int[] states; // threads ordered by start
+	private long[] starts;
+	private int[] nextStates;
+	private long[] nextStarts;
+	private int size;
+	private long end;
+
+	private int[] seen; // open addressing set of the states reached in this step
+	private int[] seenGeneration;
+	private int generation;
+
+	public StartScanner(DFA matcher) {
+		this(matcher, null);
+	}
+
+	public StartScanner(DFA matcher, LiteralPrefilter prefilter) {
+		this.matcher = matcher;
+		this.prefilter = prefilter;
+		this.states = new int[INITIAL_CAPACITY];
+		this.starts = new long[INITIAL_CAPACITY];
+		this.nextStates = new int[INITIAL_CAPACITY];
+		this.nextStarts = new long[INITIAL_CAPACITY];
+		this.seen = new int[INITIAL_CAPACITY * 2];
+		this.seenGeneration = new int[INITIAL_CAPACITY * 2];
+	}
+
+	public long next(ByteProvider input, long from) { // leftmost start >= from that reaches an accepting state (input is moved there), -1 if none
+		input.move(from);
+		size = 0;
+		long best = -1;
+		clearSeen();
+		while (true) {
+			if (best < 0) {
+				skip(input);
+				add(matcher.start, input.current());
+			}
+			for (int i = 0; i < size; i++) {
+				if (matcher.accept(states[i])) {
+					best = starts[i];
+					size = i;
+					break;
+				}
+			}
+			if (best >= 0 && size == 0 || input.finished()) {
+				break;
+			}
+			step(input.next());
+		}
+		if (best >= 0) {
+			input.move(best);
+		}
+		return best;
+	}
+
+	public long match(ByteProvider input, long from, boolean longest, boolean skipEmpty) { // leftmost (longest or shortest) match starting >= from, its end is available by end(), -1 if none
+		input.move(from);
+		size = 0;
+		long best = -1;
+		end = -1;
+		clearSeen();
+		while (true) {
+			if (best < 0) {
+				skip(input);
+				add(matcher.start, input.current());
+			}
+			long pos = input.current();
+			for (int i = 0; i < size; i++) {
+				if (matcher.accept(states[i]) && (!skipEmpty || pos != from)) {
+					best = starts[i];
+					end = pos;
+					size = longest ? i + 1 : i;
+					break;
+				}
+			}
+			if (best >= 0 && size == 0 || input.finished()) {
+				break;
+			}
+			step(input.next());
+		}
+		return best;
+	}
+
+	public boolean contains(ByteProvider input, long from) { // true if a match starts at or after from, the input position is undefined afterwards
+		input.move(from);
+		size = 0;
+		clearSeen();
+		while (true) {
+			skip(input);
+			add(matcher.start, input.current());
+			for (int i = 0; i < size; i++) {
+				if (matcher.accept(states[i])) {
+					return true;
+				}
+			}
+			if (input.finished()) {
+				return false;
+			}
+			step(input.next());
+		}
+	}
+
+	public long end() {
+		return end;
+	}
+
+	private void skip(ByteProvider input) {
+		if (prefilter != null && size == 0) {
+			prefilter.skip(input);
+		}
+	}
+
+	private void step(byte b) {
+		clearSeen();
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int state = matcher.next(states[i], b);
+			if (state >= 0 && markSeen(state)) {
+				nextStates[count] = state;
+				nextStarts[count] = starts[i];
+				count++;
+			}
+		}
+		int[] swapStates = states;
+		states = nextStates;
+		nextStates = swapStates;
+		long[] swapStarts = starts;
+		starts = nextStarts;
+		nextStarts = swapStarts;
+		size = count;
+	}
+
+	private void add(int state, long start) {
+		if (!markSeen(state)) {
+			return;
+		}
+		if (size >= states.length) {
+			int capacity = states.length * 2;
+			states = Arrays.copyOf(states, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			nextStates = Arrays.copyOf(nextStates, capacity);
+			nextStarts = Arrays.copyOf(nextStarts, capacity);
+			growSeen(capacity * 2);
+			markSeen(state);
+		}
+		states[size] = state;
+		starts[size] = start;
+		size++;
+	}
+
+	private void clearSeen() {
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(seenGeneration, 0);
+			generation = 1;
+		}
+	}
+
+	private boolean markSeen(int state) { // true if state was not yet seen in this step
+		int mask = seen.length - 1;
+		int hash = state * 0x9e3779b9;
+		int i = (hash ^ hash >>> 16) & mask;
+		while (seenGeneration[i] == generation) {
+			if (seen[i] == state) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		seen[i] = state;
+		seenGeneration[i] = generation;
+		return true;
+	}
+
+	private void growSeen(int capacity) {
+		seen = new int[capacity];
+		seenGeneration = new int[capacity];
+		clearSeen();
+		for (int i = 0; i < size; i++) {
+			markSeen(states[i]);
+		}
+	}
+
+}
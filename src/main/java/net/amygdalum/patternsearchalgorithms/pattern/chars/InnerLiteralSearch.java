@@ -0,0 +1,169 @@
+package net.amygdalum.patternsearchalgorithms.pattern.chars;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchQueue;
+import net.amygdalum.util.io.CharProvider;
+
+public class InnerLiteralSearch {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private char[] literal;
+	private int maxLength; // of a match, -1 if unbounded
+	private LiteralPrefilter search;
+	private DFA prefix; // reverse, anchored at the literal start, null if the literal starts the pattern
+	private DFA suffix; // anchored at the literal end, null if the literal ends the pattern
+
+	private int[] starts; // of the matches around the current literal, descending
+	private int[] ends; // of the matches around the current literal, ascending
+	private long[] found; // start << 32 | end of each match
+	private int foundSize;
+
+	public InnerLiteralSearch(char[] literal, DFA prefix, DFA suffix, int maxLength) {
+		this.literal = literal;
+		this.maxLength = maxLength;
+		this.search = new LiteralPrefilter(new char[][] { literal });
+		this.prefix = prefix;
+		this.suffix = suffix;
+		this.starts = new int[INITIAL_CAPACITY];
+		this.ends = new int[INITIAL_CAPACITY];
+		this.found = new long[INITIAL_CAPACITY];
+	}
+
+	public long tableBytes() {
+		return (prefix == null ? 0 : prefix.tableBytes()) + (suffix == null ? 0 : suffix.tableBytes());
+	}
+
+	public static InnerLiteralSearch readFrom(AutomatonReader in, int maxLength) {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		char[] literal = in.readChars();
+		DFA prefix = in.readDFA();
+		DFA suffix = in.readDFA();
+		return new InnerLiteralSearch(literal, prefix, suffix, maxLength);
+	}
+
+	public static void writeTo(InnerLiteralSearch inner, AutomatonWriter out) throws IOException {
+		out.writeBoolean(inner != null);
+		if (inner == null) {
+			return;
+		}
+		out.writeChars(inner.literal);
+		out.writeDFA(inner.prefix);
+		out.writeDFA(inner.suffix);
+	}
+
+	public InnerLiteralSearch instance() {
+		return new InnerLiteralSearch(literal,
+			prefix == null ? null : prefix.instance(),
+			suffix == null ? null : suffix.instance(),
+			maxLength);
+	}
+
+	public boolean supports(CharProvider input) {
+		return input instanceof StringProvider;
+	}
+
+	public void collect(CharProvider input, MatchQueue matches) {
+		String chars = ((StringProvider) input).getString();
+		int length = chars.length();
+		foundSize = 0;
+		int pos = search.find(chars, (int) input.current());
+		while (pos < length) {
+			int startCount = starts(chars, pos);
+			if (startCount > 0) {
+				int limit = maxLength < 0 ? length : (int) Math.min(length, (long) starts[startCount - 1] + maxLength);
+				int endCount = ends(chars, pos + literal.length, limit);
+				found(startCount, endCount);
+			}
+			pos = search.find(chars, pos + 1);
+		}
+		queue(matches, 0);
+		input.move(length);
+	}
+
+	private int starts(String chars, int pos) {
+		if (prefix == null) {
+			starts[0] = pos;
+			return 1;
+		}
+		int count = 0;
+		int state = prefix.start;
+		if (prefix.accept(state)) {
+			count = addStart(count, pos);
+		}
+		int min = maxLength < 0 ? 0 : Math.max(0, pos + literal.length - maxLength);
+		for (int i = pos - 1; i >= min && state >= 0; i--) {
+			state = prefix.next(state, chars.charAt(i));
+			if (prefix.accept(state)) {
+				count = addStart(count, i);
+			}
+		}
+		return count;
+	}
+
+	private int ends(String chars, int pos, int limit) {
+		if (suffix == null) {
+			ends[0] = pos;
+			return 1;
+		}
+		int count = 0;
+		int state = suffix.start;
+		if (suffix.accept(state)) {
+			count = addEnd(count, pos);
+		}
+		for (int i = pos; i < limit && state >= 0; i++) {
+			state = suffix.next(state, chars.charAt(i));
+			if (suffix.accept(state)) {
+				count = addEnd(count, i + 1);
+			}
+		}
+		return count;
+	}
+
+	private int addStart(int count, int start) {
+		if (count >= starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+		}
+		starts[count] = start;
+		return count + 1;
+	}
+
+	private int addEnd(int count, int end) {
+		if (count >= ends.length) {
+			ends = Arrays.copyOf(ends, count * 2);
+		}
+		ends[count] = end;
+		return count + 1;
+	}
+
+	private void found(int startCount, int endCount) {
+		int size = foundSize + startCount * endCount;
+		if (size > found.length) {
+			found = Arrays.copyOf(found, Math.max(size, found.length * 2));
+		}
+		for (int i = 0; i < startCount; i++) {
+			long start = (long) starts[i] << 32;
+			for (int j = 0; j < endCount; j++) {
+				found[foundSize++] = start | ends[j];
+			}
+		}
+	}
+
+	private void queue(MatchQueue matches, int offset) { // a match around more than one literal is found once per literal
+		Arrays.sort(found, 0, foundSize);
+		for (int i = 0; i < foundSize; i++) {
+			long match = found[i];
+			if (i == 0 || match != found[i - 1]) {
+				matches.add((match >>> 32) - offset, (match & 0xffffffffL) - offset);
+			}
+		}
+	}
+
+}
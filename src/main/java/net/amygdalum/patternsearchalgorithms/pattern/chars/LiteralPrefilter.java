@@ -0,0 +1,111 @@
+package net.amygdalum.patternsearchalgorithms.pattern.chars;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter;
+import net.amygdalum.util.io.CharProvider;
+
+public class LiteralPrefilter {
+
+	private char[][] literals;
+	private int minLength;
+	private int[] shift;
+
+	public LiteralPrefilter(char[][] literals) {
+		this.literals = literals;
+		this.minLength = minLength(literals);
+		this.shift = computeShift(literals, minLength);
+	}
+
+	public static LiteralPrefilter of(List<String> literals) {
+		if (literals.isEmpty()) {
+			return null;
+		}
+		char[][] chars = new char[literals.size()][];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = literals.get(i).toCharArray();
+		}
+		return new LiteralPrefilter(chars);
+	}
+
+	public static LiteralPrefilter readFrom(AutomatonReader in) {
+		int count = in.readInt();
+		if (count == 0) {
+			return null;
+		}
+		char[][] literals = new char[count][];
+		for (int i = 0; i < count; i++) {
+			literals[i] = in.readChars();
+		}
+		return new LiteralPrefilter(literals);
+	}
+
+	public static void writeTo(LiteralPrefilter prefilter, AutomatonWriter out) throws IOException {
+		if (prefilter == null) {
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(prefilter.literals.length);
+		for (char[] literal : prefilter.literals) {
+			out.writeChars(literal);
+		}
+	}
+
+	private static int minLength(char[][] literals) {
+		int minLength = Integer.MAX_VALUE;
+		for (char[] literal : literals) {
+			minLength = Math.min(minLength, literal.length);
+		}
+		return minLength;
+	}
+
+	private static int[] computeShift(char[][] literals, int minLength) {
+		int[] shift = new int[256];
+		Arrays.fill(shift, minLength);
+		for (char[] literal : literals) {
+			for (int i = 0; i < minLength - 1; i++) {
+				int c = literal[i] & 0xff;
+				shift[c] = Math.min(shift[c], minLength - 1 - i);
+			}
+		}
+		return shift;
+	}
+
+	public void skip(CharProvider input) {
+		if (input instanceof StringProvider) {
+			String chars = ((StringProvider) input).getString();
+			input.move(find(chars, (int) input.current()));
+		}
+	}
+
+	public int find(String chars, int pos) {
+		int last = minLength - 1;
+		int length = chars.length();
+		while (pos + last < length) {
+			if (matchesAt(chars, pos)) {
+				return pos;
+			}
+			pos += shift[chars.charAt(pos + last) & 0xff];
+		}
+		return length;
+	}
+
+	private boolean matchesAt(String chars, int pos) {
+		nextliteral: for (char[] literal : literals) {
+			if (pos + literal.length > chars.length()) {
+				continue;
+			}
+			for (int i = 0; i < literal.length; i++) {
+				if (chars.charAt(pos + i) != literal[i]) {
+					continue nextliteral;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+}
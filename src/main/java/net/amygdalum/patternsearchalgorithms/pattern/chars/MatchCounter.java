@@ -0,0 +1,155 @@
+package net.amygdalum.patternsearchalgorithms.pattern.chars;
+
+import java.util.Arrays;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.util.io.CharProvider;
+import net.amygdalum.util.io.ReverseCharProvider;
+
+public class MatchCounter {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private DFA backmatcher;
+
+	private int[] states; // threads of the reverse scan, one per state
+	private long[] counts; // number of match ends in this state
+	private int[] nextStates;
+	private long[] nextCounts;
+	private int size;
+
+	private int[] slots; // open addressing map from state to thread index
+	private int[] slotIndexes;
+	private int[] slotGeneration;
+	private int generation;
+
+	public MatchCounter(DFA backmatcher) {
+		this.backmatcher = backmatcher;
+		this.states = new int[INITIAL_CAPACITY];
+		this.counts = new long[INITIAL_CAPACITY];
+		this.nextStates = new int[INITIAL_CAPACITY];
+		this.nextCounts = new long[INITIAL_CAPACITY];
+		this.slots = new int[INITIAL_CAPACITY * 2];
+		this.slotIndexes = new int[INITIAL_CAPACITY * 2];
+		this.slotGeneration = new int[INITIAL_CAPACITY * 2];
+	}
+
+	public long countMatches(CharProvider input, long from) { // number of matches ending after from (or empty at from), input is left at its end
+		return count(input, from, false);
+	}
+
+	public long countStarts(CharProvider input, long from) { // number of distinct starts of matches ending after from (or empty at from), input is left at its end
+		return count(input, from, true);
+	}
+
+	private long count(CharProvider input, long from, boolean starts) {
+		input.finish();
+		CharProvider reverse = new ReverseCharProvider(input);
+		size = 0;
+		long count = 0;
+		clearSlots();
+		while (true) {
+			long pos = input.current();
+			if (pos > from) {
+				add(backmatcher.start, 1);
+			}
+			long matches = pos == from && backmatcher.accept(backmatcher.start) ? 1 : 0; // from itself only ends the empty match
+			for (int i = 0; i < size; i++) {
+				if (backmatcher.accept(states[i])) {
+					matches += counts[i];
+				}
+			}
+			if (starts) {
+				count += matches > 0 ? 1 : 0;
+			} else {
+				count += matches;
+			}
+			if (reverse.finished() || size == 0 && input.current() <= from) {
+				break;
+			}
+			step(reverse.next());
+		}
+		input.finish();
+		return count;
+	}
+
+	private void step(char c) {
+		clearSlots();
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int state = backmatcher.next(states[i], c);
+			if (state < 0) {
+				continue;
+			}
+			int index = slot(state, count);
+			if (index == count) {
+				nextStates[count] = state;
+				nextCounts[count] = counts[i];
+				count++;
+			} else {
+				nextCounts[index] += counts[i];
+			}
+		}
+		int[] swapStates = states;
+		states = nextStates;
+		nextStates = swapStates;
+		long[] swapCounts = counts;
+		counts = nextCounts;
+		nextCounts = swapCounts;
+		size = count;
+	}
+
+	private void add(int state, long count) {
+		if (size >= states.length) {
+			int capacity = states.length * 2;
+			states = Arrays.copyOf(states, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			nextStates = Arrays.copyOf(nextStates, capacity);
+			nextCounts = Arrays.copyOf(nextCounts, capacity);
+			growSlots(capacity * 2);
+		}
+		int index = slot(state, size);
+		if (index == size) {
+			states[size] = state;
+			counts[size] = count;
+			size++;
+		} else {
+			counts[index] += count;
+		}
+	}
+
+	private void clearSlots() {
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(slotGeneration, 0);
+			generation = 1;
+		}
+	}
+
+	private int slot(int state, int index) { // index of the thread in state, registers index if there is none
+		int mask = slots.length - 1;
+		int hash = state * 0x9e3779b9;
+		int i = (hash ^ hash >>> 16) & mask;
+		while (slotGeneration[i] == generation) {
+			if (slots[i] == state) {
+				return slotIndexes[i];
+			}
+			i = (i + 1) & mask;
+		}
+		slots[i] = state;
+		slotIndexes[i] = index;
+		slotGeneration[i] = generation;
+		return index;
+	}
+
+	private void growSlots(int capacity) {
+		slots = new int[capacity];
+		slotIndexes = new int[capacity];
+		slotGeneration = new int[capacity];
+		clearSlots();
+		for (int i = 0; i < size; i++) {
+			slot(states[i], i);
+		}
+	}
+
+}
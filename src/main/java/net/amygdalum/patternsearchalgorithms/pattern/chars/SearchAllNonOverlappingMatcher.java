@@ -1,13 +1,14 @@
 package net.amygdalum.patternsearchalgorithms.pattern.chars;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchQueue;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
+import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
 import net.amygdalum.util.io.ReverseCharProvider;
 
@@ -15,21 +16,31 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 
 	private DFA finder;
 	private DFA backmatcher;
-	private NFA grouper;
+	private int maxLength;
+	private GroupExtractor grouper;
+	private LiteralPrefilter prefilter;
+	private InnerLiteralSearch inner;
+	private StartScanner scanner;
 	private CharProvider input;
-	private final long start;
+	private long start;
 
 	private Groups groups;
-	private Queue<Groups> nextgroups;
+	private MatchQueue nextgroups;
+	private CharProvider reverse;
 
-	public SearchAllNonOverlappingMatcher(DFA finder, DFA backmatcher, NFA grouper, CharProvider input) {
+	public SearchAllNonOverlappingMatcher(DFA finder, DFA backmatcher, int maxLength, GroupExtractor grouper, LiteralPrefilter prefilter, InnerLiteralSearch inner, StartScanner scanner, CharProvider input) {
 		this.finder = finder;
 		this.backmatcher = backmatcher;
+		this.maxLength = maxLength;
 		this.grouper = grouper;
+		this.prefilter = prefilter;
+		this.inner = inner;
+		this.scanner = scanner;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
-		this.nextgroups = new PriorityQueue<>();
+		this.nextgroups = new MatchQueue();
+		this.reverse = new ReverseCharProvider(input);
 	}
 
 	@Override
@@ -73,7 +84,6 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 	}
 
 	private boolean verifyPrefix(long pos) {
-		CharProvider reverse = new ReverseCharProvider(input);
 		int state = backmatcher.start;
 		while (reverse.current() > pos && state >= 0) {
 			char c = reverse.next();
@@ -84,82 +94,175 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 
 	@Override
 	public boolean find() {
+		if (scanner != null) {
+			return scan();
+		}
 		if (!nextgroups.isEmpty()) {
-			Groups first = nextGroup();
-			if (groups.subsumes(first)) {
-				return false;
-			}
-			groups.update(first.getStart(), first.getEnd());
-			return true;
+			return nextGroup();
 		}
 		int state = finder.start;
 		long start = input.current();
 		if (finder.accept(state)) {
-			nextgroups.add(new Groups(start, input.current()));
-		} else {
-			groups.reset();
+			nextgroups.add(start, input.current());
 		}
-		while (!input.finished() && state >= 0 && !finder.silent(state)) {
-			char c = input.next();
-			state = finder.next(state, c);
+		if (inner != null && inner.supports(input)) {
+			inner.collect(input, nextgroups);
+		} else {
+			while (!input.finished() && state >= 0 && !finder.silent(state)) {
+				if (prefilter != null && state == finder.start) {
+					prefilter.skip(input);
+					if (input.finished()) {
+						break;
+					}
+				}
+				char c = input.next();
+				state = finder.next(state, c);
+				if (finder.accept(state)) {
+					long end = input.current();
+					verifyMatches();
+					input.move(end);
+				}
+			}
 			if (finder.accept(state)) {
 				long end = input.current();
 				verifyMatches();
 				input.move(end);
 			}
 		}
-		if (finder.accept(state)) {
-			long end = input.current();
-			verifyMatches();
-			input.move(end);
+		return nextGroup();
+	}
+
+	@Override
+	public long findAll(MatchSink sink) {
+		if (scanner != null) {
+			return scanAll(sink);
 		}
-		if (nextgroups.isEmpty()) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		skipReported();
+		if (!nextgroups.isEmpty()) { // candidates queued by the last find are still to be reported
+			return true;
+		}
+		long from = input.current();
+		int state = finder.start;
+		boolean found = finder.accept(state) && !(groups.getStart() == from && groups.getEnd() == from); // the empty match at from was reported last
+		while (!found && !input.finished() && state >= 0 && !finder.silent(state)) {
+			if (prefilter != null && state == finder.start) {
+				prefilter.skip(input);
+				if (input.finished()) {
+					break;
+				}
+			}
+			char c = input.next();
+			state = finder.next(state, c);
+			found = finder.accept(state);
+		}
+		input.move(from);
+		return found;
+	}
+
+	@Override
+	public long count() {
+		if (scanner != null) {
+			return scanAll(null);
+		}
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
+	}
+
+	private boolean scan() {
+		long from = input.current();
+		boolean skipEmpty = groups.getStart() == from && groups.getEnd() == from;
+		long start = scanner.match(input, from, false, skipEmpty);
+		if (start < 0) {
+			groups.reset();
 			return false;
-		} else {
-			Groups first = nextGroup();
-			if (groups.subsumes(first)) {
-				return false;
+		}
+		long end = scanner.end();
+		groups.update(start, end);
+		input.move(end);
+		return true;
+	}
+
+	private long scanAll(MatchSink sink) {
+		long count = 0;
+		long lastStart = groups.getStart();
+		long lastEnd = groups.getEnd();
+		long from = input.current();
+		while (true) {
+			long start = scanner.match(input, from, false, lastStart == from && lastEnd == from);
+			if (start < 0) {
+				break;
 			}
-			groups.update(first.getStart(), first.getEnd());
-			return true;
+			long end = scanner.end();
+			if (sink != null) {
+				sink.match(start, end);
+			}
+			count++;
+			lastStart = start;
+			lastEnd = end;
+			from = end;
 		}
+		groups.reset();
+		return count;
 	}
 
 	private void verifyMatches() {
 		long end = input.current();
+		long limit = maxLength < 0 ? Long.MIN_VALUE : end - maxLength;
 
-		CharProvider reverse = new ReverseCharProvider(input);
 		int state = backmatcher.start;
 		if (backmatcher.accept(state)) {
-			nextgroups.add(new Groups(end, end));
+			nextgroups.add(end, end);
 		}
-		while (!reverse.finished() && state >= 0) {
+		while (!reverse.finished() && reverse.current() > limit && state >= 0) {
 			char c = reverse.next();
 			state = backmatcher.next(state, c);
 			if (backmatcher.accept(state)) {
 				long start = input.current();
-				nextgroups.add(new Groups(start, end));
+				nextgroups.add(start, end);
 			}
 		}
 		if (backmatcher.accept(state)) {
 			long start = input.current();
-			nextgroups.add(new Groups(start, end));
+			nextgroups.add(start, end);
 		}
 	}
 
-	private Groups nextGroup() {
-		Groups groups = nextgroups.remove();
-		Iterator<Groups> groupsIterator = nextgroups.iterator();
-		while (groupsIterator.hasNext()) {
-			Groups current = groupsIterator.next();
-			if (current.overlaps(groups) && groups.getEnd() != current.getStart()) {
-				groupsIterator.remove();
-			} else {
-				break;
-			}
+	private boolean nextGroup() { // the leftmost candidate not before the end of the last match, and its shortest end, as the scanner selects it
+		skipReported();
+		if (nextgroups.isEmpty()) {
+			groups.reset();
+			return false;
 		}
+		long start = nextgroups.start();
+		long end = nextgroups.end();
+		nextgroups.remove();
+		groups.update(start, end);
+		skipReported();
+		return true;
+	}
 
-		return groups;
+	private void skipReported() { // drops candidates starting inside the last match, and the empty match at its end if it was empty
+		long start = groups.getStart();
+		long end = groups.getEnd();
+		if (start < 0) {
+			return;
+		}
+		while (!nextgroups.isEmpty() && (nextgroups.start() < end || start == end && nextgroups.start() == end && nextgroups.end() == end)) {
+			nextgroups.remove();
+		}
 	}
 
 	@Override
@@ -213,4 +316,28 @@ public class SearchAllNonOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(new StringProvider(input, 0));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+		this.nextgroups.clear();
+		this.reverse = new ReverseCharProvider(input);
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		reset(new StringProvider(new String(input, offset, length, UTF_8), 0));
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
 }
@@ -1,12 +1,14 @@
 package net.amygdalum.patternsearchalgorithms.pattern.chars;
 
-import java.util.PriorityQueue;
-import java.util.Queue;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchQueue;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
+import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
 import net.amygdalum.util.io.ReverseCharProvider;
 
@@ -14,21 +16,33 @@ public class SearchAllOverlappingMatcher implements Matcher {
 
 	private DFA finder;
 	private DFA backmatcher;
-	private NFA grouper;
+	private int maxLength;
+	private GroupExtractor grouper;
+	private LiteralPrefilter prefilter;
+	private InnerLiteralSearch inner;
+	private MatchCounter counter;
 	private CharProvider input;
-	private final long start;
+	private long start;
 
 	private Groups groups;
-	private Queue<Groups> nextgroups;
+	private MatchQueue nextgroups;
+	private Groups next;
+	private CharProvider reverse;
 
-	public SearchAllOverlappingMatcher(DFA finder, DFA backmatcher, NFA grouper, CharProvider input) {
+	public SearchAllOverlappingMatcher(DFA finder, DFA backmatcher, int maxLength, GroupExtractor grouper, LiteralPrefilter prefilter, InnerLiteralSearch inner, MatchCounter counter, CharProvider input) {
 		this.finder = finder;
 		this.backmatcher = backmatcher;
+		this.maxLength = maxLength;
 		this.grouper = grouper;
+		this.prefilter = prefilter;
+		this.inner = inner;
+		this.counter = counter;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
-		this.nextgroups = new PriorityQueue<>();
+		this.nextgroups = new MatchQueue();
+		this.next = new Groups();
+		this.reverse = new ReverseCharProvider(input);
 	}
 
 	@Override
@@ -73,7 +87,6 @@ public class SearchAllOverlappingMatcher implements Matcher {
 	}
 
 	private boolean verifyPrefix(long pos) {
-		CharProvider reverse = new ReverseCharProvider(input);
 		int state = backmatcher.start;
 		while (reverse.current() > pos && state >= 0) {
 			char c = reverse.next();
@@ -85,55 +98,115 @@ public class SearchAllOverlappingMatcher implements Matcher {
 	@Override
 	public boolean find() {
 		if (!nextgroups.isEmpty()) {
-			Groups first = nextgroups.remove();
-			if (groups.getStart() == first.getStart() && groups.getEnd() == first.getEnd()) {
-				return false;
-			}
-			groups.update(first.getStart(), first.getEnd());
-			return true;
+			return nextGroup(groups.getStart());
 		}
 		int state = finder.start;
 		long start = input.current();
 		if (finder.accept(state)) {
-			nextgroups.add(new Groups(start, input.current()));
-		} else {
-			groups.reset();
+			nextgroups.add(start, input.current());
 		}
-		while (!input.finished() && state >= 0 && !finder.silent(state)) {
-			char c = input.next();
-			state = finder.next(state, c);
-			if (finder.accept(state)) {
-				long end = input.current();
-				verifyMatches();
-				input.move(end);
+		if (inner != null && inner.supports(input)) {
+			inner.collect(input, nextgroups);
+		} else {
+			while (!input.finished() && state >= 0 && !finder.silent(state)) {
+				if (prefilter != null && state == finder.start) {
+					prefilter.skip(input);
+					if (input.finished()) {
+						break;
+					}
+				}
+				char c = input.next();
+				state = finder.next(state, c);
+				if (finder.accept(state)) {
+					long end = input.current();
+					verifyMatches();
+					input.move(end);
+				}
 			}
 		}
+		return nextGroup(Math.max(start, groups.getStart()));
+	}
+
+	private boolean nextGroup(long from) { // the next candidate after the last match
+		skipReported(from);
 		if (nextgroups.isEmpty()) {
 			return false;
-		} else {
-			Groups first = nextgroups.remove();
-			if (groups.getStart() == first.getStart() && groups.getEnd() == first.getEnd()) {
-				return false;
-			}
-			groups.update(first.getStart(), first.getEnd());
+		}
+		groups.update(nextgroups.start(), nextgroups.end());
+		nextgroups.remove();
+		return true;
+	}
+
+	private void skipReported(long from) { // drops candidates before from, they are stale, and those up to the last match
+		long start = groups.getStart();
+		long end = groups.getEnd();
+		while (!nextgroups.isEmpty() && (nextgroups.start() < from || nextgroups.start() == start && nextgroups.end() <= end)) {
+			nextgroups.remove();
+		}
+	}
+
+	@Override
+	public long findAll(MatchSink sink) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		skipReported(groups.getStart());
+		if (!nextgroups.isEmpty()) { // candidates queued by the last find are still to be reported
 			return true;
 		}
+		long from = input.current();
+		int state = finder.start;
+		boolean found = finder.accept(state) && !(groups.getStart() == from && groups.getEnd() == from); // the empty match at from was reported last
+		while (!found && !input.finished() && state >= 0 && !finder.silent(state)) {
+			if (prefilter != null && state == finder.start) {
+				prefilter.skip(input);
+				if (input.finished()) {
+					break;
+				}
+			}
+			char c = input.next();
+			state = finder.next(state, c);
+			found = finder.accept(state);
+		}
+		input.move(from);
+		return found;
+	}
+
+	@Override
+	public long count() {
+		if (counter != null && nextgroups.isEmpty() && groups.getStart() < 0) {
+			long count = counter.countMatches(input, input.current());
+			groups.reset();
+			return count;
+		}
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
 	}
 
 	private void verifyMatches() {
 		long end = input.current();
+		long limit = maxLength < 0 ? Long.MIN_VALUE : end - maxLength;
 
-		CharProvider reverse = new ReverseCharProvider(input);
 		int state = backmatcher.start;
 		if (backmatcher.accept(state)) {
-			nextgroups.add(new Groups(end, end));
+			nextgroups.add(end, end);
 		}
-		while (!reverse.finished() && state >= 0) {
+		while (!reverse.finished() && reverse.current() > limit && state >= 0) {
 			char c = reverse.next();
 			state = backmatcher.next(state, c);
 			if (backmatcher.accept(state)) {
 				long start = input.current();
-				nextgroups.add(new Groups(start, end));
+				nextgroups.add(start, end);
 			}
 		}
 	}
@@ -189,4 +262,28 @@ public class SearchAllOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(new StringProvider(input, 0));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+		this.nextgroups.clear();
+		this.reverse = new ReverseCharProvider(input);
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		reset(new StringProvider(new String(input, offset, length, UTF_8), 0));
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
 }
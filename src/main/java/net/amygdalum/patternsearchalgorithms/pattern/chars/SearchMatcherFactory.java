@@ -4,11 +4,33 @@ import static java.lang.Character.MAX_VALUE;
 import static java.lang.Character.MIN_VALUE;
 import static java.util.Arrays.asList;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.CompactNFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.CompileBudget;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.CompileBudgetExceededException;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.MinimalNFAComponentFactory;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.NFABuilder;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.NFAComponent;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.NFAComponentFactory;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.OnePassDFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.PikeVM;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.SimpleNFAComponentFactory;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.TaggedDFA;
+import net.amygdalum.patternsearchalgorithms.pattern.CompileBudgetOption;
+import net.amygdalum.patternsearchalgorithms.pattern.Engine;
+import net.amygdalum.patternsearchalgorithms.pattern.InnerLiteral;
+import net.amygdalum.patternsearchalgorithms.pattern.LazyDFAOption;
+import net.amygdalum.patternsearchalgorithms.pattern.LiteralPrefixes;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
 import net.amygdalum.patternsearchalgorithms.pattern.SearchMode;
 import net.amygdalum.regexparser.RegexNode;
@@ -17,51 +39,146 @@ import net.amygdalum.util.io.CharProvider;
 public class SearchMatcherFactory implements MatcherFactory {
 
 	private SearchMode mode;
+	private LazyDFAOption lazy;
+	private CompileBudget budget;
+	private Engine engine;
 	private DFA finder;
+	private DFA matcher;
 	private DFA backmatcher;
-	private NFA grouper;
+	private int maxLength;
+	private GroupExtractor extractor;
+	private LiteralPrefilter prefilter;
+	private InnerLiteralSearch inner;
 
-	public SearchMatcherFactory(SearchMode mode) {
+	public SearchMatcherFactory(SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
 		this.mode = mode;
+		this.lazy = lazy;
+		this.budget = budget == null ? CompileBudget.unlimited() : new CompileBudget(budget.getMaxStates(), budget.deadline());
+		this.engine = lazy == null ? Engine.DFA : Engine.LAZY_DFA;
+	}
+
+	public static SearchMatcherFactory compile(RegexNode node, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
+		return new SearchMatcherFactory(mode, lazy, budget).compile(node);
 	}
 
-	public static SearchMatcherFactory compile(RegexNode node, SearchMode mode) {
-		return new SearchMatcherFactory(mode).compile(node);
+	public static SearchMatcherFactory compileThompson(RegexNode node, SearchMode mode) {
+		SearchMatcherFactory factory = new SearchMatcherFactory(mode, null, null);
+		factory.engine = Engine.THOMPSON_NFA;
+		return factory.compile(node);
+	}
+
+	public static SearchMatcherFactory readFrom(AutomatonReader in) {
+		boolean longest = in.readBoolean();
+		boolean overlapping = in.readBoolean();
+		SearchMatcherFactory factory = new SearchMatcherFactory(SearchMode.of(longest, overlapping), null, null);
+		factory.engine = Engine.values()[in.readInt()];
+		factory.finder = in.readDFA();
+		if (in.readBoolean()) {
+			factory.matcher = in.readDFA();
+		}
+		factory.backmatcher = in.readDFA();
+		factory.maxLength = in.readInt();
+		factory.extractor = in.readExtractor();
+		factory.prefilter = LiteralPrefilter.readFrom(in);
+		factory.inner = InnerLiteralSearch.readFrom(in, factory.maxLength);
+		return factory;
 	}
 
 	private SearchMatcherFactory compile(RegexNode node) {
-		this.finder = finderFrom(node);
-		this.backmatcher = backmatcherFrom(node);
-		this.grouper = grouperFrom(node);
+		try {
+			build(node);
+		} catch (CompileBudgetExceededException e) {
+			engine = Engine.NFA_SIMULATION;
+			build(node);
+		}
 
 		return this;
 	}
 
-	private DFA finderFrom(RegexNode node) {
-		NFABuilder builder = new NFABuilder(new MinimalNFAComponentFactory());
-
+	private void build(RegexNode node) {
+		NFABuilder builder = new NFABuilder(componentFactory());
 		NFAComponent base = node.accept(builder);
+		NFAComponent groups = minimizing() ? node.accept(new NFABuilder()) : base.clone(); // minimized components lose their group actions
+
+		NFA finder = finderFrom(builder, base.clone());
+		NFA matcher = engine == Engine.DFA && !mode.findOverlapping() ? builder.build(base.clone()) : null;
+		NFA reverse = builder.build(base.reverse());
+		this.maxLength = reverse.maxLength();
+		NFA grouper = grouperFrom(groups);
+
+		Determinize finderTask = new Determinize(finder);
+		Determinize matcherTask = matcher == null ? null : new Determinize(matcher);
+		Determinize backmatcherTask = new Determinize(reverse);
+		Extract extractorTask = new Extract(grouper);
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		tasks.add(finderTask);
+		if (matcherTask != null) {
+			tasks.add(matcherTask);
+		}
+		tasks.add(backmatcherTask);
+		tasks.add(extractorTask);
+		ForkJoinTask.invokeAll(tasks); // forks into the pool of the compiling thread, the common pool unless a CompilePoolOption is given
+
+		this.finder = finderTask.join();
+		this.matcher = matcherTask == null ? null : matcherTask.join();
+		this.backmatcher = backmatcherTask.join();
+		this.extractor = extractorTask.join();
+		this.prefilter = LiteralPrefilter.of(LiteralPrefixes.of(node));
+		this.inner = innerFrom(node);
+	}
+
+	private NFA finderFrom(NFABuilder builder, NFAComponent base) {
 		NFAComponent selfloop = builder.matchStarLoop(builder.match(MIN_VALUE, MAX_VALUE)).silent();
 		NFAComponent finder = builder.matchConcatenation(asList(selfloop, base));
 
-		NFA nfa = builder.build(finder);
-		return DFA.from(nfa);
+		return builder.build(finder);
+	}
+
+	private InnerLiteralSearch innerFrom(RegexNode node) {
+		if (prefilter != null || matcher != null) {
+			return null;
+		}
+		InnerLiteral inner = InnerLiteral.of(node);
+		if (inner == null) {
+			return null;
+		}
+		char[] literal = inner.getLiteral().toCharArray();
+		DFA prefix = inner.getPrefix().isEmpty() ? null : prefixFrom(inner.getPrefix());
+		DFA suffix = inner.getSuffix().isEmpty() ? null : suffixFrom(inner.getSuffix());
+		return new InnerLiteralSearch(literal, prefix, suffix, maxLength);
 	}
 
-	private DFA backmatcherFrom(RegexNode node) {
-		NFABuilder builder = new NFABuilder(new MinimalNFAComponentFactory());
+	private DFA prefixFrom(List<RegexNode> nodes) {
+		NFABuilder builder = new NFABuilder(componentFactory());
 
-		NFAComponent base = node.accept(builder);
+		NFAComponent base = builder.matchConcatenation(componentsOf(nodes, builder));
 		NFAComponent reverse = base.reverse();
 
 		NFA nfa = builder.build(reverse);
-		return DFA.from(nfa);
+		return dfaFrom(nfa);
+	}
+
+	private DFA suffixFrom(List<RegexNode> nodes) {
+		NFABuilder builder = new NFABuilder(componentFactory());
+
+		NFAComponent base = builder.matchConcatenation(componentsOf(nodes, builder));
+
+		NFA nfa = builder.build(base);
+		return dfaFrom(nfa);
+	}
+
+	private List<NFAComponent> componentsOf(List<RegexNode> nodes, NFABuilder builder) {
+		List<NFAComponent> components = new ArrayList<>();
+		for (RegexNode node : nodes) {
+			components.add(node.accept(builder));
+		}
+		return components;
 	}
 
-	private NFA grouperFrom(RegexNode node) {
+	private NFA grouperFrom(NFAComponent groups) {
 		NFABuilder builder = new NFABuilder();
 
-		NFAComponent base = builder.matchGroup(node.accept(builder), 0);
+		NFAComponent base = builder.matchGroup(groups, 0);
 
 		NFA grouper = builder.build(base);
 		grouper.prune();
@@ -69,19 +186,130 @@ public class SearchMatcherFactory implements MatcherFactory {
 		return grouper;
 	}
 
+	private GroupExtractor extractorFrom(NFA nfa) {
+		CompactNFA grouper = CompactNFA.of(nfa);
+		if (engine == Engine.THOMPSON_NFA) {
+			return new PikeVM(grouper);
+		}
+		OnePassDFA onePass = OnePassDFA.of(grouper);
+		if (onePass != null) {
+			return onePass;
+		}
+		TaggedDFA tagged = TaggedDFA.of(grouper);
+		if (tagged != null) {
+			return tagged;
+		}
+		return new PikeVM(grouper);
+	}
+
+	private DFA dfaFrom(NFA nfa) {
+		switch (engine) {
+		case NFA_SIMULATION:
+			return DFA.simulation(nfa);
+		case THOMPSON_NFA:
+			return DFA.thompson(nfa);
+		case LAZY_DFA:
+			return DFA.lazy(nfa, lazy.getCacheSize());
+		case DFA:
+		default:
+			return DFA.from(nfa, budget);
+		}
+	}
+
+	private boolean minimizing() {
+		return engine != Engine.NFA_SIMULATION && engine != Engine.THOMPSON_NFA;
+	}
+
+	private NFAComponentFactory componentFactory() {
+		if (!minimizing()) {
+			return new SimpleNFAComponentFactory();
+		}
+		return new MinimalNFAComponentFactory(budget);
+	}
+
+	private class Determinize extends RecursiveTask<DFA> {
+
+		private static final long serialVersionUID = 1L;
+
+		private NFA nfa;
+
+		Determinize(NFA nfa) {
+			this.nfa = nfa;
+		}
+
+		@Override
+		protected DFA compute() {
+			return dfaFrom(nfa);
+		}
+
+	}
+
+	private class Extract extends RecursiveTask<GroupExtractor> {
+
+		private static final long serialVersionUID = 1L;
+
+		private NFA nfa;
+
+		Extract(NFA nfa) {
+			this.nfa = nfa;
+		}
+
+		@Override
+		protected GroupExtractor compute() {
+			return extractorFrom(nfa);
+		}
+
+	}
+
+	@Override
+	public Engine engine() {
+		return engine;
+	}
+
+	@Override
+	public long tableBytes() {
+		return finder.tableBytes()
+			+ (matcher == null ? 0 : matcher.tableBytes())
+			+ backmatcher.tableBytes()
+			+ extractor.tableBytes()
+			+ (inner == null ? 0 : inner.tableBytes());
+	}
+
+	@Override
+	public void writeTo(AutomatonWriter out) throws IOException {
+		out.writeBoolean(mode.findLongest());
+		out.writeBoolean(mode.findOverlapping());
+		out.writeInt(engine.ordinal());
+		out.writeDFA(finder);
+		out.writeBoolean(matcher != null);
+		if (matcher != null) {
+			out.writeDFA(matcher);
+		}
+		out.writeDFA(backmatcher);
+		out.writeInt(maxLength);
+		out.writeExtractor(extractor);
+		LiteralPrefilter.writeTo(prefilter, out);
+		InnerLiteralSearch.writeTo(inner, out);
+	}
+
 	@Override
 	public Matcher newMatcher(CharProvider input) {
+		StartScanner scanner = matcher == null ? null : new StartScanner(matcher.instance(), prefilter);
 		if (mode.findLongest()) {
 			if (mode.findOverlapping()) {
-				return new SearchLongestOverlappingMatcher(finder, backmatcher, grouper, input);
+				DFA backmatcher = this.backmatcher.instance();
+				MatchCounter counter = engine == Engine.DFA ? new MatchCounter(backmatcher) : null;
+				return new SearchLongestOverlappingMatcher(finder.instance(), backmatcher, maxLength, extractor.instance(), prefilter, inner == null ? null : inner.instance(), counter, input);
 			} else {
-				return new SearchLongestNonOverlappingMatcher(finder, backmatcher, grouper, input);
+				return new SearchLongestNonOverlappingMatcher(finder.instance(), backmatcher.instance(), maxLength, extractor.instance(), prefilter, inner == null ? null : inner.instance(), scanner, input);
 			}
 		} else {
 			if (mode.findOverlapping()) {
-				return new SearchAllOverlappingMatcher(finder, backmatcher, grouper, input);
+				DFA backmatcher = this.backmatcher.instance();
+				MatchCounter counter = engine == Engine.DFA ? new MatchCounter(backmatcher) : null;
+				return new SearchAllOverlappingMatcher(finder.instance(), backmatcher, maxLength, extractor.instance(), prefilter, inner == null ? null : inner.instance(), counter, input);
 			} else {
-				return new SearchAllNonOverlappingMatcher(finder, backmatcher, grouper, input);
+				return new SearchAllNonOverlappingMatcher(finder.instance(), backmatcher.instance(), maxLength, extractor.instance(), prefilter, inner == null ? null : inner.instance(), scanner, input);
 			}
 		}
 	}
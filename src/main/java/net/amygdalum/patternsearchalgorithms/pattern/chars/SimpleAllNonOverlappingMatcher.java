@@ -1,28 +1,32 @@
 package net.amygdalum.patternsearchalgorithms.pattern.chars;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
+import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
 
 public class SimpleAllNonOverlappingMatcher implements Matcher {
 
 	private DFA matcher;
-	private NFA grouper;
+	private GroupExtractor grouper;
+	private StartScanner scanner;
 	private CharProvider input;
-	private final long start;
+	private long start;
 
 	private Groups groups;
-	private int nextstate;
 
-	public SimpleAllNonOverlappingMatcher(DFA matcher, NFA grouper, CharProvider input) {
+	public SimpleAllNonOverlappingMatcher(DFA matcher, GroupExtractor grouper, StartScanner scanner, CharProvider input) {
 		this.matcher = matcher;
 		this.grouper = grouper;
+		this.scanner = scanner;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
-		this.nextstate = -1;
 	}
 
 	@Override
@@ -69,49 +73,103 @@ public class SimpleAllNonOverlappingMatcher implements Matcher {
 
 	@Override
 	public boolean find() {
-		int state = matcher.start;
-		long localstart = input.current();
-		if (nextstate >= 0) {
-			state = nextstate;
-			nextstate = -1;
-		} else if (matcher.accept(state)) {
-			groups.update(localstart, input.current());
-			nextstate = state;
-			input.move(groups.getEnd());
+		long from = input.current();
+		boolean skipEmpty = groups.getStart() == from && groups.getEnd() == from; // the empty match at from was reported last
+		if (scanner != null) {
+			long start = scanner.match(input, from, false, skipEmpty);
+			if (start < 0) {
+				groups.reset();
+				return false;
+			}
+			groups.update(start, scanner.end());
+			input.move(scanner.end());
 			return true;
-		} else {
-			groups.reset();
+		}
+		input.finish();
+		long last = input.current();
+		for (long localstart = from; localstart <= last; localstart++) {
+			long end = firstEnd(localstart, skipEmpty && localstart == from);
+			if (end >= 0) {
+				groups.update(localstart, end);
+				input.move(end);
+				return true;
+			}
+		}
+		groups.reset();
+		return false;
+	}
+
+	private long firstEnd(long localstart, boolean skipEmpty) { // end of the shortest match starting at localstart, -1 if none
+		input.move(localstart);
+		int state = matcher.start;
+		if (matcher.accept(state) && !skipEmpty) {
+			return localstart;
 		}
 		while (!input.finished() && state >= 0) {
 			char c = input.next();
 			state = matcher.next(state, c);
 			if (matcher.accept(state)) {
-				groups.update(localstart, input.current());
-				input.move(groups.getEnd());
+				return input.current();
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public long findAll(MatchSink sink) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		long from = input.current();
+		boolean skipEmpty = groups.getStart() == from && groups.getEnd() == from; // the empty match at from was reported last
+		boolean found;
+		if (scanner == null) {
+			found = containsMatch(from, skipEmpty);
+		} else if (skipEmpty) {
+			found = scanner.match(input, from, false, true) >= 0;
+		} else {
+			found = scanner.contains(input, from);
+		}
+		input.move(from);
+		return found;
+	}
+
+	private boolean containsMatch(long from, boolean skipEmpty) {
+		input.finish();
+		long last = input.current();
+		for (long pos = from; pos <= last; pos++) {
+			input.move(pos);
+			int state = matcher.start;
+			if (matcher.accept(state) && !(skipEmpty && pos == from)) {
 				return true;
-			} else if (state == -1) {
-				localstart = localstart + 1;
-				input.move(localstart);
-				state = matcher.start;
+			}
+			while (!input.finished() && state >= 0) {
+				char c = input.next();
+				state = matcher.next(state, c);
 				if (matcher.accept(state)) {
-					groups.update(localstart, localstart);
-					nextstate = state;
 					return true;
 				}
-				continue;
 			}
 		}
-		if (matcher.accept(state)) {
-			long end = input.current();
-			if (groups.getStart() == end && groups.getEnd() == end) {
-				return false;
-			}
-			groups.update(localstart, end);
-			return true;
-		}
 		return false;
 	}
 
+	@Override
+	public long count() {
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
+	}
+
 	@Override
 	public long start() {
 		return groups.getStart();
@@ -163,4 +221,26 @@ public class SimpleAllNonOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(new StringProvider(input, 0));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		reset(new StringProvider(new String(input, offset, length, UTF_8), 0));
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
 }
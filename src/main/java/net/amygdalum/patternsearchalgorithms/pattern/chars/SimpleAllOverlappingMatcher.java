@@ -1,25 +1,31 @@
 package net.amygdalum.patternsearchalgorithms.pattern.chars;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
+import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
 
 public class SimpleAllOverlappingMatcher implements Matcher {
 
 	private DFA matcher;
-	private NFA grouper;
+	private GroupExtractor grouper;
+	private StartScanner scanner;
 	private CharProvider input;
-	private final long start;
+	private long start;
 
 	private Groups groups;
 	private int nextstate;
 	private long nextpos;
 
-	public SimpleAllOverlappingMatcher(DFA matcher, NFA grouper, CharProvider input) {
+	public SimpleAllOverlappingMatcher(DFA matcher, GroupExtractor grouper, StartScanner scanner, CharProvider input) {
 		this.matcher = matcher;
 		this.grouper = grouper;
+		this.scanner = scanner;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
@@ -73,6 +79,16 @@ public class SimpleAllOverlappingMatcher implements Matcher {
 	public boolean find() {
 		int state = matcher.start;
 		long localstart = input.current();
+		if (nextstate < 0 && input.finished() && groups.getStart() == localstart && groups.getEnd() == localstart) { // the empty match at the end of input was reported last
+			return false;
+		}
+		if (nextstate < 0) {
+			localstart = nextStart(localstart);
+			if (localstart < 0) {
+				groups.reset();
+				return false;
+			}
+		}
 		if (nextstate >= 0) {
 			state = nextstate;
 			nextstate = -1;
@@ -101,8 +117,10 @@ public class SimpleAllOverlappingMatcher implements Matcher {
 			if (input.finished() && localstart >= input.current()) {
 				return false;
 			}
-			localstart = localstart + 1;
-			input.move(localstart);
+			localstart = nextStart(localstart + 1);
+			if (localstart < 0) {
+				return false;
+			}
 			state = matcher.start;
 			if (matcher.accept(state)) {
 				groups.update(localstart, localstart);
@@ -114,6 +132,99 @@ public class SimpleAllOverlappingMatcher implements Matcher {
 		return false;
 	}
 
+	@Override
+	public long findAll(MatchSink sink) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		long from = input.current();
+		boolean found;
+		if (nextstate >= 0) { // find resumes the match started at nextpos before it tries later starts
+			found = continuesMatch(nextstate);
+			input.finish();
+			found = found || nextpos < input.current() && containsMatch(nextpos + 1);
+			nextstate = stateAt(nextpos, from); // stepping the matcher may have invalidated the saved state
+		} else if (input.finished() && groups.getStart() == from && groups.getEnd() == from) {
+			found = false;
+		} else {
+			found = containsMatch(from);
+		}
+		input.move(from);
+		return found;
+	}
+
+	private int stateAt(long localstart, long pos) {
+		input.move(localstart);
+		int state = matcher.start;
+		while (input.current() < pos && state >= 0) {
+			char c = input.next();
+			state = matcher.next(state, c);
+		}
+		return state;
+	}
+
+	private boolean continuesMatch(int state) {
+		while (!input.finished() && state >= 0) {
+			char c = input.next();
+			state = matcher.next(state, c);
+			if (matcher.accept(state)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean containsMatch(long from) {
+		if (scanner != null) {
+			return scanner.contains(input, from);
+		}
+		input.finish();
+		long last = input.current();
+		for (long pos = from; pos <= last; pos++) {
+			input.move(pos);
+			int state = matcher.start;
+			if (matcher.accept(state)) {
+				return true;
+			}
+			while (!input.finished() && state >= 0) {
+				char c = input.next();
+				state = matcher.next(state, c);
+				if (matcher.accept(state)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public long count() {
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
+	}
+
+	private long nextStart(long from) {
+		if (scanner == null) {
+			input.move(from);
+			return from;
+		}
+		long next = scanner.next(input, from);
+		if (next > from) {
+			groups.reset();
+		}
+		return next;
+	}
+
 	@Override
 	public long start() {
 		return groups.getStart();
@@ -165,4 +276,28 @@ public class SimpleAllOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(new StringProvider(input, 0));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+		this.nextstate = -1;
+		this.nextpos = -1;
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		reset(new StringProvider(new String(input, offset, length, UTF_8), 0));
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
 }
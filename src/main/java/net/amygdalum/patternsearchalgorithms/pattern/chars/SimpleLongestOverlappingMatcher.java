@@ -1,23 +1,29 @@
 package net.amygdalum.patternsearchalgorithms.pattern.chars;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.Groups;
-import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
+import net.amygdalum.patternsearchalgorithms.pattern.MatchSink;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
+import net.amygdalum.util.io.ByteProvider;
 import net.amygdalum.util.io.CharProvider;
 
 public class SimpleLongestOverlappingMatcher implements Matcher {
 
 	private DFA matcher;
-	private NFA grouper;
+	private GroupExtractor grouper;
+	private StartScanner scanner;
 	private CharProvider input;
-	private final long start;
+	private long start;
 
 	private Groups groups;
 
-	public SimpleLongestOverlappingMatcher(DFA matcher, NFA grouper, CharProvider input) {
+	public SimpleLongestOverlappingMatcher(DFA matcher, GroupExtractor grouper, StartScanner scanner, CharProvider input) {
 		this.matcher = matcher;
 		this.grouper = grouper;
+		this.scanner = scanner;
 		this.input = input;
 		this.start = input.current();
 		this.groups = new Groups();
@@ -67,58 +73,96 @@ public class SimpleLongestOverlappingMatcher implements Matcher {
 
 	@Override
 	public boolean find() {
+		long from = input.current();
+		if (groups.getStart() == from) { // each start is reported once, with its longest match
+			from++;
+		}
+		input.finish();
+		long last = input.current();
+		for (long localstart = nextStart(from, last); localstart >= 0; localstart = nextStart(localstart + 1, last)) {
+			long end = longestEnd(localstart);
+			if (end >= 0) {
+				groups.update(localstart, end);
+				input.move(localstart);
+				return true;
+			}
+		}
+		input.move(last);
+		return false;
+	}
+
+	private long longestEnd(long localstart) { // end of the longest match starting at localstart, -1 if none
+		input.move(localstart);
 		int state = matcher.start;
-		long localstart = input.current();
-		outer: while (!input.finished()) {
+		long end = matcher.accept(state) ? localstart : -1;
+		while (!input.finished() && state >= 0) {
+			char c = input.next();
+			state = matcher.next(state, c);
 			if (matcher.accept(state)) {
-				long end = input.current();
-				if (groups.getStart() == localstart && groups.getEnd() == end) {
-					groups.reset();
-				} else {
-					groups.update(localstart, end);
-				}
-			} else {
-				groups.reset();
+				end = input.current();
+			}
+		}
+		return end;
+	}
+
+	@Override
+	public long findAll(MatchSink sink) {
+		long count = 0;
+		while (find()) {
+			sink.match(groups.getStart(), groups.getEnd());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean containsMatch() {
+		long from = input.current();
+		long next = groups.getStart() == from ? from + 1 : from; // the match at from was reported already
+		input.finish();
+		boolean found = next <= input.current() && (scanner == null ? containsMatch(next) : scanner.contains(input, next));
+		input.move(from);
+		return found;
+	}
+
+	private boolean containsMatch(long from) {
+		input.finish();
+		long last = input.current();
+		for (long pos = from; pos <= last; pos++) {
+			input.move(pos);
+			int state = matcher.start;
+			if (matcher.accept(state)) {
+				return true;
 			}
 			while (!input.finished() && state >= 0) {
 				char c = input.next();
 				state = matcher.next(state, c);
-				if (state == -1) {
-					if (groups.invalid()) {
-						localstart = localstart + 1;
-						input.move(localstart);
-						state = matcher.start;
-						continue outer;
-					} else {
-						input.move(localstart + 1);
-						return true;
-					}
-				} else if (matcher.accept(state)) {
-					groups.update(localstart, input.current());
+				if (matcher.accept(state)) {
+					return true;
 				}
 			}
 		}
-		if (matcher.accept(state)) {
-			long end = input.current();
-			if (groups.getStart() == end && groups.getEnd() == end) {
-				groups.reset();
-			} else {
-				groups.update(localstart, end);
-			}
-		} else if (groups.getStart() != localstart) {
-			groups.reset();
-		}
-		if (!groups.invalid()) {
-			if (groups.getEnd() > localstart) {
-				input.move(localstart + 1);
-			} else {
-				input.move(groups.getEnd());
-			}
-			return true;
-		}
 		return false;
 	}
 
+	@Override
+	public long count() {
+		long count = 0;
+		while (find()) {
+			count++;
+		}
+		return count;
+	}
+
+	private long nextStart(long from, long last) { // the next start >= from that may begin a match, -1 if none
+		if (from > last) {
+			return -1;
+		} else if (scanner == null) {
+			return from;
+		}
+		return scanner.next(input, from);
+	}
+
 	@Override
 	public long start() {
 		return groups.getStart();
@@ -170,4 +214,26 @@ public class SimpleLongestOverlappingMatcher implements Matcher {
 		}
 	}
 
+	@Override
+	public void reset(String input) {
+		reset(new StringProvider(input, 0));
+	}
+
+	@Override
+	public void reset(CharProvider input) {
+		this.input = input;
+		this.start = input.current();
+		this.groups.reset();
+	}
+
+	@Override
+	public void reset(byte[] input, int offset, int length) {
+		reset(new StringProvider(new String(input, offset, length, UTF_8), 0));
+	}
+
+	@Override
+	public void reset(ByteProvider input) {
+		throw new UnsupportedOperationException();
+	}
+
 }
@@ -1,10 +1,28 @@
 package net.amygdalum.patternsearchalgorithms.pattern.chars;
 
+import java.io.IOException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonReader;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.AutomatonWriter;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.CompactNFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.CompileBudget;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.CompileBudgetExceededException;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.DFA;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.MinimalNFAComponentFactory;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.GroupExtractor;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.NFA;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.NFABuilder;
 import net.amygdalum.patternsearchalgorithms.automaton.chars.NFAComponent;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.NFAComponentFactory;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.OnePassDFA;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.PikeVM;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.SimpleNFAComponentFactory;
+import net.amygdalum.patternsearchalgorithms.automaton.chars.TaggedDFA;
+import net.amygdalum.patternsearchalgorithms.pattern.CompileBudgetOption;
+import net.amygdalum.patternsearchalgorithms.pattern.Engine;
+import net.amygdalum.patternsearchalgorithms.pattern.LazyDFAOption;
 import net.amygdalum.patternsearchalgorithms.pattern.Matcher;
 import net.amygdalum.patternsearchalgorithms.pattern.SearchMode;
 import net.amygdalum.regexparser.RegexNode;
@@ -13,35 +31,64 @@ import net.amygdalum.util.io.CharProvider;
 public class SimpleMatcherFactory implements MatcherFactory {
 
 	private SearchMode mode;
+	private LazyDFAOption lazy;
+	private CompileBudget budget;
+	private Engine engine;
 	private DFA matcher;
-	private NFA grouper;
+	private GroupExtractor extractor;
 
-	public SimpleMatcherFactory(SearchMode mode) {
+	public SimpleMatcherFactory(SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
 		this.mode = mode;
+		this.lazy = lazy;
+		this.budget = budget == null ? CompileBudget.unlimited() : new CompileBudget(budget.getMaxStates(), budget.deadline());
+		this.engine = lazy == null ? Engine.DFA : Engine.LAZY_DFA;
+	}
+
+	public static SimpleMatcherFactory compile(RegexNode node, SearchMode mode, LazyDFAOption lazy, CompileBudgetOption budget) {
+		return new SimpleMatcherFactory(mode, lazy, budget).compile(node);
 	}
 
-	public static SimpleMatcherFactory compile(RegexNode node, SearchMode mode) {
-		return new SimpleMatcherFactory(mode).compile(node);
+	public static SimpleMatcherFactory readFrom(AutomatonReader in) {
+		boolean longest = in.readBoolean();
+		boolean overlapping = in.readBoolean();
+		SimpleMatcherFactory factory = new SimpleMatcherFactory(SearchMode.of(longest, overlapping), null, null);
+		factory.engine = Engine.values()[in.readInt()];
+		factory.matcher = in.readDFA();
+		factory.extractor = in.readExtractor();
+		return factory;
 	}
 
 	private SimpleMatcherFactory compile(RegexNode node) {
-		this.matcher = matcherFrom(node);
-		this.grouper = grouperFrom(node);
+		try {
+			build(node);
+		} catch (CompileBudgetExceededException e) {
+			engine = Engine.NFA_SIMULATION;
+			build(node);
+		}
 
 		return this;
 	}
 
-	private DFA matcherFrom(RegexNode node) {
-		NFABuilder builder = new NFABuilder(new MinimalNFAComponentFactory());
+	private void build(RegexNode node) {
+		NFABuilder builder = new NFABuilder(componentFactory());
+		NFAComponent base = node.accept(builder);
+		NFAComponent groups = minimizing() ? node.accept(new NFABuilder()) : base.clone(); // minimized components lose their group actions
+
+		NFA matcher = builder.build(base);
+		NFA grouper = grouperFrom(groups);
+
+		Determinize matcherTask = new Determinize(matcher);
+		Extract extractorTask = new Extract(grouper);
+		ForkJoinTask.invokeAll(matcherTask, extractorTask); // forks into the pool of the compiling thread, the common pool unless a CompilePoolOption is given
 
-		NFA nfa = builder.build(node);
-		return DFA.from(nfa);
+		this.matcher = matcherTask.join();
+		this.extractor = extractorTask.join();
 	}
 
-	private NFA grouperFrom(RegexNode node) {
+	private NFA grouperFrom(NFAComponent groups) {
 		NFABuilder builder = new NFABuilder();
 
-		NFAComponent base = builder.matchGroup(node.accept(builder), 0);
+		NFAComponent base = builder.matchGroup(groups, 0);
 
 		NFA grouper = builder.build(base);
 		grouper.prune();
@@ -49,19 +96,110 @@ public class SimpleMatcherFactory implements MatcherFactory {
 		return grouper;
 	}
 
+	private GroupExtractor extractorFrom(NFA nfa) {
+		CompactNFA grouper = CompactNFA.of(nfa);
+		OnePassDFA onePass = OnePassDFA.of(grouper);
+		if (onePass != null) {
+			return onePass;
+		}
+		TaggedDFA tagged = TaggedDFA.of(grouper);
+		if (tagged != null) {
+			return tagged;
+		}
+		return new PikeVM(grouper);
+	}
+
+	private DFA dfaFrom(NFA nfa) {
+		switch (engine) {
+		case NFA_SIMULATION:
+			return DFA.simulation(nfa);
+		case LAZY_DFA:
+			return DFA.lazy(nfa, lazy.getCacheSize());
+		case DFA:
+		default:
+			return DFA.from(nfa, budget);
+		}
+	}
+
+	private boolean minimizing() {
+		return engine != Engine.NFA_SIMULATION;
+	}
+
+	private NFAComponentFactory componentFactory() {
+		if (!minimizing()) {
+			return new SimpleNFAComponentFactory();
+		}
+		return new MinimalNFAComponentFactory(budget);
+	}
+
+	private class Determinize extends RecursiveTask<DFA> {
+
+		private static final long serialVersionUID = 1L;
+
+		private NFA nfa;
+
+		Determinize(NFA nfa) {
+			this.nfa = nfa;
+		}
+
+		@Override
+		protected DFA compute() {
+			return dfaFrom(nfa);
+		}
+
+	}
+
+	private class Extract extends RecursiveTask<GroupExtractor> {
+
+		private static final long serialVersionUID = 1L;
+
+		private NFA nfa;
+
+		Extract(NFA nfa) {
+			this.nfa = nfa;
+		}
+
+		@Override
+		protected GroupExtractor compute() {
+			return extractorFrom(nfa);
+		}
+
+	}
+
+	@Override
+	public Engine engine() {
+		return engine;
+	}
+
+	@Override
+	public long tableBytes() {
+		return matcher.tableBytes() + extractor.tableBytes();
+	}
+
+	@Override
+	public void writeTo(AutomatonWriter out) throws IOException {
+		out.writeBoolean(mode.findLongest());
+		out.writeBoolean(mode.findOverlapping());
+		out.writeInt(engine.ordinal());
+		out.writeDFA(matcher);
+		out.writeExtractor(extractor);
+	}
+
 	@Override
 	public Matcher newMatcher(CharProvider input) {
+		DFA matcher = this.matcher.instance();
+		StartScanner scanner = engine == Engine.DFA ? new StartScanner(matcher) : null;
 		if (mode.findLongest()) {
 			if (mode.findOverlapping()) {
-				return new SimpleLongestOverlappingMatcher(matcher, grouper, input);
+				return new SimpleLongestOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			} else {
-				return new SimpleLongestNonOverlappingMatcher(matcher, grouper, input);
+				return new SimpleLongestNonOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			}
 		} else {
 			if (mode.findOverlapping()) {
-				return new SimpleAllOverlappingMatcher(matcher, grouper, input);
+				return new SimpleAllOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			} else {
-				return new SimpleAllNonOverlappingMatcher(matcher, grouper, input);
+				return new SimpleAllNonOverlappingMatcher(matcher, extractor.instance(), scanner, input);
 			}
 		}
 	}
@@ -0,0 +1,18 @@
+package net.amygdalum.patternsearchalgorithms.pattern.chars;
+
+import net.amygdalum.util.io.StringCharProvider;
+
+public class StringProvider extends StringCharProvider {
+
+	private String input;
+
+	public StringProvider(String input, int start) {
+		super(input, start);
+		this.input = input;
+	}
+
+	public String getString() {
+		return input;
+	}
+
+}
@@ -0,0 +1,62 @@
+package net.amygdalum.patternsearchalgorithms.automaton;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import org.junit.Test;
+
+public class PartitionRefinementTest {
+
+	@Test
+	public void testMinimizeEmpty() throws Exception {
+		int[] blocks = PartitionRefinement.minimize(0, 2, new int[0], new int[0]);
+
+		assertThat(blocks.length, equalTo(0));
+	}
+
+	@Test
+	public void testMinimizeMergesEquivalentStates() throws Exception {
+		// 0 -a-> 1, 0 -b-> 2, 1 -a-> 3, 2 -a-> 3, 3 accepting
+		int[] transitions = new int[] {
+			1, 2,
+			3, -1,
+			3, -1,
+			-1, -1
+		};
+		int[] blocks = PartitionRefinement.minimize(4, 2, transitions, new int[] { 0, 0, 0, 1 });
+
+		assertThat(blocks[0], equalTo(0));
+		assertThat(blocks[1], equalTo(blocks[2]));
+		assertThat(blocks[1], not(equalTo(blocks[0])));
+		assertThat(blocks[3], not(equalTo(blocks[0])));
+		assertThat(blocks[3], not(equalTo(blocks[1])));
+	}
+
+	@Test
+	public void testMinimizeSeparatesStatesByDistance() throws Exception {
+		// chain 0 -a-> 1 -a-> 2 -a-> 3, 3 accepting
+		int[] transitions = new int[] { 1, 2, 3, -1 };
+		int[] blocks = PartitionRefinement.minimize(4, 1, transitions, new int[] { 0, 0, 0, 1 });
+
+		assertThat(blocks, equalTo(new int[] { 0, 1, 2, 3 }));
+	}
+
+	@Test
+	public void testMinimizeMergesCycle() throws Exception {
+		// 0 -a-> 1 -a-> 2 -a-> 0, all accepting
+		int[] transitions = new int[] { 1, 2, 0 };
+		int[] blocks = PartitionRefinement.minimize(3, 1, transitions, new int[] { 1, 1, 1 });
+
+		assertThat(blocks, equalTo(new int[] { 0, 0, 0 }));
+	}
+
+	@Test
+	public void testMinimizeKeepsInitialBlocksApart() throws Exception {
+		int[] transitions = new int[] { -1, -1, -1 };
+		int[] blocks = PartitionRefinement.minimize(3, 1, transitions, new int[] { 2, 0, 2 });
+
+		assertThat(blocks, equalTo(new int[] { 0, 1, 0 }));
+	}
+
+}
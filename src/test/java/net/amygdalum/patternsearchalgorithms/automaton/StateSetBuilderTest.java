@@ -0,0 +1,52 @@
+package net.amygdalum.patternsearchalgorithms.automaton;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import org.junit.Test;
+
+public class StateSetBuilderTest {
+
+	@Test
+	public void testBuildSortsAndDeduplicates() throws Exception {
+		StateSetBuilder builder = new StateSetBuilder(8);
+		builder.add(5);
+		builder.add(2);
+		builder.addAll(new int[] { 5, 7, 2 });
+
+		StateSet set = builder.build();
+
+		assertThat(set.size(), equalTo(3));
+		assertThat(set.get(0), equalTo(2));
+		assertThat(set.get(1), equalTo(5));
+		assertThat(set.get(2), equalTo(7));
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		StateSetBuilder builder = new StateSetBuilder(8);
+		builder.add(3);
+		builder.clear();
+
+		assertThat(builder.contains(3), equalTo(false));
+		assertThat(builder.build().size(), equalTo(0));
+	}
+
+	@Test
+	public void testEqualSetsAreInterchangeable() throws Exception {
+		StateSetBuilder builder = new StateSetBuilder(8);
+		builder.addAll(new int[] { 1, 4 });
+		StateSet set1 = builder.build();
+		builder.clear();
+		builder.addAll(new int[] { 4, 1 });
+		StateSet set2 = builder.build();
+		builder.add(6);
+		StateSet set3 = builder.build();
+
+		assertThat(set1, equalTo(set2));
+		assertThat(set1.hashCode(), equalTo(set2.hashCode()));
+		assertThat(set1, not(equalTo(set3)));
+	}
+
+}
@@ -0,0 +1,111 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DFATest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder(UTF_8);
+	}
+
+	@Test
+	public void testByteClassesOfString() throws Exception {
+		TableDFA dfa = TableDFA.from(nfaBuilder.build(nfaBuilder.match("abc")));
+
+		assertThat(dfa.classCount, equalTo(4));
+		assertThat(((ByteTableDFA) dfa).transitions.length, equalTo(4 * dfa.classCount));
+	}
+
+	@Test
+	public void testByteClassesMergeEquivalentRanges() throws Exception {
+		TableDFA dfa = TableDFA.from(nfaBuilder.build(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a', 'c'), nfaBuilder.match('x', 'z'))),
+			nfaBuilder.match('-')))));
+
+		assertThat(dfa.classCount, equalTo(3));
+		assertThat(dfa.classes['a'], equalTo(dfa.classes['z']));
+	}
+
+	@Test
+	public void testPremultipliedStates() throws Exception {
+		TableDFA dfa = TableDFA.from(nfaBuilder.build(nfaBuilder.match("ab")));
+
+		int state = dfa.next(dfa.start, (byte) 'a');
+
+		assertThat(state % dfa.classCount, equalTo(0));
+		assertThat(dfa.next(state, (byte) 'b') % dfa.classCount, equalTo(0));
+	}
+
+	@Test
+	public void testEncodingBySize() throws Exception {
+		assertThat(TableDFA.from(nfaBuilder.build(nfaBuilder.match(repeat('a', 20)))), instanceOf(ByteTableDFA.class));
+		assertThat(TableDFA.from(nfaBuilder.build(nfaBuilder.match(repeat('a', 100)))), instanceOf(ShortTableDFA.class));
+	}
+
+	@Test
+	public void testNextOnLargeEncodings() throws Exception {
+		DFA dfa = DFA.from(nfaBuilder.build(nfaBuilder.match(repeat('a', 100))));
+
+		assertTrue(matches(dfa, repeat('a', 100)));
+		assertFalse(matches(dfa, repeat('a', 99)));
+		assertFalse(matches(dfa, repeat('a', 101)));
+	}
+
+	@Test
+	public void testAcceleratedStates() throws Exception {
+		TableDFA dfa = TableDFA.from(nfaBuilder.build(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchStarLoop(nfaBuilder.matchAnyByte()),
+			nfaBuilder.match("ab")))));
+
+		assertTrue(dfa.accelerated(dfa.start));
+		assertThat(dfa.escapes(dfa.start), equalTo(new byte[] { 'a' }));
+		assertFalse(dfa.accelerated(dfa.next(dfa.next(dfa.start, (byte) 'a'), (byte) 'b')));
+	}
+
+	@Test
+	public void testNext() throws Exception {
+		DFA dfa = DFA.from(nfaBuilder.build(nfaBuilder.match("ab")));
+
+		assertTrue(matches(dfa, "ab"));
+		assertFalse(matches(dfa, "a"));
+		assertFalse(matches(dfa, "abc"));
+		assertFalse(matches(dfa, "äb"));
+	}
+
+	private static String repeat(char c, int n) {
+		char[] chars = new char[n];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static boolean matches(DFA dfa, String input) {
+		return matches(dfa, input.getBytes(UTF_8));
+	}
+
+	private static boolean matches(DFA dfa, byte[] input) {
+		int state = dfa.start;
+		for (byte b : input) {
+			if (state < 0) {
+				return false;
+			}
+			state = dfa.next(state, b);
+		}
+		return state >= 0 && dfa.accept(state);
+	}
+
+}
@@ -0,0 +1,116 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.StringByteProvider;
+
+public class GroupsTest {
+
+	@Test
+	public void testStartEndGroupCopiesOnWrite() throws Exception {
+		Groups groups = new Groups(0, 4);
+		Groups started = groups.startGroup(1, 1);
+		Groups ended = started.endGroup(1, 3);
+		Groups restarted = ended.startGroup(1, 2);
+
+		assertThat(groups.getStart(1), equalTo(-1L));
+		assertThat(started.getStart(1), equalTo(1L));
+		assertThat(started.getEnd(1), equalTo(-1L));
+		assertThat(ended.getStart(1), equalTo(1L));
+		assertThat(ended.getEnd(1), equalTo(3L));
+		assertThat(restarted.getStart(1), equalTo(2L));
+		assertThat(restarted.getEnd(1), equalTo(-1L));
+	}
+
+	@Test
+	public void testEqualsIgnoresUnsetSlots() throws Exception {
+		Groups groups1 = new Groups(0, 4).startGroup(1, 1).endGroup(1, 2);
+		Groups groups2 = new Groups(0, 4).startGroup(1, 1).endGroup(1, 2).endGroup(2, 3);
+
+		assertThat(groups1, equalTo(groups2));
+		assertThat(groups1.hashCode(), equalTo(groups2.hashCode()));
+		assertThat(groups1.compareTo(groups2), equalTo(0));
+		assertThat(groups1.compareTo(new Groups(0, 4).startGroup(1, 2).endGroup(1, 2)), equalTo(1));
+	}
+
+	@Test
+	public void testProcessAfterUpdate() throws Exception {
+		NFABuilder nfaBuilder = new NFABuilder(UTF_8);
+		NFA grouper = nfaBuilder.build(nfaBuilder.matchGroup(nfaBuilder.matchGroup(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('a'), 1), 1), 0));
+		GroupExtractor extractor = new PikeVM(grouper);
+		StringByteProvider input = new StringByteProvider("aabaaa", 0, UTF_8);
+		Groups groups = new Groups();
+
+		groups.update(0, 2);
+		groups.process(input, extractor);
+		assertThat(groups.getStart(1), equalTo(0L));
+		assertThat(groups.getEnd(1), equalTo(2L));
+
+		groups.update(3, 6);
+		assertThat(groups.isComplete(), equalTo(false));
+		groups.process(input, extractor);
+		assertThat(groups.getStart(1), equalTo(3L));
+		assertThat(groups.getEnd(1), equalTo(6L));
+
+		groups.update(2, 3);
+		groups.process(input, extractor);
+		assertThat(groups.getStart(1), equalTo(-1L));
+		assertThat(groups.getEnd(1), equalTo(-1L));
+	}
+
+	@Test
+	public void testProcessWritesIntoOwnSlots() throws Exception {
+		List<long[]> written = new ArrayList<>();
+		GroupExtractor extractor = new GroupExtractor() {
+
+			@Override
+			public GroupExtractor instance() {
+				return this;
+			}
+
+			@Override
+			public Charset getCharset() {
+				return UTF_8;
+			}
+
+			@Override
+			public int slotCount() {
+				return 2;
+			}
+
+			@Override
+			public long tableBytes() {
+				return 0;
+			}
+
+			@Override
+			public boolean match(ByteProvider input, long start, long end, long[] slots) {
+				written.add(slots);
+				slots[0] = start;
+				slots[1] = end;
+				return true;
+			}
+		};
+		Groups groups = new Groups();
+
+		groups.update(0, 2);
+		groups.process(new StringByteProvider("aabaaa", 0, UTF_8), extractor);
+		groups.update(3, 6);
+		groups.process(new StringByteProvider("aabaaa", 0, UTF_8), extractor);
+
+		assertThat(groups.getStart(1), equalTo(3L));
+		assertThat(groups.getEnd(1), equalTo(6L));
+		assertThat(written.get(1), sameInstance(written.get(0)));
+	}
+
+}
@@ -0,0 +1,101 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyDFATest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder(UTF_8);
+	}
+
+	@Test
+	public void testNext() throws Exception {
+		DFA dfa = DFA.lazy(nfaBuilder.build(nfaBuilder.match("ab")), 16);
+
+		assertTrue(matches(dfa, "ab"));
+		assertFalse(matches(dfa, "a"));
+		assertFalse(matches(dfa, "abc"));
+		assertFalse(matches(dfa, "äb"));
+	}
+
+	@Test
+	public void testExponentialPattern() throws Exception {
+		DFA dfa = DFA.lazy(nfaBuilder.build(exponential(12)), 1024);
+
+		assertTrue(matches(dfa, "bbbabbbbbbbbbbbb"));
+		assertTrue(matches(dfa, "aaaaaaaaaaaaa"));
+		assertFalse(matches(dfa, "bbbbabbbbbbbbbbb"));
+		assertFalse(matches(dfa, "aaaaaaaaaaaa"));
+	}
+
+	@Test
+	public void testFallbackToSimulation() throws Exception {
+		LazyDFA dfa = LazyDFA.from(nfaBuilder.build(exponential(12)), 4);
+
+		assertTrue(matches(dfa, "bbbabbbbbbbbbbbb"));
+		assertFalse(matches(dfa, "bbbbabbbbbbbbbbb"));
+		assertTrue(dfa.isSimulating());
+		assertTrue(matches(dfa, "abbabaabbbabaababbbbbbbbbbbb"));
+		assertFalse(matches(dfa, "abbabaabbbabababbbbbbbbbbbbb"));
+	}
+
+	@Test
+	public void testInstance() throws Exception {
+		LazyDFA dfa = LazyDFA.from(nfaBuilder.build(exponential(12)), 4);
+		matches(dfa, "abbabaabbbabaababbbbbbbbbbbb");
+
+		LazyDFA instance = (LazyDFA) dfa.instance();
+
+		assertTrue(dfa.isSimulating());
+		assertFalse(instance.isSimulating());
+		assertTrue(matches(instance, "bbbabbbbbbbbbbbb"));
+	}
+
+	@Test
+	public void testSimulation() throws Exception {
+		LazyDFA dfa = LazyDFA.simulation(nfaBuilder.build(exponential(12)));
+
+		assertTrue(dfa.isSimulating());
+		assertTrue(matches(dfa, "bbbabbbbbbbbbbbb"));
+		assertFalse(matches(dfa, "bbbbabbbbbbbbbbb"));
+		assertTrue(((LazyDFA) dfa.instance()).isSimulating());
+	}
+
+	@Test(expected = CompileBudgetExceededException.class)
+	public void testDeterminizeExceedingStates() throws Exception {
+		DFA.from(nfaBuilder.build(exponential(12)), new CompileBudget(1000, Long.MAX_VALUE));
+	}
+
+	@Test(expected = CompileBudgetExceededException.class)
+	public void testDeterminizeExceedingDeadline() throws Exception {
+		DFA.from(nfaBuilder.build(exponential(12)), new CompileBudget(Integer.MAX_VALUE, System.nanoTime()));
+	}
+
+	private NFAComponent exponential(int n) {
+		return nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchStarLoop(nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a'), nfaBuilder.match('b')))),
+			nfaBuilder.match('a'),
+			nfaBuilder.matchFixedLoop(nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a'), nfaBuilder.match('b'))), n)));
+	}
+
+	private static boolean matches(DFA dfa, String input) {
+		int state = dfa.start;
+		for (byte b : input.getBytes(UTF_8)) {
+			if (state < 0) {
+				return false;
+			}
+			state = dfa.next(state, b);
+		}
+		return dfa.accept(state);
+	}
+
+}
@@ -12,7 +12,6 @@ import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 
-import net.amygdalum.util.io.ReverseByteProvider;
 import net.amygdalum.util.io.StringByteProvider;
 
 public class NFADeterminizedTest {
@@ -283,9 +282,10 @@ public class NFADeterminizedTest {
 
 	public static Set<String> matchSamples(NFA a, String... samples) {
 		Set<String> matched = new HashSet<>();
+		PikeVM vm = new PikeVM(a);
 		for (String sample : samples) {
-			NFAMatcher m = new NFAMatcher(a, new StringByteProvider(sample, 0, a.getCharset()));
-			if (m.matches()) {
+			byte[] bytes = sample.getBytes(a.getCharset());
+			if (vm.match(new StringByteProvider(bytes, 0, a.getCharset()), 0, bytes.length, new long[vm.slotCount()])) {
 				matched.add(sample);
 			}
 		}
@@ -294,11 +294,14 @@ public class NFADeterminizedTest {
 
 	public static Set<String> matchReverseSamples(NFA a, String... samples) {
 		Set<String> matched = new HashSet<>();
+		PikeVM vm = new PikeVM(a);
 		for (String sample : samples) {
-			StringByteProvider input = new StringByteProvider(sample, 0, a.getCharset());
-			input.finish();
-			NFAMatcher m = new NFAMatcher(a, new ReverseByteProvider(input));
-			if (m.matches()) {
+			byte[] bytes = sample.getBytes(a.getCharset());
+			byte[] reversed = new byte[bytes.length];
+			for (int i = 0; i < bytes.length; i++) {
+				reversed[i] = bytes[bytes.length - 1 - i];
+			}
+			if (vm.match(new StringByteProvider(reversed, 0, a.getCharset()), 0, reversed.length, new long[vm.slotCount()])) {
 				matched.add(sample);
 			}
 		}
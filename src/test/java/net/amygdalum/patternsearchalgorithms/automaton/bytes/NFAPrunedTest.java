@@ -259,9 +259,10 @@ public class NFAPrunedTest {
 
 	public static Set<String> matchSamples(NFA a, String... samples) {
 		Set<String> matched = new HashSet<>();
+		PikeVM vm = new PikeVM(a);
 		for (String sample : samples) {
-			NFAMatcher m = new NFAMatcher(a, new StringByteProvider(sample, 0, a.getCharset()));
-			if (m.matches()) {
+			byte[] bytes = sample.getBytes(a.getCharset());
+			if (vm.match(new StringByteProvider(bytes, 0, a.getCharset()), 0, bytes.length, new long[vm.slotCount()])) {
 				matched.add(sample);
 			}
 		}
@@ -6,6 +6,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.util.HashSet;
@@ -276,15 +277,31 @@ public class NFATest {
 		assertThat(matchSamples(aOrb, ""), contains(""));
 	}
 
+	@Test
+	public void testMaxLength() throws Exception {
+		assertThat(automatonOf(nfaBuilder.match("abc")).maxLength(), equalTo(3));
+		assertThat(automatonOf(nfaBuilder.matchEmpty()).maxLength(), equalTo(0));
+		assertThat(automatonOf(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("ab"), nfaBuilder.match("abcd")))).maxLength(), equalTo(4));
+		assertThat(automatonOf(nfaBuilder.matchRangeLoop(nfaBuilder.match('a'), 1, 3)).maxLength(), equalTo(3));
+		assertThat(automatonOf(nfaBuilder.matchOptional(nfaBuilder.match("ab"))).maxLength(), equalTo(2));
+	}
+
+	@Test
+	public void testMaxLengthUnbounded() throws Exception {
+		assertThat(automatonOf(nfaBuilder.matchStarLoop(nfaBuilder.match('a'))).maxLength(), equalTo(-1));
+		assertThat(automatonOf(nfaBuilder.matchConcatenation(asList(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('a', 'z'), 1), nfaBuilder.match('x')))).maxLength(), equalTo(-1));
+	}
+
 	private static NFA automatonOf(NFAComponent automaton) {
 		return new NFABuilder(UTF_8).build(automaton);
 	}
 
 	public static Set<String> matchSamples(NFA a, String... samples) {
 		Set<String> matched = new HashSet<>();
+		PikeVM vm = new PikeVM(a);
 		for (String sample : samples) {
-			NFAMatcher m = new NFAMatcher(a, new StringByteProvider(sample, 0, a.getCharset()));
-			if (m.matches()) {
+			byte[] bytes = sample.getBytes(a.getCharset());
+			if (vm.match(new StringByteProvider(bytes, 0, a.getCharset()), 0, bytes.length, new long[vm.slotCount()])) {
 				matched.add(sample);
 			}
 		}
@@ -0,0 +1,112 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.StringByteProvider;
+
+public class OnePassDFATest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder(UTF_8);
+	}
+
+	@Test
+	public void testMatchGroups() throws Exception {
+		// (a+)(b+)
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('a'), 1), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('b'), 1), 2))));
+
+		assertThat(dfa, notNullValue());
+		assertThat(dfa.slotCount(), equalTo(4));
+		assertThat(slotsOf(dfa, new StringByteProvider("xaabbbx", 0, UTF_8), 1, 6), equalTo(new long[] { 1, 3, 3, 6 }));
+	}
+
+	@Test
+	public void testMatchDelimitedGroups() throws Exception {
+		// k=([a-z]+);v=([0-9]*)
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.match("k="),
+			nfaBuilder.matchGroup(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('a', 'z'), 1), 1),
+			nfaBuilder.match(";v="),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('0', '9')), 2))));
+
+		assertThat(dfa, notNullValue());
+		assertThat(slotsOf(dfa, new StringByteProvider("k=key;v=42", 0, UTF_8), 0, 10), equalTo(new long[] { 2, 5, 8, 10 }));
+		assertThat(slotsOf(dfa, new StringByteProvider("k=key;v=", 0, UTF_8), 0, 8), equalTo(new long[] { 2, 5, 8, 8 }));
+	}
+
+	@Test
+	public void testMatchUnsetGroup() throws Exception {
+		// (a)|(b)
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchAlternatives(asList(
+			nfaBuilder.matchGroup(nfaBuilder.match('a'), 1),
+			nfaBuilder.matchGroup(nfaBuilder.match('b'), 2))));
+
+		assertThat(dfa, notNullValue());
+		assertThat(slotsOf(dfa, new StringByteProvider("b", 0, UTF_8), 0, 1), equalTo(new long[] { -1, -1, 0, 1 }));
+	}
+
+	@Test
+	public void testMatchFails() throws Exception {
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchGroup(nfaBuilder.match("ab"), 1));
+
+		assertThat(slotsOf(dfa, new StringByteProvider("abc", 0, UTF_8), 0, 3), nullValue());
+		assertThat(slotsOf(dfa, new StringByteProvider("ac", 0, UTF_8), 0, 2), nullValue());
+		assertThat(slotsOf(dfa, new StringByteProvider("a", 0, UTF_8), 0, 1), nullValue());
+	}
+
+	@Test
+	public void testOfAmbiguousGroups() throws Exception {
+		// (a*)(a*)
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 2))));
+
+		assertThat(dfa, nullValue());
+	}
+
+	@Test
+	public void testOfAmbiguousAlternatives() throws Exception {
+		// (a|ab)(c|bcd)
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("a"), nfaBuilder.match("ab"))), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("c"), nfaBuilder.match("bcd"))), 2))));
+
+		assertThat(dfa, nullValue());
+	}
+
+	@Test
+	public void testInstanceIsIndependent() throws Exception {
+		OnePassDFA dfa = dfaOf(nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 1));
+		OnePassDFA instance = dfa.instance();
+
+		long[] slots = slotsOf(dfa, new StringByteProvider("aa", 0, UTF_8), 0, 2);
+		assertThat(slotsOf(instance, new StringByteProvider("aaaa", 0, UTF_8), 1, 4), equalTo(new long[] { 1, 4 }));
+		assertThat(slots, equalTo(new long[] { 0, 2 }));
+	}
+
+	private OnePassDFA dfaOf(NFAComponent component) {
+		NFA grouper = nfaBuilder.build(nfaBuilder.matchGroup(component, 0));
+		grouper.prune();
+		return OnePassDFA.of(grouper);
+	}
+
+	private static long[] slotsOf(GroupExtractor extractor, ByteProvider input, long start, long end) {
+		long[] slots = new long[extractor.slotCount()];
+		return extractor.match(input, start, end, slots) ? slots : null;
+	}
+
+}
@@ -0,0 +1,142 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.amygdalum.regexparser.RegexNode;
+import net.amygdalum.regexparser.RegexParser;
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.StringByteProvider;
+
+public class PikeVMTest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder(UTF_8);
+	}
+
+	@Test
+	public void testMatchGroups() throws Exception {
+		// (a+)(b+)
+		PikeVM vm = vmOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('a'), 1), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('b'), 1), 2))));
+
+		assertThat(vm.slotCount(), equalTo(4));
+		assertThat(slotsOf(vm, new StringByteProvider("xaabbbx", 0, UTF_8), 1, 6), equalTo(new long[] { 1, 3, 3, 6 }));
+	}
+
+	@Test
+	public void testMatchFails() throws Exception {
+		PikeVM vm = vmOf(nfaBuilder.matchGroup(nfaBuilder.match("ab"), 1));
+
+		assertThat(slotsOf(vm, new StringByteProvider("abc", 0, UTF_8), 0, 3), nullValue());
+		assertThat(slotsOf(vm, new StringByteProvider("ac", 0, UTF_8), 0, 2), nullValue());
+	}
+
+	@Test
+	public void testMatchPrefersGreedyLoops() throws Exception {
+		// (a*)(a*)
+		PikeVM vm = vmOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 2))));
+
+		assertThat(slotsOf(vm, new StringByteProvider("aaa", 0, UTF_8), 0, 3), equalTo(new long[] { 0, 3, 3, 3 }));
+	}
+
+	@Test
+	public void testMatchKeepsLastIteration() throws Exception {
+		// ([a-e]|(abc))+
+		PikeVM vm = vmOf(nfaBuilder.matchUnlimitedLoop(nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(
+			nfaBuilder.match('a', 'e'),
+			nfaBuilder.matchGroup(nfaBuilder.match("abc"), 2))), 1), 1));
+
+		assertThat(slotsOf(vm, new StringByteProvider("cabcdecabc", 0, UTF_8), 0, 10), equalTo(new long[] { 9, 10, -1, -1 }));
+	}
+
+	@Test
+	public void testMatchPrefersEarlierAlternatives() throws Exception {
+		// (a|ab)(c|bcd)(d*)
+		PikeVM vm = vmOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("a"), nfaBuilder.match("ab"))), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("c"), nfaBuilder.match("bcd"))), 2),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('d')), 3))));
+
+		assertThat(slotsOf(vm, new StringByteProvider("abcd", 0, UTF_8), 0, 4), equalTo(new long[] { 0, 1, 1, 4, 4, 4 }));
+	}
+
+	@Test
+	public void testMatchAgreesWithOtherExtractors() throws Exception {
+		assertExtractorsMatch("c((a(c)?))|((b|c*a)(abb*)*)+", "babbaa", -1, -1, -1, -1, -1, -1, 5, 6, 5, 6, 1, 4);
+		assertExtractorsMatch("(a|ab)(c|bcd)(d*)", "abcd", 0, 1, 1, 4, 4, 4);
+		assertExtractorsMatch("(a|ab|b)*(bb|b)", "abbb", 2, 3, 3, 4);
+		assertExtractorsMatch("((ab|a)(ba|b)?)+", "ababa", 4, 5, 4, 5, -1, -1);
+		assertExtractorsMatch("(a|aa)*(a?)", "aaa", 2, 3, 3, 3);
+		assertExtractorsMatch("((a|b)*)(b|ab)*", "abab", 0, 4, 3, 4, -1, -1);
+		assertExtractorsMatch("((a*)*b)*", "aabab", 3, 5, 3, 4);
+		assertExtractorsMatch("([ab]*)(a*)(b+)", "aabb", 0, 3, 3, 3, 3, 4);
+	}
+
+	@Test
+	public void testMatchUnsetGroup() throws Exception {
+		// (a)|(b)
+		PikeVM vm = vmOf(nfaBuilder.matchAlternatives(asList(
+			nfaBuilder.matchGroup(nfaBuilder.match('a'), 1),
+			nfaBuilder.matchGroup(nfaBuilder.match('b'), 2))));
+
+		assertThat(slotsOf(vm, new StringByteProvider("b", 0, UTF_8), 0, 1), equalTo(new long[] { -1, -1, 0, 1 }));
+	}
+
+	@Test
+	public void testInstanceIsIndependent() throws Exception {
+		PikeVM vm = vmOf(nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 1));
+		PikeVM instance = vm.instance();
+
+		long[] slots = slotsOf(vm, new StringByteProvider("aa", 0, UTF_8), 0, 2);
+		assertThat(slotsOf(instance, new StringByteProvider("aaaa", 0, UTF_8), 1, 4), equalTo(new long[] { 1, 4 }));
+		assertThat(slots, equalTo(new long[] { 0, 2 }));
+	}
+
+	private void assertExtractorsMatch(String pattern, String input, long... slots) {
+		NFA unpruned = grouperOf(pattern);
+		NFA grouper = grouperOf(pattern);
+		grouper.prune();
+		OnePassDFA onePass = OnePassDFA.of(grouper);
+		TaggedDFA tagged = TaggedDFA.of(grouper);
+
+		assertThat(pattern, slotsOf(new PikeVM(grouper), new StringByteProvider(input, 0, UTF_8), 0, input.length()), equalTo(slots));
+		assertThat(pattern, slotsOf(new PikeVM(unpruned), new StringByteProvider(input, 0, UTF_8), 0, input.length()), equalTo(slots));
+		if (onePass != null) {
+			assertThat(pattern, slotsOf(onePass, new StringByteProvider(input, 0, UTF_8), 0, input.length()), equalTo(slots));
+		}
+		if (tagged != null) {
+			assertThat(pattern, slotsOf(tagged, new StringByteProvider(input, 0, UTF_8), 0, input.length()), equalTo(slots));
+		}
+	}
+
+	private NFA grouperOf(String pattern) {
+		NFABuilder builder = new NFABuilder(UTF_8);
+		RegexNode node = new RegexParser(pattern).parse();
+		return builder.build(builder.matchGroup(node.accept(builder), 0));
+	}
+
+	private PikeVM vmOf(NFAComponent component) {
+		NFA grouper = nfaBuilder.build(nfaBuilder.matchGroup(component, 0));
+		grouper.prune();
+		return new PikeVM(grouper);
+	}
+
+	private static long[] slotsOf(GroupExtractor extractor, ByteProvider input, long start, long end) {
+		long[] slots = new long[extractor.slotCount()];
+		return extractor.match(input, start, end, slots) ? slots : null;
+	}
+
+}
@@ -0,0 +1,107 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.amygdalum.util.io.ByteProvider;
+import net.amygdalum.util.io.StringByteProvider;
+
+public class TaggedDFATest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder(UTF_8);
+	}
+
+	@Test
+	public void testMatchAmbiguousGroups() throws Exception {
+		// (a|ab)(c|bcd)(d*)
+		TaggedDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("a"), nfaBuilder.match("ab"))), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("c"), nfaBuilder.match("bcd"))), 2),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('d')), 3))));
+
+		assertThat(dfa, notNullValue());
+		assertThat(dfa.slotCount(), equalTo(6));
+		assertThat(slotsOf(dfa, new StringByteProvider("abcd", 0, UTF_8), 0, 4), equalTo(new long[] { 0, 1, 1, 4, 4, 4 }));
+		assertThat(slotsOf(dfa, new StringByteProvider("xabcdx", 0, UTF_8), 1, 4), equalTo(new long[] { 1, 3, 3, 4, 4, 4 }));
+	}
+
+	@Test
+	public void testMatchPrefersGreedyLoops() throws Exception {
+		// (a*)(a*)
+		TaggedDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 2))));
+
+		assertThat(slotsOf(dfa, new StringByteProvider("aaa", 0, UTF_8), 0, 3), equalTo(new long[] { 0, 3, 3, 3 }));
+		assertThat(slotsOf(dfa, new StringByteProvider("", 0, UTF_8), 0, 0), equalTo(new long[] { 0, 0, 0, 0 }));
+	}
+
+	@Test
+	public void testMatchKeepsLastIteration() throws Exception {
+		// ([a-e]|(abc))+
+		TaggedDFA dfa = dfaOf(nfaBuilder.matchUnlimitedLoop(nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(
+			nfaBuilder.match('a', 'e'),
+			nfaBuilder.matchGroup(nfaBuilder.match("abc"), 2))), 1), 1));
+
+		assertThat(slotsOf(dfa, new StringByteProvider("cabcdecabc", 0, UTF_8), 0, 10), equalTo(new long[] { 9, 10, -1, -1 }));
+	}
+
+	@Test
+	public void testMatchFails() throws Exception {
+		// (a|ab)(b)
+		TaggedDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("a"), nfaBuilder.match("ab"))), 1),
+			nfaBuilder.matchGroup(nfaBuilder.match('b'), 2))));
+
+		assertThat(slotsOf(dfa, new StringByteProvider("abbb", 0, UTF_8), 0, 4), nullValue());
+		assertThat(slotsOf(dfa, new StringByteProvider("ac", 0, UTF_8), 0, 2), nullValue());
+		assertThat(slotsOf(dfa, new StringByteProvider("a", 0, UTF_8), 0, 1), nullValue());
+	}
+
+	@Test
+	public void testOfExceedingBudget() throws Exception {
+		// (a|b)*a(a|b){10}
+		TaggedDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchStarLoop(nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a'), nfaBuilder.match('b'))), 1)),
+			nfaBuilder.match('a'),
+			nfaBuilder.matchFixedLoop(nfaBuilder.matchGroup(nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a'), nfaBuilder.match('b'))), 2), 10))));
+
+		assertThat(dfa, nullValue());
+	}
+
+	@Test
+	public void testInstanceIsIndependent() throws Exception {
+		// (a*)(a*)
+		TaggedDFA dfa = dfaOf(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 1),
+			nfaBuilder.matchGroup(nfaBuilder.matchStarLoop(nfaBuilder.match('a')), 2))));
+		TaggedDFA instance = dfa.instance();
+
+		long[] slots = slotsOf(dfa, new StringByteProvider("aa", 0, UTF_8), 0, 2);
+		assertThat(slotsOf(instance, new StringByteProvider("aaaa", 0, UTF_8), 1, 4), equalTo(new long[] { 1, 4, 4, 4 }));
+		assertThat(slots, equalTo(new long[] { 0, 2, 2, 2 }));
+	}
+
+	private TaggedDFA dfaOf(NFAComponent component) {
+		NFA grouper = nfaBuilder.build(nfaBuilder.matchGroup(component, 0));
+		grouper.prune();
+		return TaggedDFA.of(grouper);
+	}
+
+	private static long[] slotsOf(GroupExtractor extractor, ByteProvider input, long start, long end) {
+		long[] slots = new long[extractor.slotCount()];
+		return extractor.match(input, start, end, slots) ? slots : null;
+	}
+
+}
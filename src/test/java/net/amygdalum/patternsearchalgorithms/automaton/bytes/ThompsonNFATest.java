@@ -0,0 +1,96 @@
+package net.amygdalum.patternsearchalgorithms.automaton.bytes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThompsonNFATest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder(UTF_8);
+	}
+
+	@Test
+	public void testNext() throws Exception {
+		DFA dfa = DFA.thompson(nfaBuilder.build(nfaBuilder.match("ab")));
+
+		assertTrue(matches(dfa, "ab"));
+		assertFalse(matches(dfa, "a"));
+		assertFalse(matches(dfa, "abc"));
+		assertFalse(matches(dfa, "äb"));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		DFA dfa = DFA.thompson(nfaBuilder.build(nfaBuilder.matchStarLoop(nfaBuilder.match('a'))));
+
+		assertTrue(matches(dfa, ""));
+		assertTrue(matches(dfa, "aaa"));
+		assertFalse(matches(dfa, "aab"));
+	}
+
+	@Test
+	public void testExponentialPattern() throws Exception {
+		DFA dfa = DFA.thompson(nfaBuilder.build(exponential(12)));
+
+		assertTrue(matches(dfa, "bbbabbbbbbbbbbbb"));
+		assertTrue(matches(dfa, "aaaaaaaaaaaaa"));
+		assertFalse(matches(dfa, "bbbbabbbbbbbbbbb"));
+		assertFalse(matches(dfa, "aaaaaaaaaaaa"));
+	}
+
+	@Test
+	public void testCountedRepetition() throws Exception {
+		DFA dfa = DFA.thompson(nfaBuilder.build(nfaBuilder.matchRangeLoop(nfaBuilder.match('a'), 1000, 2000)));
+
+		assertTrue(matches(dfa, repeat('a', 1000)));
+		assertTrue(matches(dfa, repeat('a', 2000)));
+		assertFalse(matches(dfa, repeat('a', 999)));
+		assertFalse(matches(dfa, repeat('a', 2001)));
+	}
+
+	@Test
+	public void testInstance() throws Exception {
+		DFA dfa = DFA.thompson(nfaBuilder.build(exponential(2)));
+		int state = dfa.next(dfa.next(dfa.start, (byte) 'a'), (byte) 'b');
+
+		DFA instance = dfa.instance();
+
+		assertFalse(matches(instance, "bbbb"));
+		assertTrue(dfa.accept(dfa.next(state, (byte) 'b')));
+	}
+
+	private NFAComponent exponential(int n) {
+		return nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchStarLoop(nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a'), nfaBuilder.match('b')))),
+			nfaBuilder.match('a'),
+			nfaBuilder.matchFixedLoop(nfaBuilder.matchAlternatives(asList(nfaBuilder.match('a'), nfaBuilder.match('b'))), n)));
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder buffer = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			buffer.append(c);
+		}
+		return buffer.toString();
+	}
+
+	private static boolean matches(DFA dfa, String input) {
+		int state = dfa.start;
+		for (byte b : input.getBytes(UTF_8)) {
+			if (state < 0) {
+				return false;
+			}
+			state = dfa.next(state, b);
+		}
+		return dfa.accept(state);
+	}
+
+}
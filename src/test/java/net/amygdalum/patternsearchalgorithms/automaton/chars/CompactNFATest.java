@@ -0,0 +1,76 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactNFATest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder();
+	}
+
+	@Test
+	public void testOf() throws Exception {
+		NFA nfa = nfaBuilder.build(nfaBuilder.match("ab"));
+
+		CompactNFA compact = CompactNFA.of(nfa);
+
+		State[] states = nfa.states();
+		assertThat(compact.stateCount, equalTo(states.length));
+		assertThat(states[compact.start], equalTo(nfa.getStart()));
+		assertThat(compact.out[compact.stateCount], equalTo(2));
+		assertThat(compact.slotCount, equalTo(0));
+		for (int i = 0; i < states.length; i++) {
+			assertThat(compact.accepting[i], equalTo(states[i].isAccepting()));
+			assertThat(compact.silent[i], equalTo(states[i].isSilent()));
+		}
+	}
+
+	@Test
+	public void testNext() throws Exception {
+		NFA nfa = nfaBuilder.build(nfaBuilder.match("ab"));
+		nfa.eliminateEpsilons();
+
+		CompactNFA compact = CompactNFA.of(nfa);
+
+		int a = compact.next(compact.start, 'a');
+		int ab = compact.next(a, 'b');
+		assertFalse(compact.accepting[a]);
+		assertTrue(compact.accepting[ab]);
+		assertThat(compact.next(compact.start, 'b'), equalTo(-1));
+		assertThat(compact.next(ab, 'b'), equalTo(-1));
+	}
+
+	@Test
+	public void testActions() throws Exception {
+		// (a)(b)
+		NFA nfa = nfaBuilder.build(nfaBuilder.matchConcatenation(asList(
+			nfaBuilder.matchGroup(nfaBuilder.match('a'), 1),
+			nfaBuilder.matchGroup(nfaBuilder.match('b'), 2))));
+
+		CompactNFA compact = CompactNFA.of(nfa);
+
+		assertThat(compact.slotCount, equalTo(4));
+		List<Integer> actions = new ArrayList<>();
+		for (int action : compact.epsilonAction) {
+			if (action != 0) {
+				actions.add(action);
+			}
+		}
+		assertThat(actions.toArray(new Integer[0]), arrayContainingInAnyOrder(1, 2, 3, 4));
+	}
+
+}
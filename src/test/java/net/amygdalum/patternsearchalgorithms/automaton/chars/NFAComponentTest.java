@@ -0,0 +1,57 @@
+package net.amygdalum.patternsearchalgorithms.automaton.chars;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NFAComponentTest {
+
+	private NFABuilder nfaBuilder;
+
+	@Before
+	public void before() throws Exception {
+		this.nfaBuilder = new NFABuilder();
+	}
+
+	@Test
+	public void testClone() throws Exception {
+		NFAComponent base = nfaBuilder.match("ab");
+
+		NFAComponent clone = base.clone();
+
+		assertThat(clone.start, not(sameInstance(base.start)));
+		assertThat(clone.end, not(sameInstance(base.end)));
+		NFA reverse = nfaBuilder.build(clone.reverse());
+		NFA forward = nfaBuilder.build(base);
+		assertTrue(accepts(forward, "ab"));
+		assertFalse(accepts(forward, "ba"));
+		assertTrue(accepts(reverse, "ba"));
+		assertFalse(accepts(reverse, "ab"));
+	}
+
+	@Test
+	public void testCloneUnreachableEnd() throws Exception {
+		NFAComponent base = new NFAComponent(new State(), new State());
+
+		NFAComponent clone = base.clone();
+
+		assertThat(clone.end, notNullValue());
+		assertThat(clone.end, not(sameInstance(base.end)));
+	}
+
+	private boolean accepts(NFA nfa, String input) {
+		DFA dfa = DFA.thompson(nfa);
+		int state = dfa.start;
+		for (char c : input.toCharArray()) {
+			state = dfa.next(state, c);
+		}
+		return dfa.accept(state);
+	}
+
+}
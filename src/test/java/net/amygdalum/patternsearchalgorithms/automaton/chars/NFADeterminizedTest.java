@@ -332,9 +332,9 @@ public class NFADeterminizedTest {
 
 	public static Set<String> matchSamples(NFA a, String... samples) {
 		Set<String> matched = new HashSet<>();
+		PikeVM vm = new PikeVM(a);
 		for (String sample : samples) {
-			NFAMatcher m = new NFAMatcher(a, new StringCharProvider(sample, 0));
-			if (m.matches()) {
+			if (vm.match(new StringCharProvider(sample, 0), 0, sample.length(), new long[vm.slotCount()])) {
 				matched.add(sample);
 			}
 		}
@@ -5,6 +5,7 @@ import static java.lang.Character.MIN_VALUE;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.util.HashSet;
@@ -275,15 +276,30 @@ public class NFATest {
 		assertThat(matchSamples(aOrb, ""), contains(""));
 	}
 
+	@Test
+	public void testMaxLength() throws Exception {
+		assertThat(automatonOf(nfaBuilder.match("abc")).maxLength(), equalTo(3));
+		assertThat(automatonOf(nfaBuilder.matchEmpty()).maxLength(), equalTo(0));
+		assertThat(automatonOf(nfaBuilder.matchAlternatives(asList(nfaBuilder.match("ab"), nfaBuilder.match("abcd")))).maxLength(), equalTo(4));
+		assertThat(automatonOf(nfaBuilder.matchRangeLoop(nfaBuilder.match('a'), 1, 3)).maxLength(), equalTo(3));
+		assertThat(automatonOf(nfaBuilder.matchOptional(nfaBuilder.match("ab"))).maxLength(), equalTo(2));
+	}
+
+	@Test
+	public void testMaxLengthUnbounded() throws Exception {
+		assertThat(automatonOf(nfaBuilder.matchStarLoop(nfaBuilder.match('a'))).maxLength(), equalTo(-1));
+		assertThat(automatonOf(nfaBuilder.matchConcatenation(asList(nfaBuilder.matchUnlimitedLoop(nfaBuilder.match('a', 'z'), 1), nfaBuilder.match('x')))).maxLength(), equalTo(-1));
+	}
+
 	private static NFA automatonOf(NFAComponent automaton) {
 		return new NFABuilder().build(automaton);
 	}
 
 	public static Set<String> matchSamples(NFA a, String... samples) {
 		Set<String> matched = new HashSet<>();
+		PikeVM vm = new PikeVM(a);
 		for (String sample : samples) {
-			NFAMatcher m = new NFAMatcher(a, new StringCharProvider(sample, 0));
-			if (m.matches()) {
+			if (vm.match(new StringCharProvider(sample, 0), 0, sample.length(), new long[vm.slotCount()])) {
 				matched.add(sample);
 			}
 		}
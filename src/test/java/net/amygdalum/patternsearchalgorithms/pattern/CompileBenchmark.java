@@ -0,0 +1,61 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class CompileBenchmark {
+
+	private static final int WARMUP = 1;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) {
+		Map<String, String> patterns = new LinkedHashMap<>();
+		patterns.put("exponential (16k states)", "(a|b)*a(a|b){13}");
+		patterns.put("alternation (12k states)", words(2000, 8));
+		patterns.put("literal (2k states)", literal(2000));
+		for (Map.Entry<String, String> entry : patterns.entrySet()) {
+			String name = entry.getKey();
+			String pattern = entry.getValue();
+			System.out.println(name + " chars: " + millis(pattern) + "ms");
+			System.out.println(name + " bytes: " + millis(pattern, new CharsetOption(UTF_8)) + "ms");
+		}
+	}
+
+	private static long millis(String pattern, PatternOption... options) {
+		for (int i = 0; i < WARMUP; i++) {
+			Pattern.compile(pattern, options);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			Pattern.compile(pattern, options);
+		}
+		return (System.nanoTime() - start) / RUNS / 1_000_000;
+	}
+
+	private static String words(int count, int length) {
+		Random random = new Random(42);
+		StringBuilder buffer = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				buffer.append('|');
+			}
+			for (int j = 0; j < length; j++) {
+				buffer.append((char) ('a' + random.nextInt(26)));
+			}
+		}
+		return buffer.toString();
+	}
+
+	private static String literal(int length) {
+		Random random = new Random(42);
+		StringBuilder buffer = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			buffer.append((char) ('a' + random.nextInt(26)));
+		}
+		return buffer.toString();
+	}
+
+}
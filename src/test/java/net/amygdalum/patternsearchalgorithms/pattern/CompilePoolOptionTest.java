@@ -0,0 +1,42 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CompilePoolOptionTest {
+
+	@Test
+	public void testCompilesInPool() throws Exception {
+		final AtomicInteger threads = new AtomicInteger();
+		ForkJoinPool pool = new ForkJoinPool(2, new ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				threads.incrementAndGet();
+				return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			}
+		}, null, false);
+		try {
+			Pattern chars = Pattern.compile("a(b|c)*d", new CompilePoolOption(pool), OptimizationTarget.SEARCH);
+			Pattern bytes = Pattern.compile("a(b|c)*d", new CompilePoolOption(pool), new CharsetOption(UTF_8));
+
+			assertThat(threads.get(), greaterThan(0));
+			Matcher matcher = chars.matcher("xabcbd");
+			assertTrue(matcher.find());
+			assertThat(matcher.group(1), equalTo("b"));
+			assertTrue(bytes.matcher("abcbd").matches());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+
+import org.junit.Test;
+
+import net.amygdalum.regexparser.RegexParser;
+
+public class InnerLiteralTest {
+
+	@Test
+	public void testLiteralAfterLoop() throws Exception {
+		InnerLiteral inner = innerLiteralOf("\\w+@example\\.com");
+
+		assertThat(inner.getLiteral(), equalTo("@example.com"));
+		assertThat(inner.getPrefix(), hasSize(1));
+		assertThat(inner.getSuffix(), empty());
+	}
+
+	@Test
+	public void testLiteralBetweenLoops() throws Exception {
+		InnerLiteral inner = innerLiteralOf("[a-z]+=[0-9]+");
+
+		assertThat(inner.getLiteral(), equalTo("="));
+		assertThat(inner.getPrefix(), hasSize(1));
+		assertThat(inner.getSuffix(), hasSize(1));
+	}
+
+	@Test
+	public void testPrefersRareLiterals() throws Exception {
+		assertThat(innerLiteralOf("x+ing[a-z]*::[a-z]*").getLiteral(), equalTo("::"));
+	}
+
+	@Test
+	public void testNoLiteral() throws Exception {
+		assertThat(innerLiteralOf("\\w+"), nullValue());
+		assertThat(innerLiteralOf("a+|b+"), nullValue());
+	}
+
+	private static InnerLiteral innerLiteralOf(String pattern) {
+		return InnerLiteral.of(new RegexParser(pattern).parse());
+	}
+
+}
@@ -0,0 +1,55 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import net.amygdalum.regexparser.RegexParser;
+
+public class LiteralPrefixesTest {
+
+	@Test
+	public void testString() throws Exception {
+		assertThat(prefixesOf("abc"), contains("abc"));
+	}
+
+	@Test
+	public void testStringFollowedByLoop() throws Exception {
+		assertThat(prefixesOf("ERROR \\d+"), contains("ERROR "));
+		assertThat(prefixesOf("user=[a-z]+"), contains("user="));
+	}
+
+	@Test
+	public void testAlternatives() throws Exception {
+		assertThat(prefixesOf("(warn|error): .*"), contains("error: ", "warn: "));
+	}
+
+	@Test
+	public void testSmallCharClasses() throws Exception {
+		assertThat(prefixesOf("[ab]c"), contains("ac", "bc"));
+		assertThat(prefixesOf("a{2}b+"), contains("aab"));
+	}
+
+	@Test
+	public void testOptionalPrefix() throws Exception {
+		assertThat(prefixesOf("a?b"), contains("ab", "b"));
+		assertThat(prefixesOf("ab(c|cd)"), contains("abc"));
+	}
+
+	@Test
+	public void testNoPrefixes() throws Exception {
+		assertThat(prefixesOf("\\w+@example\\.com"), empty());
+		assertThat(prefixesOf("a*b"), empty());
+		assertThat(prefixesOf(".b"), empty());
+		assertThat(prefixesOf("a|b*"), empty());
+	}
+
+	private static List<String> prefixesOf(String pattern) {
+		return LiteralPrefixes.of(new RegexParser(pattern).parse());
+	}
+
+}
@@ -0,0 +1,78 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MatchQueueTest {
+
+	@Test
+	public void testEmpty() throws Exception {
+		MatchQueue queue = new MatchQueue();
+
+		assertTrue(queue.isEmpty());
+		assertThat(queue.size(), equalTo(0));
+	}
+
+	@Test
+	public void testOrderedByStartThenEnd() throws Exception {
+		MatchQueue queue = new MatchQueue();
+		queue.add(4, 6);
+		queue.add(1, 5);
+		queue.add(4, 5);
+		queue.add(1, 3);
+		queue.add(0, 9);
+
+		assertThat(queue.size(), equalTo(5));
+		assertMatch(queue, 0, 9);
+		assertMatch(queue, 1, 3);
+		assertMatch(queue, 1, 5);
+		assertMatch(queue, 4, 5);
+		assertMatch(queue, 4, 6);
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testKeepsDuplicates() throws Exception {
+		MatchQueue queue = new MatchQueue();
+		queue.add(2, 3);
+		queue.add(2, 3);
+
+		assertMatch(queue, 2, 3);
+		assertMatch(queue, 2, 3);
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testGrows() throws Exception {
+		MatchQueue queue = new MatchQueue();
+		for (int i = 99; i >= 0; i--) {
+			queue.add(i, i + 1);
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertMatch(queue, i, i + 1);
+		}
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		MatchQueue queue = new MatchQueue();
+		queue.add(2, 3);
+		queue.clear();
+
+		assertTrue(queue.isEmpty());
+	}
+
+	private void assertMatch(MatchQueue queue, long start, long end) {
+		assertFalse(queue.isEmpty());
+		assertThat(queue.start(), equalTo(start));
+		assertThat(queue.end(), equalTo(end));
+		queue.remove();
+	}
+
+}
@@ -0,0 +1,135 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class PatternCacheTest {
+
+	@Test
+	public void testHit() throws Exception {
+		PatternCache cache = new PatternCache(1 << 20);
+
+		Pattern first = Pattern.compile("a(b|c)*d", cache);
+		Pattern second = Pattern.compile("a(b|c)*d", cache);
+
+		assertThat(second, sameInstance(first));
+		assertThat(cache.getMisses(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(1L));
+		assertThat(cache.size(), equalTo(1));
+		assertThat(cache.getBytes(), greaterThan(0L));
+		assertTrue(second.matcher("abcbd").matches());
+	}
+
+	@Test
+	public void testWeighsTables() throws Exception {
+		PatternCache cache = new PatternCache(1 << 20);
+
+		Pattern first = Pattern.compile("[a-z]+@[a-z]+", cache);
+		Pattern second = Pattern.compile("(a|b)*a(a|b){4}", cache, OptimizationTarget.SEARCH);
+
+		assertThat(cache.getBytes(), equalTo(first.tableBytes() + second.tableBytes()));
+	}
+
+	@Test
+	public void testKeyedByOptions() throws Exception {
+		PatternCache cache = new PatternCache(1 << 20);
+
+		Pattern plain = Pattern.compile("a.b", cache);
+
+		assertThat(Pattern.compile("a.b", cache, RegexOption.DOT_ALL), not(sameInstance(plain)));
+		assertThat(Pattern.compile("a.b", cache, OptimizationTarget.SEARCH), not(sameInstance(plain)));
+		assertThat(Pattern.compile("a.b", cache, SearchMode.ALL), not(sameInstance(plain)));
+		assertThat(Pattern.compile("a.b", cache, new CharsetOption(UTF_8)), not(sameInstance(plain)));
+		assertThat(Pattern.compile("a.b", cache, new LazyDFAOption()), not(sameInstance(plain)));
+		assertThat(Pattern.compile("a.b", cache, SearchMode.DEFAULT, OptimizationTarget.MATCH), sameInstance(plain));
+		assertThat(cache.getMisses(), equalTo(6L));
+		assertThat(cache.getHits(), equalTo(1L));
+	}
+
+	@Test
+	public void testEvictsByBytes() throws Exception {
+		PatternCache cache = new PatternCache(1 << 20);
+		Pattern.compile("[a-z]{1,10}@[a-z]{1,10}", cache);
+		long bytes = cache.getBytes();
+		cache.clear();
+		Pattern.compile("[0-9]{1,10}@[0-9]{1,10}", cache);
+		bytes = Math.max(bytes, cache.getBytes());
+
+		PatternCache small = new PatternCache(bytes);
+		Pattern first = Pattern.compile("[a-z]{1,10}@[a-z]{1,10}", small);
+		Pattern.compile("[0-9]{1,10}@[0-9]{1,10}", small);
+
+		assertThat(small.getEvictions(), equalTo(1L));
+		assertThat(small.size(), equalTo(1));
+		assertThat(small.getBytes(), lessThanOrEqualTo(bytes));
+		assertThat(Pattern.compile("[a-z]{1,10}@[a-z]{1,10}", small), not(sameInstance(first)));
+		assertThat(small.getMisses(), equalTo(3L));
+	}
+
+	@Test
+	public void testOversizedPatternIsNotCached() throws Exception {
+		PatternCache cache = new PatternCache(0);
+
+		Pattern first = Pattern.compile("abc", cache);
+		Pattern second = Pattern.compile("abc", cache);
+
+		assertThat(second, not(sameInstance(first)));
+		assertThat(cache.size(), equalTo(0));
+		assertThat(cache.getBytes(), equalTo(0L));
+		assertThat(cache.getEvictions(), equalTo(2L));
+	}
+
+	@Test
+	public void testFailedCompileIsNotCached() throws Exception {
+		PatternCache cache = new PatternCache(1 << 20);
+
+		try {
+			Pattern.compile("a(b", cache);
+			fail();
+		} catch (RuntimeException e) {
+			assertThat(cache.size(), equalTo(0));
+		}
+	}
+
+	@Test
+	public void testConcurrentCompile() throws Exception {
+		final PatternCache cache = new PatternCache(1 << 20);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Pattern>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				results.add(executor.submit(new Callable<Pattern>() {
+					@Override
+					public Pattern call() throws Exception {
+						return Pattern.compile("(a|b)*a(a|b){8}", cache, OptimizationTarget.SEARCH);
+					}
+				}));
+			}
+			Pattern first = results.get(0).get();
+			for (Future<Pattern> result : results) {
+				assertThat(result.get(), sameInstance(first));
+			}
+			assertThat(cache.getMisses(), equalTo(1L));
+			assertThat(cache.getHits(), equalTo(31L));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MATCH;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.SEARCH;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Charsets;
+import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Only;
+
+@Only({ MATCH, SEARCH })
+@Charsets({ "UTF-8", "CHARS" })
+public class PatternCompileBudgetTest {
+
+	@Rule
+	public PatternRule patterns = new PatternRule();
+
+	@Test
+	public void testWithinBudget() throws Exception {
+		Pattern pattern = patterns.compile("ab*c", CompileBudgetOption.maxStates(1000));
+
+		assertThat(pattern.engine(), equalTo(Engine.DFA));
+	}
+
+	@Test
+	public void testLazyWithinBudget() throws Exception {
+		Pattern pattern = patterns.compile("ab*c", new LazyDFAOption(), CompileBudgetOption.maxStates(1000));
+
+		assertThat(pattern.engine(), equalTo(Engine.LAZY_DFA));
+	}
+
+	@Test
+	public void testExceedingStatesFallsBackToSimulation() throws Exception {
+		Pattern pattern = patterns.compile("(a|b)*a(a|b){12}", CompileBudgetOption.maxStates(100));
+
+		assertThat(pattern.engine(), equalTo(Engine.NFA_SIMULATION));
+		Matcher matcher = pattern.matcher("xxbbbabbbbbbbbbbbbxx");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("bbbabbbbbbbbbbbb"));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testExceedingDeadlineFallsBackToSimulation() throws Exception {
+		Pattern pattern = patterns.compile("(a|b)*a(a|b){12}", CompileBudgetOption.maxTime(0, MILLISECONDS));
+
+		assertThat(pattern.engine(), equalTo(Engine.NFA_SIMULATION));
+		assertTrue(pattern.matcher("aaaaaaaaaaaaa").matches());
+		assertFalse(pattern.matcher("aaaaaaaaaaaa").matches());
+	}
+
+}
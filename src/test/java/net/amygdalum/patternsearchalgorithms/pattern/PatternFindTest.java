@@ -1,11 +1,15 @@
 package net.amygdalum.patternsearchalgorithms.pattern;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.*;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.ALL;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.FIRSTMATCH_NON_OVERLAPPING;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.LONGEST_NON_OVERLAPPING;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.LONGEST_WITH_OVERLAP;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -16,7 +20,7 @@ import org.junit.Test;
 import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Charsets;
 import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Only;
 
-@Only({ MATCH, SEARCH })
+@Only({ MATCH, SEARCH, MEMORY })
 @Charsets({ "UTF-8", "CHARS" })
 public class PatternFindTest {
 
@@ -52,6 +56,43 @@ public class PatternFindTest {
 		assertThat(matcher.group(), equalTo("abbbbc"));
 	}
 
+	@Test
+	public void testFindPatternInSparseInput() throws Exception {
+		Pattern pattern = patterns.compile("ab*c");
+		Matcher matcher = pattern.matcher("xxxxxxxxxxxxxxxxxxxxxxxxabcxxxxxxxxxxxxxxxxxxxxxxxxxxabbcxxxxxxxxxxxäxxxxxxxxxac");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("abc"));
+		assertThat(matcher.start(), equalTo(24l));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("abbc"));
+		assertThat(matcher.start(), equalTo(53l));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("ac"));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindLiteralAlternatives() throws Exception {
+		Pattern pattern = patterns.compile("(warn|error): [a-z]+");
+		Matcher matcher = pattern.matcher("info: x\nerror: disk\nwarning: y\nwarn: cpu\nerror:");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("error: disk"));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("warn: cpu"));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindInnerLiteral() throws Exception {
+		Pattern pattern = patterns.compile("\\w+@example\\.com");
+		Matcher matcher = pattern.matcher("mail to: joe@example.com, ann@example.org, sue@example.com!");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("joe@example.com"));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("sue@example.com"));
+		assertFalse(matcher.find());
+	}
+
 	@Test
 	public void testFindPattern1deadEnd() throws Exception {
 		Pattern pattern = patterns.compile("ab*c");
@@ -371,12 +412,12 @@ public class PatternFindTest {
 		assertThat(matcher.start(), equalTo(3l));
 		assertThat(matcher.end(), equalTo(13l));
 		assertThat(matcher.group(), equalTo("cabcdecabc"));
-		assertThat(matcher.start(1), equalTo(10l));
+		assertThat(matcher.start(1), equalTo(12l));
 		assertThat(matcher.end(1), equalTo(13l));
-		assertThat(matcher.group(1), equalTo("abc"));
-		assertThat(matcher.start(2), equalTo(10l));
-		assertThat(matcher.end(2), equalTo(13l));
-		assertThat(matcher.group(2), equalTo("abc"));
+		assertThat(matcher.group(1), equalTo("c"));
+		assertThat(matcher.start(2), equalTo(-1l));
+		assertThat(matcher.end(2), equalTo(-1l));
+		assertThat(matcher.group(2), nullValue());
 	}
 
 	@Test
@@ -599,4 +640,388 @@ public class PatternFindTest {
 	}
 
 
-}
\ No newline at end of file
+	@Test
+	public void testFindAfterPartialMatchAtEndLongestNonOverlapping() throws Exception {
+		Pattern pattern = patterns.compile("abc|b", LONGEST_NON_OVERLAPPING);
+		Matcher matcher = pattern.matcher("cabcab");
+		assertTrue(matcher.find());
+		assertThat(matcher.start(), equalTo(1l));
+		assertThat(matcher.end(), equalTo(4l));
+		assertThat(matcher.group(), equalTo("abc"));
+		assertTrue(matcher.find());
+		assertThat(matcher.start(), equalTo(5l));
+		assertThat(matcher.end(), equalTo(6l));
+		assertThat(matcher.group(), equalTo("b"));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindAfterContainedMatchFirstMatchNonOverlapping() throws Exception {
+		Pattern pattern = patterns.compile("abc|b", FIRSTMATCH_NON_OVERLAPPING);
+		Matcher matcher = pattern.matcher("abcbaca");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("abc"));
+		assertTrue(matcher.find());
+		assertThat(matcher.start(), equalTo(3l));
+		assertThat(matcher.group(), equalTo("b"));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindEmptyMatchAtEndLongestNonOverlapping() throws Exception {
+		Pattern pattern = patterns.compile("a*|b", LONGEST_NON_OVERLAPPING);
+		Matcher matcher = pattern.matcher("baab");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("b"));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("aa"));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("b"));
+		assertTrue(matcher.find());
+		assertThat(matcher.start(), equalTo(4l));
+		assertThat(matcher.end(), equalTo(4l));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindGroupsOfEachMatch() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			Pattern pattern = patterns.compile("(a+)|(b+)", mode);
+			Matcher matcher = pattern.matcher("aaxbb");
+
+			assertTrue(matcher.find());
+			assertThat(matcher.group(1), equalTo(mode.findLongest() ? "aa" : "a"));
+			assertThat(matcher.group(2), nullValue());
+			while (matcher.find() && matcher.start() < 3) {
+			}
+			assertThat(matcher.start(), equalTo(3l));
+			assertThat(matcher.group(1), nullValue());
+			assertThat(matcher.group(2), equalTo(mode.findLongest() ? "bb" : "b"));
+		}
+	}
+
+	@Test
+	public void testFindAll() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			Pattern pattern = patterns.compile("a*b|ba", mode);
+
+			StringBuilder found = new StringBuilder();
+			Matcher matcher = pattern.matcher("aabbaxbab");
+			while (matcher.find()) {
+				found.append(matcher.start()).append('-').append(matcher.end()).append(' ');
+			}
+
+			StringBuilder all = new StringBuilder();
+			long count = pattern.matcher("aabbaxbab").findAll((start, end) -> all.append(start).append('-').append(end).append(' '));
+
+			assertThat(all.toString(), equalTo(found.toString()));
+			assertThat(count, equalTo((long) found.toString().split(" ").length));
+		}
+	}
+
+	@Test
+	public void testFindAllAroundRepeatedInnerLiteral() throws Exception {
+		Pattern pattern = patterns.compile("[a-z=]+=[a-z=]+", ALL);
+
+		StringBuilder all = new StringBuilder();
+		long count = pattern.matcher("a=b=c").findAll((start, end) -> all.append(start).append('-').append(end).append(' '));
+
+		assertThat(all.toString(), equalTo("0-3 0-4 0-5 1-5 2-5 "));
+		assertThat(count, equalTo(5l));
+	}
+
+	@Test
+	public void testFindAllAroundInnerLiteralOfMaxLength() throws Exception {
+		Pattern pattern = patterns.compile("[a-z]{3}=d{3}", ALL);
+
+		StringBuilder all = new StringBuilder();
+		pattern.matcher("xaaa=dddx bcd=ddd").findAll((start, end) -> all.append(start).append('-').append(end).append(' '));
+
+		assertThat(all.toString(), equalTo("1-8 10-17 "));
+	}
+
+	@Test
+	public void testFindLongestNonOverlappingAtEndOfInputInsideLongerMatch() throws Exception {
+		assertThat(findAll(patterns.compile("b|[ab]+bc", LONGEST_NON_OVERLAPPING), "bb"), equalTo("0-1 1-2 "));
+		assertThat(findAll(patterns.compile(".?[^a]|.(([ab].|(..?.{1,3}|[ab])+[ab])|c*)*", LONGEST_NON_OVERLAPPING), "axbxcxxx"), equalTo("0-2 2-4 4-6 6-8 "));
+		assertThat(findAll(patterns.compile("xa*y|a", LONGEST_NON_OVERLAPPING), "xa"), equalTo("1-2 "));
+	}
+
+	@Test
+	public void testFindEmptyMatchesLongestNonOverlappingOnEveryEngine() throws Exception {
+		for (Pattern pattern : onEveryEngine("b*", LONGEST_NON_OVERLAPPING)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "bc"), equalTo("0-1 1-1 2-2 "));
+		}
+	}
+
+	@Test
+	public void testFindEmptyMatchesFirstMatchNonOverlappingOnEveryEngine() throws Exception {
+		for (Pattern pattern : onEveryEngine("c?", FIRSTMATCH_NON_OVERLAPPING)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "ccxxcab"), equalTo("0-0 0-1 1-1 1-2 2-2 3-3 4-4 4-5 5-5 6-6 7-7 "));
+		}
+		for (Pattern pattern : onEveryEngine("[ab]?", FIRSTMATCH_NON_OVERLAPPING)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "bac"), equalTo("0-0 0-1 1-1 1-2 2-2 3-3 "));
+		}
+		for (Pattern pattern : onEveryEngine("([ab]*)?([ab])c+|b?", FIRSTMATCH_NON_OVERLAPPING)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "a"), equalTo("0-0 1-1 "));
+		}
+		for (Pattern pattern : onEveryEngine("b|[ab]+bc", FIRSTMATCH_NON_OVERLAPPING)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "xbababa"), equalTo("1-2 3-4 5-6 "));
+		}
+	}
+
+	@Test
+	public void testFindEmptyMatchesWithOverlapOnEveryEngine() throws Exception {
+		for (Pattern pattern : onEveryEngine(".*", LONGEST_WITH_OVERLAP)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "abc"), equalTo("0-3 1-3 2-3 3-3 "));
+			assertThat(pattern.engine().toString(), pattern.matcher("abc").count(), equalTo(4l));
+		}
+		for (Pattern pattern : onEveryEngine("([ab]*)?([ab])c+|b?", LONGEST_WITH_OVERLAP)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "xxb"), equalTo("0-0 1-1 2-3 3-3 "));
+		}
+		for (Pattern pattern : onEveryEngine("b*", ALL)) {
+			assertThat(pattern.engine().toString(), findAll(pattern, "bb"), equalTo("0-0 0-1 0-2 1-1 1-2 2-2 "));
+		}
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_WITH_OVERLAP }) {
+			for (Pattern pattern : onEveryEngine("b*", mode)) {
+				Matcher matcher = pattern.matcher("ab");
+				assertThat(pattern.engine().toString(), matcher.findAll((start, end) -> {}), equalTo(mode == ALL ? 4l : 3l));
+				assertFalse(pattern.engine().toString(), matcher.find());
+			}
+		}
+	}
+
+	@Test
+	public void testContainsMatchAfterEmptyMatchAtEndOnEveryEngine() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_WITH_OVERLAP, LONGEST_NON_OVERLAPPING, FIRSTMATCH_NON_OVERLAPPING }) {
+			for (Pattern pattern : onEveryEngine("b*", mode)) {
+				assertThat(mode + " on " + pattern.engine(), containsAndFindAll(pattern, ""), equalTo("0-0 "));
+			}
+		}
+		for (Pattern pattern : onEveryEngine("b*", ALL)) {
+			assertThat(pattern.engine().toString(), containsAndFindAll(pattern, "xb"), equalTo("0-0 1-1 1-2 2-2 "));
+		}
+		for (Pattern pattern : onEveryEngine("b*", LONGEST_WITH_OVERLAP)) {
+			assertThat(pattern.engine().toString(), containsAndFindAll(pattern, "xb"), equalTo("0-0 1-2 2-2 "));
+		}
+	}
+
+	@Test
+	public void testFindAllAfterFind() throws Exception {
+		Pattern pattern = patterns.compile("ab", LONGEST_NON_OVERLAPPING);
+		Matcher matcher = pattern.matcher("abxabxab");
+		assertTrue(matcher.find());
+		StringBuilder all = new StringBuilder();
+		long count = matcher.findAll((start, end) -> all.append(start).append('-').append(end).append(' '));
+		assertThat(all.toString(), equalTo("3-5 6-8 "));
+		assertThat(count, equalTo(2l));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testContainsMatch() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			Pattern pattern = patterns.compile("ab*c", mode);
+
+			assertTrue(pattern.matcher("xxabbbcxx").containsMatch());
+			assertTrue(pattern.matcher("abbbbbbbbd ac").containsMatch());
+			assertFalse(pattern.matcher("abbbbbbbbd a").containsMatch());
+			assertFalse(pattern.matcher("").containsMatch());
+		}
+	}
+
+	@Test
+	public void testContainsMatchKeepsPosition() throws Exception {
+		Pattern pattern = patterns.compile("ab*c", LONGEST_NON_OVERLAPPING);
+		Matcher matcher = pattern.matcher("xabcxac");
+		assertTrue(matcher.containsMatch());
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("abc"));
+		assertTrue(matcher.containsMatch());
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("ac"));
+		assertFalse(matcher.containsMatch());
+	}
+
+	@Test
+	public void testContainsMatchAfterFind() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			for (Pattern pattern : onEveryEngine("ab*c", mode)) {
+				String message = mode + " on " + pattern.engine();
+				Matcher matcher = pattern.matcher("xabcxac");
+				assertTrue(message, matcher.find());
+				assertThat(message, matcher.group(), equalTo("abc"));
+				assertTrue(message, matcher.containsMatch());
+				assertTrue(message, matcher.find());
+				assertThat(message, matcher.group(), equalTo("ac"));
+				assertFalse(message, matcher.containsMatch());
+				assertFalse(message, matcher.find());
+			}
+		}
+	}
+
+	@Test
+	public void testContainsMatchWhileMatchIsResumed() throws Exception {
+		for (Pattern pattern : onEveryEngine("b*a[ab]*", ALL)) {
+			assertThat(pattern.engine().toString(), containsAndFindAll(pattern, "xcbaxx"), equalTo("2-4 3-4 "));
+			assertThat(pattern.engine().toString(), containsAndFindAll(pattern, "baaba"), equalTo("0-2 0-3 0-4 0-5 1-2 1-3 1-4 1-5 2-3 2-4 2-5 3-5 4-5 "));
+		}
+	}
+
+	@Test
+	public void testCount() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			for (String regex : new String[] { "a*b|ba", "ab*", "x" }) {
+				Pattern pattern = patterns.compile(regex, mode);
+
+				long found = 0;
+				Matcher matcher = pattern.matcher("aabbaxbab");
+				while (matcher.find()) {
+					found++;
+				}
+
+				assertThat(regex, pattern.matcher("aabbaxbab").count(), equalTo(found));
+			}
+		}
+	}
+
+	@Test
+	public void testCountOverlapping() throws Exception {
+		assertThat(patterns.compile("a+", ALL).matcher("aaa").count(), equalTo(6l));
+		assertThat(patterns.compile("a+", LONGEST_WITH_OVERLAP).matcher("aaa").count(), equalTo(3l));
+	}
+
+	@Test
+	public void testCountAfterFind() throws Exception {
+		Pattern pattern = patterns.compile("ab", ALL);
+		Matcher matcher = pattern.matcher("abxabxab");
+		assertTrue(matcher.find());
+		assertThat(matcher.count(), equalTo(2l));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testFindAfterReset() throws Exception {
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			Pattern pattern = patterns.compile("ab*c", mode);
+			Matcher matcher = pattern.matcher("xabbcxac");
+			assertTrue(matcher.find());
+			assertThat(matcher.group(), equalTo("abbc"));
+
+			matcher.reset("yyac");
+			assertTrue(matcher.find());
+			assertThat(matcher.start(), equalTo(2l));
+			assertThat(matcher.group(), equalTo("ac"));
+			assertFalse(matcher.find());
+
+			matcher.reset("--abc--".getBytes(UTF_8), 2, 4);
+			assertTrue(matcher.find());
+			assertThat(matcher.start(), equalTo(0l));
+			assertThat(matcher.group(), equalTo("abc"));
+			assertFalse(matcher.find());
+		}
+	}
+
+	@Test
+	public void testFindAfterResetWithOffset() throws Exception {
+		byte[] bytes = "abbcx--error: disk--joe@example.com--".getBytes(UTF_8);
+		for (SearchMode mode : new SearchMode[] { ALL, LONGEST_NON_OVERLAPPING, LONGEST_WITH_OVERLAP, FIRSTMATCH_NON_OVERLAPPING }) {
+			Matcher matcher = patterns.compile("ab*c", mode).matcher("");
+			matcher.reset(bytes, 0, 3);
+			assertFalse(matcher.find());
+			matcher.reset(bytes, 0, 4);
+			assertTrue(matcher.find());
+			assertThat(matcher.group(), equalTo("abbc"));
+			matcher.reset(bytes, 1, 4);
+			assertFalse(matcher.find());
+
+			Matcher prefixed = patterns.compile("(warn|error): dis?k", mode).matcher("");
+			prefixed.reset(bytes, 7, 11);
+			assertTrue(prefixed.find());
+			assertThat(prefixed.start(), equalTo(0l));
+			assertThat(prefixed.group(), equalTo("error: disk"));
+			prefixed.reset(bytes, 8, 10);
+			assertFalse(prefixed.find());
+
+			Matcher inner = patterns.compile("[a-z]+@example\\.com", mode).matcher("");
+			inner.reset(bytes, 20, 15);
+			assertTrue(inner.find());
+			assertThat(inner.start(), equalTo(0l));
+			assertThat(inner.group(), equalTo("joe@example.com"));
+			inner.reset(bytes, 20, 14);
+			assertFalse(inner.find());
+		}
+	}
+
+	@Test
+	public void testMatchesAfterReset() throws Exception {
+		Pattern pattern = patterns.compile("ab*c");
+		Matcher matcher = pattern.matcher("abbc");
+		assertTrue(matcher.matches());
+		matcher.reset("abx");
+		assertFalse(matcher.matches());
+		matcher.reset("ac");
+		assertTrue(matcher.matches());
+	}
+
+	@Test
+	public void testLocalMatcher() throws Exception {
+		Pattern pattern = patterns.compile("ab*c");
+		Matcher matcher = pattern.localMatcher("xabc");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("abc"));
+
+		Matcher next = pattern.localMatcher("abbbc");
+		assertThat(next, sameInstance(matcher));
+		assertTrue(next.find());
+		assertThat(next.group(), equalTo("abbbc"));
+		assertFalse(next.find());
+	}
+
+	@Test
+	public void testFindInManyNearMatches() throws Exception {
+		Pattern pattern = patterns.compile("a*b");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			input.append("aaaaaaaaaaaaaaaaaaax");
+		}
+		input.append("aab");
+		Matcher matcher = pattern.matcher(input.toString());
+		assertTrue(matcher.find());
+		assertThat(matcher.start(), equalTo(2000l));
+		assertThat(matcher.group(), equalTo("aab"));
+		assertFalse(matcher.find());
+	}
+
+	private Pattern[] onEveryEngine(String regex, SearchMode mode) {
+		return new Pattern[] {
+			patterns.compile(regex, mode),
+			patterns.compile(regex, mode, new LazyDFAOption()),
+			patterns.compile(regex, mode, CompileBudgetOption.maxTime(0, MILLISECONDS))
+		};
+	}
+
+	private static String containsAndFindAll(Pattern pattern, String input) {
+		StringBuilder found = new StringBuilder();
+		Matcher matcher = pattern.matcher(input);
+		while (true) {
+			boolean contained = matcher.containsMatch();
+			boolean next = matcher.find();
+			assertThat(pattern.engine() + " after " + found, contained, equalTo(next));
+			if (!next) {
+				return found.toString();
+			}
+			found.append(matcher.start()).append('-').append(matcher.end()).append(' ');
+		}
+	}
+
+	private static String findAll(Pattern pattern, String input) {
+		StringBuilder found = new StringBuilder();
+		Matcher matcher = pattern.matcher(input);
+		while (matcher.find()) {
+			found.append(matcher.start()).append('-').append(matcher.end()).append(' ');
+		}
+		return found.toString();
+	}
+
+}
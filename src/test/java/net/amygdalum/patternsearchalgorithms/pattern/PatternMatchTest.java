@@ -3,6 +3,7 @@ package net.amygdalum.patternsearchalgorithms.pattern;
 import static java.lang.Character.MAX_VALUE;
 import static java.lang.Character.MIN_VALUE;
 import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MATCH;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MEMORY;
 import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.SEARCH;
 import static net.amygdalum.patternsearchalgorithms.pattern.RegexOption.DOT_ALL;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.ALL;
@@ -23,7 +24,7 @@ import org.junit.Test;
 import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Charsets;
 import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Only;
 
-@Only({MATCH, SEARCH})
+@Only({MATCH, SEARCH, MEMORY})
 @Charsets({"UTF-8", "CHARS"})
 public class PatternMatchTest {
 
@@ -437,12 +438,33 @@ public class PatternMatchTest {
 		assertThat(matcher.start(), equalTo(0l));
 		assertThat(matcher.end(), equalTo(10l));
 		assertThat(matcher.group(), equalTo("cabcdecabc"));
-		assertThat(matcher.start(1), equalTo(7l));
+		assertThat(matcher.start(1), equalTo(9l));
 		assertThat(matcher.end(1), equalTo(10l));
-		assertThat(matcher.group(1), equalTo("abc"));
-		assertThat(matcher.start(2), equalTo(7l));
-		assertThat(matcher.end(2), equalTo(10l));
-		assertThat(matcher.group(2), equalTo("abc"));
+		assertThat(matcher.group(1), equalTo("c"));
+		assertThat(matcher.start(2), equalTo(-1l));
+		assertThat(matcher.end(2), equalTo(-1l));
+		assertThat(matcher.group(2), nullValue());
+	}
+
+	@Test
+	public void testMatchSubmatchesAsOnMatchTarget() throws Exception {
+		String[][] cases = {
+			{ "([ab]|(c?b)b)*(((b+|a*[ab]*){1,2})*c{1,2})?", "aabbbaa" },
+			{ "([ab]([ab])*|c)*", "cacaabcb" },
+			{ "([ab]|c|[ab]|([ab])c)+", "acaccbaa" },
+			{ "([ab]|c|[ab]|([ab])c)+", "cbaccbca" }
+		};
+		for (String[] c : cases) {
+			int groups = c[0].length() - c[0].replace("(", "").length();
+			Matcher expected = Pattern.compile(c[0], MATCH).matcher(c[1]);
+			Matcher matcher = patterns.compile(c[0]).matcher(c[1]);
+			assertTrue(expected.matches());
+			assertTrue(matcher.matches());
+			for (int i = 1; i <= groups; i++) {
+				assertThat(c[0] + " group " + i, matcher.start(i), equalTo(expected.start(i)));
+				assertThat(c[0] + " group " + i, matcher.end(i), equalTo(expected.end(i)));
+			}
+		}
 	}
 
 	@Test
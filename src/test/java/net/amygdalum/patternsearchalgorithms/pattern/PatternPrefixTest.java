@@ -1,12 +1,14 @@
 package net.amygdalum.patternsearchalgorithms.pattern;
 
 import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MATCH;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MEMORY;
 import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.SEARCH;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.ALL;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.FIRSTMATCH_NON_OVERLAPPING;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.LONGEST_NON_OVERLAPPING;
 import static net.amygdalum.patternsearchalgorithms.pattern.SearchMode.LONGEST_WITH_OVERLAP;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -17,7 +19,7 @@ import org.junit.Test;
 import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Charsets;
 import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Only;
 
-@Only({MATCH, SEARCH})
+@Only({MATCH, SEARCH, MEMORY})
 @Charsets({"UTF-8", "CHARS"})
 public class PatternPrefixTest {
 
@@ -231,12 +233,12 @@ public class PatternPrefixTest {
 		assertThat(matcher.start(), equalTo(0l));
 		assertThat(matcher.end(), equalTo(10l));
 		assertThat(matcher.group(), equalTo("cabcdecabc"));
-		assertThat(matcher.start(1), equalTo(7l));
+		assertThat(matcher.start(1), equalTo(9l));
 		assertThat(matcher.end(1), equalTo(10l));
-		assertThat(matcher.group(1), equalTo("abc"));
-		assertThat(matcher.start(2), equalTo(7l));
-		assertThat(matcher.end(2), equalTo(10l));
-		assertThat(matcher.group(2), equalTo("abc"));
+		assertThat(matcher.group(1), equalTo("c"));
+		assertThat(matcher.start(2), equalTo(-1l));
+		assertThat(matcher.end(2), equalTo(-1l));
+		assertThat(matcher.group(2), nullValue());
 	}
 
 
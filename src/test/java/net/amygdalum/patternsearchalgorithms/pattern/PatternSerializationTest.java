@@ -0,0 +1,156 @@
+package net.amygdalum.patternsearchalgorithms.pattern;
+
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MATCH;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.MEMORY;
+import static net.amygdalum.patternsearchalgorithms.pattern.OptimizationTarget.SEARCH;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Charsets;
+import net.amygdalum.patternsearchalgorithms.pattern.PatternRule.Only;
+
+@Charsets({ "UTF-8", "ISO-8859-1", "CHARS" })
+public class PatternSerializationTest {
+
+	@Rule
+	public PatternRule patterns = new PatternRule();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	@Only({ MATCH, SEARCH })
+	public void testWriteLoad() throws Exception {
+		Pattern pattern = reload(patterns.compile("ab*c"));
+
+		assertThat(pattern.pattern(), equalTo("ab*c"));
+		assertThat(pattern.engine(), equalTo(Engine.DFA));
+		Matcher matcher = pattern.matcher("xxxabbbbcxxacx");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("abbbbc"));
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("ac"));
+		assertFalse(matcher.find());
+	}
+
+	@Test
+	public void testWriteLoadGroups() throws Exception {
+		Pattern pattern = reload(patterns.compile("(a+)(b|c)"));
+
+		Matcher matcher = pattern.matcher("aab");
+		assertTrue(matcher.matches());
+		assertThat(matcher.group(1), equalTo("aa"));
+		assertThat(matcher.group(2), equalTo("b"));
+	}
+
+	@Test
+	public void testWriteLoadAmbiguousGroups() throws Exception {
+		Pattern original = patterns.compile("(a|ab)(c|bcd)(d*)");
+		Pattern pattern = reload(original);
+
+		Matcher expected = original.matcher("xabcdx");
+		Matcher matcher = pattern.matcher("xabcdx");
+		assertTrue(expected.find());
+		assertTrue(matcher.find());
+		for (int i = 0; i <= 3; i++) {
+			assertThat(matcher.start(i), equalTo(expected.start(i)));
+			assertThat(matcher.end(i), equalTo(expected.end(i)));
+		}
+	}
+
+	@Test
+	public void testWriteLoadLiterals() throws Exception {
+		Pattern prefixed = reload(patterns.compile("(warn|error): [a-z]+"));
+		Pattern inner = reload(patterns.compile("\\w+@example\\.com"));
+
+		Matcher prefixedMatcher = prefixed.matcher("info: x\nerror: disk\nwarn: cpu");
+		assertTrue(prefixedMatcher.find());
+		assertThat(prefixedMatcher.group(), equalTo("error: disk"));
+		Matcher innerMatcher = inner.matcher("to: joe@example.com, ann@example.org");
+		assertTrue(innerMatcher.find());
+		assertThat(innerMatcher.group(), equalTo("joe@example.com"));
+		assertFalse(innerMatcher.find());
+	}
+
+	@Test
+	@Only({ MATCH, SEARCH })
+	public void testWriteLoadLazy() throws Exception {
+		Pattern pattern = reload(patterns.compile("(a|b)*a(a|b){3}", new LazyDFAOption()));
+
+		assertThat(pattern.engine(), equalTo(Engine.LAZY_DFA));
+		assertTrue(pattern.matcher("bbbabbb").matches());
+		assertFalse(pattern.matcher("bbbbabb").matches());
+	}
+
+	@Test
+	@Only({ MATCH, SEARCH })
+	public void testWriteLoadSimulation() throws Exception {
+		Pattern pattern = reload(patterns.compile("(a|b)*a(a|b){12}", CompileBudgetOption.maxStates(100)));
+
+		assertThat(pattern.engine(), equalTo(Engine.NFA_SIMULATION));
+		assertTrue(pattern.matcher("bbbabbbbbbbbbbbb").matches());
+		assertFalse(pattern.matcher("bbbbabbbbbbbbbbb").matches());
+	}
+
+	@Test
+	@Only(MEMORY)
+	public void testWriteLoadThompson() throws Exception {
+		Pattern pattern = reload(patterns.compile("(a|b)*a(a|b){12}"));
+
+		assertThat(pattern.engine(), equalTo(Engine.THOMPSON_NFA));
+		assertTrue(pattern.matcher("bbbabbbbbbbbbbbb").matches());
+		assertFalse(pattern.matcher("bbbbabbbbbbbbbbb").matches());
+		Matcher matcher = pattern.matcher("xxbbbabbbbbbbbbbbbxx");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("bbbabbbbbbbbbbbb"));
+	}
+
+	@Test
+	public void testLoadMappedFile() throws Exception {
+		File file = folder.newFile("pattern.bin");
+		try (OutputStream out = new FileOutputStream(file)) {
+			patterns.compile("[a-z]+@[a-z]+").writeTo(out);
+		}
+
+		Pattern pattern = Pattern.load(file.toPath());
+
+		Matcher matcher = pattern.matcher("mail joe@example now");
+		assertTrue(matcher.find());
+		assertThat(matcher.group(), equalTo("joe@example"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLoadInvalid() throws Exception {
+		Pattern.load(ByteBuffer.wrap("no pattern".getBytes()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLoadOutdatedVersion() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		patterns.compile("ab*c").writeTo(out);
+		ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		buffer.putInt(4, 3);
+
+		Pattern.load(buffer);
+	}
+
+	private static Pattern reload(Pattern pattern) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		pattern.writeTo(out);
+		return Pattern.load(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+}